@@ -16,7 +16,22 @@
  */
 package mx.uach.fing.chip8;
 
-import mx.uach.fing.chip8.instruction.Instruction;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import mx.uach.fing.chip8.analysis.AnalysisCache;
+import mx.uach.fing.chip8.analysis.BasicBlock;
+import mx.uach.fing.chip8.analysis.ControlFlowAnalyzer;
+import mx.uach.fing.chip8.analysis.ControlFlowGraph;
+import mx.uach.fing.chip8.aot.AotEngine;
+import mx.uach.fing.chip8.compiler.Recompiler;
+import mx.uach.fing.chip8.compiler.TieredEngine;
+import mx.uach.fing.chip8.instruction.InstructionCache;
 import mx.uach.fing.chip8.instruction.InstructionSet;
 
 import org.slf4j.Logger;
@@ -33,9 +48,18 @@ public class Chip8 implements Runnable {
     // Frecuencia de actualizacion de los contadores.
     public static final int TIMER_HZ = 60;
 
-    // Frecuencia de actualizacion del reloj.
+    // Frecuencia de actualizacion del reloj por defecto.
     public static final int UPDATE_HZ = 500;
 
+    // Numero minimo de ciclos por cuadro, el residuo se acumula entre cuadros.
+    public static final int CYCLES_PER_FRAME = UPDATE_HZ / TIMER_HZ;
+
+    // Duracion de un cuadro en nanosegundos.
+    public static final long FRAME_NANOS = 1_000_000_000L / TIMER_HZ;
+
+    // Numero maximo de cuadros atrasados que se ejecutan seguidos.
+    public static final int MAX_CATCH_UP_FRAMES = 4;
+
     // Memoria RAM del chip con 4KB de almacenamiento.
     public final Memory memory;
 
@@ -54,19 +78,173 @@ public class Chip8 implements Runnable {
     // Set de instrucciones del chip.
     private final InstructionSet instructionSet;
 
+    // Cache de instrucciones decodificadas.
+    private final InstructionCache instructionCache;
+
+    // Motor con el cual se ejecutan las instrucciones.
+    private final ExecutionEngine engine;
+
+    // Detector de ciclos de espera.
+    private final IdleLoopDetector idleLoopDetector;
+
+    // Analizador del grafo de control de las ROMs.
+    private final ControlFlowAnalyzer controlFlowAnalyzer;
+
+    // Grafo de control de la ROM cargada.
+    private ControlFlowGraph controlFlowGraph;
+
+    // Cache en disco del analisis de las ROMs, null si no se utiliza.
+    private AnalysisCache analysisCache;
+
+    // Bandera que indica si se detectan los ciclos de espera.
+    private boolean idleDetection = true;
+
+    // Bandera que indica que el programa esta en un ciclo de espera.
+    private boolean idle = false;
+
+    // Hilo en el que corre el chip.
+    private volatile Thread runner;
+
+    // Indica si el emulador se ejecuta en un MachineScheduler.
+    private volatile boolean scheduled = false;
+
     // Bandera que indica que el chip esta corriendo.
-    private boolean running = false;
+    private volatile boolean running = false;
+
+    // Bandera que indica que el chip esta en pausa.
+    private volatile boolean paused = false;
+
+    // Cuadros solicitados con stepFrame() durante la pausa.
+    private final AtomicInteger pendingSteps = new AtomicInteger();
+
+    // Monitor con el que se inicia el hilo y se espera el fin de run().
+    private final Object lifecycle = new Object();
 
     // Bandera que indica si se esta ejecutando en modo extendido.
     private boolean extended = true;
 
+    // Bandera que indica que el programa termino con la instruccion 00FD.
+    private boolean exited = false;
+
+    // Error que detuvo la ejecucion por lotes, null si no ha ocurrido.
+    private RuntimeException fault;
+
+    // Estado de error compartido por los componentes.
+    private final FaultStatus faultStatus;
+
+    // Perfil de compatibilidad de la maquina, se utiliza con las ROMs que no
+    // tienen un perfil asignado.
+    private QuirkProfile quirkProfile;
+
+    // Reloj con el que se miden los cuadros.
+    private Clock clock;
+
+    // Calendario de cuadros de run() o del planificador.
+    private final PacingController pacing = new PacingController(MAX_CATCH_UP_FRAMES);
+
+    // Generador de numeros aleatorios de la instruccion Cxkk.
+    private final Random random = new Random();
+
+    // Frecuencia del reloj, instrucciones por segundo emulado.
+    private int clockHz = UPDATE_HZ;
+
+    // Indica si run() ejecuta los cuadros sin esperar el tiempo real.
+    private volatile boolean turbo = false;
+
+    // Numero de ciclos ejecutados desde que se creo el emulador.
+    private long cycleCount = 0;
+
+    // Numero de cuadros ejecutados, cada uno equivale a 1/TIMER_HZ segundos
+    // emulados.
+    private long frameCount = 0;
+
+    // Inicio y fin (0 si no ha terminado) de la ultima ejecucion de run().
+    private volatile long runStart = 0;
+    private volatile long runEnd = 0;
+
+    // Ciclos ejecutados al iniciar la ultima ejecucion de run().
+    private long runStartCycles = 0;
+
     public Chip8() {
+        this(ExecutionMode.INTERPRETER);
+    }
+
+    /**
+     * Crea el emulador con el modo de ejecucion especificado.
+     *
+     * @param mode modo de ejecucion, el interprete es el modo por defecto.
+     */
+    public Chip8(ExecutionMode mode) {
+        this(mode, QuirkProfile.DEFAULT);
+    }
+
+    /**
+     * Crea el emulador con el modo de ejecucion y el perfil de compatibilidad
+     * especificados.
+     *
+     * @param mode modo de ejecucion.
+     * @param quirkProfile perfil de compatibilidad de la maquina, las ROMs con
+     * un perfil asignado por su hash utilizan el suyo.
+     */
+    public Chip8(ExecutionMode mode, QuirkProfile quirkProfile) {
         this.memory = new Memory();
         this.vram = new VRAM();
         this.stack = new Stack();
         this.register = new Register();
         this.keyboard = new Keyboard();
-        this.instructionSet = new InstructionSet();
+        this.clock = new WallClock();
+
+        this.faultStatus = new FaultStatus();
+        this.memory.setFaultStatus(this.faultStatus);
+        this.vram.setFaultStatus(this.faultStatus);
+        this.stack.setFaultStatus(this.faultStatus);
+        this.register.setFaultStatus(this.faultStatus);
+        this.keyboard.setFaultStatus(this.faultStatus);
+
+        this.quirkProfile = quirkProfile;
+        this.instructionSet = new InstructionSet(quirkProfile);
+        this.instructionCache = new InstructionCache(
+                this.memory, this.instructionSet);
+
+        if (ExecutionMode.RECOMPILER == mode) {
+            this.engine = new Recompiler(
+                    this.memory, this.instructionSet, this.instructionCache);
+        } else if (ExecutionMode.TIERED == mode) {
+            this.engine = new TieredEngine(
+                    this.memory, this.instructionSet, this.instructionCache);
+        } else if (ExecutionMode.AOT == mode) {
+            this.engine = new AotEngine(
+                    this.instructionSet, this.instructionCache);
+        } else {
+            this.engine = this.instructionCache;
+        }
+
+        this.idleLoopDetector = new IdleLoopDetector(this.memory);
+        this.controlFlowAnalyzer = new ControlFlowAnalyzer(this.instructionSet);
+
+        String cacheDirectory = System.getProperty(AnalysisCache.DIRECTORY_PROPERTY);
+        if (null != cacheDirectory) {
+            this.analysisCache = new AnalysisCache(
+                    Paths.get(cacheDirectory), this.controlFlowAnalyzer);
+        }
+
+        this.memory.setListener(new Memory.WriteListener() {
+
+            @Override
+            public void onWrite(int address) {
+                engine.onWrite(address);
+                idleLoopDetector.onWrite(address);
+            }
+        });
+
+        // Un evento de teclado puede terminar un ciclo de espera.
+        this.keyboard.setStatusListener(new Keyboard.StatusListener() {
+
+            @Override
+            public void onKeyStatusChanged(int key, boolean down) {
+                wake();
+            }
+        });
     }
 
     /**
@@ -78,6 +256,15 @@ public class Chip8 implements Runnable {
         return running;
     }
 
+    /**
+     * Verifica si el emulador esta en pausa.
+     *
+     * @return true si esta en pausa.
+     */
+    public boolean isPaused() {
+        return this.paused;
+    }
+
     /**
      * Retorna el modo de ejecucion del emulador.
      *
@@ -97,6 +284,287 @@ public class Chip8 implements Runnable {
         this.vram.setMode(extended);
     }
 
+    /**
+     * Verifica si el programa termino con la instruccion 00FD.
+     *
+     * @return true si el programa termino.
+     */
+    public boolean isExited() {
+        return exited;
+    }
+
+    /**
+     * Obtiene el error que detuvo la ejecucion por lotes.
+     *
+     * @return error, null si no ha ocurrido.
+     */
+    public RuntimeException getFault() {
+        return fault;
+    }
+
+    /**
+     * Obtiene el estado de error compartido por los componentes, con
+     * {@link FaultStatus#setThrowing(boolean)} se elige si los errores lanzan
+     * excepciones o solo se registran y detienen la ejecucion.
+     *
+     * @return estado de error.
+     */
+    public FaultStatus getFaultStatus() {
+        return faultStatus;
+    }
+
+    /**
+     * Obtiene el codigo del error registrado.
+     *
+     * @return codigo del error, {@link FaultStatus#NONE} si no ha ocurrido.
+     */
+    public int getFaultCode() {
+        return this.faultStatus.getCode();
+    }
+
+    /**
+     * Obtiene la direccion o valor que produjo el error registrado.
+     *
+     * @return direccion del error.
+     */
+    public int getFaultAddress() {
+        return this.faultStatus.getAddress();
+    }
+
+    /**
+     * Obtiene el perfil de compatibilidad de la ROM cargada.
+     *
+     * @return perfil con el que se construyo la tabla de despacho.
+     */
+    public QuirkProfile getQuirkProfile() {
+        return this.instructionSet.getQuirkProfile();
+    }
+
+    /**
+     * Establece el perfil de compatibilidad de la maquina, se aplica al
+     * cargar la siguiente ROM si esta no tiene un perfil asignado.
+     *
+     * @param quirkProfile perfil de compatibilidad.
+     */
+    public void setQuirkProfile(QuirkProfile quirkProfile) {
+        this.quirkProfile = quirkProfile;
+    }
+
+    /**
+     * Obtiene la frecuencia del reloj.
+     *
+     * @return instrucciones por segundo emulado.
+     */
+    public int getClockHz() {
+        return this.clockHz;
+    }
+
+    /**
+     * Establece la frecuencia del reloj, los contadores se decrementan a
+     * TIMER_HZ por segundo emulado sin importar la frecuencia.
+     *
+     * @param clockHz instrucciones por segundo emulado.
+     */
+    public void setClockHz(int clockHz) {
+        if (0 >= clockHz) {
+            throw new IllegalArgumentException(String.format("La frecuencia %d no es valida", clockHz));
+        }
+
+        this.clockHz = clockHz;
+    }
+
+    /**
+     * Obtiene el reloj con el que se miden los cuadros.
+     *
+     * @return reloj del emulador.
+     */
+    public Clock getClock() {
+        return this.clock;
+    }
+
+    /**
+     * Establece el reloj con el que se miden los cuadros, con
+     * {@link VirtualClock} la ejecucion no depende del tiempo real. No se
+     * debe cambiar mientras run() se ejecuta.
+     *
+     * @param clock reloj del emulador.
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Obtiene el calendario de cuadros con las metricas de velocidad de
+     * run() o del planificador.
+     *
+     * @return calendario del emulador.
+     */
+    public PacingController getPacing() {
+        return this.pacing;
+    }
+
+    /**
+     * Obtiene el generador de numeros aleatorios de la instruccion Cxkk.
+     *
+     * @return generador del emulador.
+     */
+    public Random getRandom() {
+        return this.random;
+    }
+
+    /**
+     * Establece la semilla del generador de numeros aleatorios, junto con
+     * {@link VirtualClock} permite repetir una ejecucion.
+     *
+     * @param seed semilla del generador.
+     */
+    public void setRandomSeed(long seed) {
+        this.random.setSeed(seed);
+    }
+
+    /**
+     * Verifica si run() se ejecuta sin limite de velocidad.
+     *
+     * @return true si los cuadros se ejecutan sin esperar el tiempo real.
+     */
+    public boolean isTurbo() {
+        return this.turbo;
+    }
+
+    /**
+     * Establece si run() se ejecuta sin limite de velocidad, los cuadros se
+     * ejecutan uno tras otro contando el tiempo emulado en lugar del tiempo
+     * real y la pantalla se dibuja como maximo una vez por cuadro real.
+     *
+     * @param turbo true para ejecutar sin limite de velocidad.
+     */
+    public void setTurbo(boolean turbo) {
+        this.turbo = turbo;
+        this.wake();
+    }
+
+    /**
+     * Obtiene el numero de ciclos ejecutados desde que se creo el emulador.
+     *
+     * @return ciclos ejecutados.
+     */
+    public long getCycleCount() {
+        return this.cycleCount;
+    }
+
+    /**
+     * Obtiene el numero de cuadros ejecutados.
+     *
+     * @return cuadros ejecutados.
+     */
+    public long getFrameCount() {
+        return this.frameCount;
+    }
+
+    /**
+     * Obtiene el tiempo emulado, el tiempo que tardarian los cuadros
+     * ejecutados a velocidad real.
+     *
+     * @return tiempo emulado en nanosegundos.
+     */
+    public long getEmulatedNanos() {
+        return this.frameCount * FRAME_NANOS;
+    }
+
+    /**
+     * Obtiene la velocidad alcanzada por la ultima ejecucion de run(), si
+     * sigue en ejecucion se mide hasta el momento actual.
+     *
+     * @return millones de instrucciones por segundo real, 0 si run() no se
+     * ha ejecutado.
+     */
+    public double getEmulatedMHz() {
+        long start = this.runStart;
+        if (0 == start) {
+            return 0;
+        }
+
+        long end = 0 == this.runEnd ? System.nanoTime() : this.runEnd;
+
+        return end > start
+                ? (this.cycleCount - this.runStartCycles) * 1e3 / (end - start) : 0;
+    }
+
+    /**
+     * Verifica si se detectan los ciclos de espera.
+     *
+     * @return true si se detectan los ciclos de espera.
+     */
+    public boolean isIdleDetection() {
+        return idleDetection;
+    }
+
+    /**
+     * Habilita o deshabilita la deteccion de ciclos de espera.
+     *
+     * @param idleDetection true para detectar los ciclos de espera.
+     */
+    public void setIdleDetection(boolean idleDetection) {
+        this.idleDetection = idleDetection;
+        this.idle = false;
+    }
+
+    /**
+     * Verifica si el programa esta en un ciclo de espera, el estado no cambia
+     * hasta el siguiente decremento del temporizador o evento de teclado.
+     *
+     * @return true si el programa esta en espera.
+     */
+    public boolean isIdle() {
+        return idle;
+    }
+
+    /**
+     * Obtiene la cache de instrucciones decodificadas.
+     *
+     * @return cache de instrucciones.
+     */
+    public InstructionCache getInstructionCache() {
+        return instructionCache;
+    }
+
+    /**
+     * Obtiene el grafo de control de la ROM cargada.
+     *
+     * @return grafo de control, null si no se ha cargado una ROM.
+     */
+    public ControlFlowGraph getControlFlowGraph() {
+        return controlFlowGraph;
+    }
+
+    /**
+     * Obtiene la cache en disco del analisis de las ROMs.
+     *
+     * @return cache del analisis, null si no se utiliza.
+     */
+    public AnalysisCache getAnalysisCache() {
+        return this.analysisCache;
+    }
+
+    /**
+     * Establece la cache en disco del analisis de las ROMs, por defecto se
+     * utiliza el directorio de la propiedad {@link AnalysisCache#DIRECTORY_PROPERTY}.
+     *
+     * @param analysisCache cache del analisis, null para analizar cada ROM.
+     */
+    public void setAnalysisCache(AnalysisCache analysisCache) {
+        this.analysisCache = analysisCache;
+    }
+
+    /**
+     * Obtiene el motor con el cual se ejecutan las instrucciones.
+     *
+     * @return motor de ejecucion.
+     */
+    public ExecutionEngine getEngine() {
+        return engine;
+    }
+
     /**
      * Guarda una rom en memoria y establece el contrador del programa al inicio
      * del programa.
@@ -106,30 +574,254 @@ public class Chip8 implements Runnable {
     public void loadMemory(byte[] rom) {
         LOGGER.debug("Loading ROM: {}", rom);
         this.memory.load(rom);
+
+        // Las instrucciones especializadas se eligen una vez por ROM.
+        QuirkProfile assigned = QuirkProfile.forRom(rom);
+        this.instructionSet.setQuirkProfile(
+                null == assigned ? this.quirkProfile : assigned);
+
+        this.controlFlowGraph = null == this.analysisCache
+                ? this.controlFlowAnalyzer.analyze(rom)
+                : this.analysisCache.get(rom);
+        this.engine.clear();
+
+        // Decodifica las instrucciones alcanzables antes de ejecutarlas.
+        for (BasicBlock block : this.controlFlowGraph.getBlocks()) {
+            for (int address = block.getStart(); address < block.getEnd(); address += 2) {
+                this.instructionCache.predecode(address);
+            }
+        }
+        if (this.engine instanceof AotEngine) {
+            ((AotEngine) this.engine).load(rom);
+        }
+        this.idleLoopDetector.clear();
+        this.exited = false;
+        this.fault = null;
+        this.faultStatus.clear();
+        this.clock.reset();
         this.register.setPC(this.memory.getProgramIndex());
     }
 
     /**
-     * Avanza un paso la logica del chip.
+     * Captura el estado del emulador, se debe llamar desde el hilo del
+     * emulador o con el emulador en pausa o detenido.
+     *
+     * @return nueva captura del estado.
      */
-    public void step() {
-        int st = this.register.getST();
+    public MachineState snapshot() {
+        MachineState state = new MachineState();
+        this.snapshot(state);
+
+        return state;
+    }
 
-        if (!this.keyboard.isWaiting()) {
-            int pc = this.register.getPC();
-            OPCode opcode = this.memory.readInstruction(pc);
-            this.register.incrementPC();
+    /**
+     * Captura el estado del emulador en una captura existente, no crea
+     * objetos.
+     *
+     * @param state captura donde se guarda el estado.
+     */
+    public void snapshot(MachineState state) {
+        this.memory.save(state);
+        this.register.save(state);
+        this.stack.save(state);
+        this.keyboard.save(state);
+        this.vram.save(state);
+        state.setFlag(MachineState.FLAG_EXTENDED, this.extended);
+        state.setFlag(MachineState.FLAG_EXITED, this.exited);
+    }
+
+    /**
+     * Restaura el estado de una captura, se debe llamar desde el hilo del
+     * emulador o con el emulador en pausa o detenido. Los errores registrados
+     * se descartan.
+     *
+     * @param state captura del estado.
+     */
+    public void restore(MachineState state) {
+        this.memory.restore(state);
+        this.register.restore(state);
+        this.stack.restore(state);
+        this.keyboard.restore(state);
+        this.vram.restore(state);
+        this.extended = state.hasFlag(MachineState.FLAG_EXTENDED);
+        this.exited = state.hasFlag(MachineState.FLAG_EXITED);
+        this.idle = false;
+        this.fault = null;
+        this.faultStatus.clear();
+    }
+
+    /**
+     * Guarda el estado del emulador en un archivo con el formato de
+     * {@link MachineState}, se debe llamar desde el hilo del emulador o con
+     * el emulador en pausa o detenido.
+     *
+     * @param file archivo destino.
+     * @throws IOException si no se puede escribir el archivo.
+     */
+    public void saveState(Path file) throws IOException {
+        this.snapshot().write(file);
+    }
+
+    /**
+     * Restaura el estado del emulador de un archivo escrito con
+     * {@link #saveState(Path)}, la ROM y el perfil de compatibilidad no forman
+     * parte del estado. Si el archivo no es valido el emulador no se
+     * modifica.
+     *
+     * @param file archivo con el estado.
+     * @throws IOException si no se puede leer el archivo o no es valido.
+     */
+    public void loadState(Path file) throws IOException {
+        MachineState state = new MachineState();
+        state.read(file);
+        this.restore(state);
+    }
 
-            Instruction instruction = this.instructionSet.resolve(opcode);
+    /**
+     * Avanza un paso la logica del chip, con el recompilador un paso ejecuta
+     * un bloque basico completo.
+     *
+     * Si el programa esta en un ciclo de espera solo se aplica el estado que
+     * produce una iteracion del ciclo.
+     *
+     * @return numero de instrucciones ejecutadas, 0 si se espera una tecla,
+     * el programa esta en un ciclo de espera o se registro un error.
+     */
+    public int step() {
+        int st = this.register.getST();
 
-            //LOGGER.debug("Address: {}, OPCode: {}, PC: {}, Instruction: {}\n",
-            //        pc, opcode.toString(), pc, instruction.getClass());
-            instruction.execute(opcode, this);
+        int executed = 0;
+        if (!this.resumeKeyWait() && !this.faultStatus.hasFault()) {
+            this.idle = this.idleDetection
+                    && this.idleLoopDetector.idle(this);
+            if (!this.idle) {
+                executed = this.engine.execute(this);
+            }
         }
+        this.cycleCount += executed;
 
         if (0 < st) {
             //java.awt.Toolkit.getDefaultToolkit().beep();
         }
+
+        return executed;
+    }
+
+    /**
+     * Ejecuta hasta n ciclos, se detiene antes si se espera una tecla, si el
+     * programa termina o si ocurre un error, el error se puede consultar con
+     * {@link #getFault()} o con {@link #getFaultCode()} si no se lanzan
+     * excepciones.
+     *
+     * Si el programa entra en un ciclo de espera, el resto de los ciclos se
+     * consumen en el ciclo y se cuentan como ejecutados.
+     *
+     * @param n numero de ciclos a ejecutar.
+     * @return numero de ciclos ejecutados, con el recompilador puede exceder n
+     * por las instrucciones restantes del ultimo bloque.
+     */
+    public int runCycles(int n) {
+        final FaultStatus faults = this.faultStatus;
+        if (this.exited || null != this.fault || faults.hasFault()) {
+            return 0;
+        }
+
+        final Keyboard keyboard = this.keyboard;
+        final ExecutionEngine engine = this.engine;
+        final IdleLoopDetector detector
+                = this.idleDetection ? this.idleLoopDetector : null;
+
+        // La tecla esperada pudo llegar desde otro hilo.
+        this.resumeKeyWait();
+
+        int cycles = 0;
+        this.idle = false;
+        try {
+            while (n > cycles && !keyboard.isWaiting() && !this.exited
+                    && !faults.hasFault()) {
+                if (null != detector && detector.idle(this)) {
+                    this.idle = true;
+                    cycles = n;
+                    break;
+                }
+
+                cycles += engine.execute(this);
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.error("CHIP 8 fault", ex);
+            this.fault = ex;
+        }
+
+        this.cycleCount += cycles;
+
+        return cycles;
+    }
+
+    /**
+     * Guarda en el registro destino la tecla pulsada durante una espera.
+     *
+     * @return true si se sigue esperando una tecla.
+     */
+    private boolean resumeKeyWait() {
+        final Keyboard keyboard = this.keyboard;
+        if (!keyboard.isWaiting()) {
+            return false;
+        }
+
+        int key = keyboard.takeKey();
+        if (0 > key) {
+            return true;
+        }
+
+        this.register.set(keyboard.getWaitTarget(), key);
+
+        return false;
+    }
+
+    /**
+     * Verifica si el emulador esta bloqueado esperando una tecla con los
+     * contadores en 0, en ese estado ningun cuadro modifica el estado y el
+     * hilo o el planificador pueden suspenderlo hasta que se pulse una tecla.
+     *
+     * @return true si el emulador esta bloqueado.
+     */
+    public boolean isBlocked() {
+        return this.keyboard.isWaiting() && !this.keyboard.isKeyFound()
+                && 0 == this.register.getDT() && 0 == this.register.getST();
+    }
+
+    /**
+     * Ejecuta los ciclos correspondientes a un cuadro (1/60 s), dibuja la
+     * pantalla y decrementa los contadores.
+     *
+     * @return numero de ciclos ejecutados.
+     */
+    public int runFrame() {
+        return this.runFrame(true);
+    }
+
+    /**
+     * Ejecuta los ciclos correspondientes a un cuadro (1/60 s) con la
+     * frecuencia del reloj y decrementa los contadores.
+     *
+     * @param draw true para dibujar la pantalla al final del cuadro.
+     * @return numero de ciclos ejecutados.
+     */
+    public int runFrame(boolean draw) {
+        int budget = this.clock.frameBudget(this.clockHz);
+
+        int cycles = this.runCycles(budget);
+
+        this.clock.endFrame(budget, cycles);
+        this.frameCount++;
+
+        if (draw) {
+            this.vram.draw();
+        }
+        this.decrementCounters();
+
+        return cycles;
     }
 
     /**
@@ -141,61 +833,281 @@ public class Chip8 implements Runnable {
     }
 
     /**
-     * Detiene la ejecucion del chip.
+     * Inicia el emulador en un hilo de plataforma.
+     *
+     * @return hilo del emulador.
+     * @throws IllegalStateException si el emulador ya se esta ejecutando.
+     */
+    public Thread start() {
+        return this.start(false);
+    }
+
+    /**
+     * Inicia el emulador en su propio hilo.
+     *
+     * @param virtual true para utilizar un hilo virtual si la JVM lo soporta.
+     * @return hilo del emulador.
+     * @throws IllegalStateException si el emulador ya se esta ejecutando o
+     * esta registrado en un planificador.
+     */
+    public Thread start(boolean virtual) {
+        Thread thread;
+        synchronized (this.lifecycle) {
+            if (null != this.runner || this.scheduled) {
+                throw new IllegalStateException("El CHIP 8 ya se esta ejecutando");
+            }
+
+            // El hilo se registra antes de iniciarlo para que un stop()
+            // inmediato no se pierda.
+            thread = MachineThreads.newThread(this, "CHIP-8 THREAD", virtual);
+            this.running = true;
+            this.runner = thread;
+        }
+        thread.start();
+
+        return thread;
+    }
+
+    /**
+     * Pausa la ejecucion, el hilo del emulador se suspende al terminar el
+     * cuadro actual.
+     */
+    public void pause() {
+        this.paused = true;
+    }
+
+    /**
+     * Reanuda la ejecucion desde el cuadro siguiente, sin recuperar los
+     * cuadros de la pausa.
+     */
+    public void resume() {
+        this.pendingSteps.set(0);
+        this.paused = false;
+        this.wake();
+    }
+
+    /**
+     * Ejecuta un cuadro durante la pausa, el cuadro lo ejecuta el hilo del
+     * emulador o el planificador que lo contiene.
+     *
+     * @throws IllegalStateException si el emulador no esta en pausa.
+     */
+    public void stepFrame() {
+        if (!this.paused) {
+            throw new IllegalStateException("El CHIP 8 no esta en pausa");
+        }
+
+        this.pendingSteps.incrementAndGet();
+        this.wake();
+    }
+
+    /**
+     * Verifica si hay cuadros solicitados con {@link #stepFrame()}.
+     */
+    boolean hasPendingSteps() {
+        return 0 < this.pendingSteps.get();
+    }
+
+    /**
+     * Toma un cuadro solicitado con {@link #stepFrame()}.
+     *
+     * @return true si habia un cuadro pendiente.
+     */
+    boolean takeStep() {
+        int steps;
+        do {
+            steps = this.pendingSteps.get();
+            if (0 == steps) {
+                return false;
+            }
+        } while (!this.pendingSteps.compareAndSet(steps, steps - 1));
+
+        return true;
+    }
+
+    /**
+     * Marca el emulador como ejecutado por un planificador, a partir de este
+     * momento stop() lo elimina del planificador.
+     *
+     * @throws IllegalStateException si el emulador ya se esta ejecutando.
+     */
+    void attach() {
+        synchronized (this.lifecycle) {
+            if (null != this.runner || this.scheduled) {
+                throw new IllegalStateException("El CHIP 8 ya se esta ejecutando");
+            }
+
+            this.scheduled = true;
+            this.running = true;
+            this.runStartCycles = this.cycleCount;
+            this.runEnd = 0;
+            this.runStart = System.nanoTime();
+        }
+    }
+
+    /**
+     * Indica que el planificador dejo de ejecutar el emulador y despierta a
+     * los hilos que esperan en {@link #awaitTermination(long, TimeUnit)}.
+     */
+    void detach() {
+        synchronized (this.lifecycle) {
+            this.runEnd = System.nanoTime();
+            this.running = false;
+            this.scheduled = false;
+            this.lifecycle.notifyAll();
+        }
+    }
+
+    /**
+     * Espera a que termine el hilo del emulador o a que el planificador deje
+     * de ejecutarlo.
+     *
+     * @param timeout tiempo maximo de espera.
+     * @param unit unidad del tiempo de espera.
+     * @return true si el emulador termino o no se estaba ejecutando, false si
+     * se agoto el tiempo.
+     * @throws InterruptedException si se interrumpe el hilo que espera.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this.lifecycle) {
+            while (null != this.runner || this.scheduled) {
+                long remaining = deadline - System.nanoTime();
+                if (0 >= remaining) {
+                    return false;
+                }
+
+                TimeUnit.NANOSECONDS.timedWait(this.lifecycle, remaining);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Termina el programa, se utiliza con la instruccion 00FD.
+     */
+    public void exit() {
+        this.exited = true;
+        this.stop();
+    }
+
+    /**
+     * Detiene la ejecucion del chip, en un planificador el emulador se
+     * elimina al terminar el cuadro actual.
      */
     public void stop() {
         LOGGER.debug("Stopping CHIP 8");
         this.running = false;
+        this.wake();
+    }
+
+    /**
+     * Despierta el hilo del chip si esta suspendido esperando el siguiente
+     * cuadro, una tecla o el fin de la pausa.
+     */
+    private void wake() {
+        Thread thread = this.runner;
+        if (null != thread) {
+            LockSupport.unpark(thread);
+        }
     }
 
     @Override
     public void run() {
         LOGGER.debug("Running CHIP 8");
-        final double TIMER_FREQUENCY = 1_000.0 / TIMER_HZ;
-        final double UPDATE_FREQUENCY = 1_000.0 / UPDATE_HZ;
-
-        double delta = 0f;
 
-        long lastTime = System.currentTimeMillis();
-        long currentTime;
+        synchronized (this.lifecycle) {
+            Thread current = Thread.currentThread();
+            if (current != this.runner) {
+                if (null != this.runner || this.scheduled) {
+                    throw new IllegalStateException("El CHIP 8 ya se esta ejecutando");
+                }
 
-        long timer = 0;
+                // Se llamo directamente, por ejemplo con new Thread(chip8).
+                this.runner = current;
+                this.running = true;
+            }
+        }
 
-        double cycles = 0f;
+        this.runStartCycles = this.cycleCount;
+        this.runEnd = 0;
+        this.runStart = System.nanoTime();
 
-        int updates = 0;
-        int renders = 0;
+        try {
+            this.loop();
+        } finally {
+            this.runEnd = System.nanoTime();
+            synchronized (this.lifecycle) {
+                this.running = false;
+                this.runner = null;
+                this.lifecycle.notifyAll();
+            }
+        }
 
-        this.running = true;
-        while (this.running) {
-            currentTime = System.currentTimeMillis();
+        LOGGER.debug("CHIP 8 stopped at {} MHz", String.format("%.3f", this.getEmulatedMHz()));
+    }
 
-            delta += currentTime - lastTime;
-            cycles += currentTime - lastTime;
+    /**
+     * Ciclo de ejecucion de {@link #run()}, se ejecuta hasta que se llama a
+     * stop() o hasta que ocurre un error.
+     */
+    private void loop() {
+        final Clock clock = this.clock;
+        final PacingController pacing = this.pacing;
+        pacing.reset(clock.nanoTime());
 
-            if (UPDATE_FREQUENCY <= cycles) {
-                updates++;
-                cycles -= UPDATE_FREQUENCY;
+        // Siguiente cuadro que se dibuja en modo turbo.
+        long draw = 0;
+        while (this.running) {
+            if (this.paused) {
+                // En pausa solo se ejecutan los cuadros solicitados,
+                // resume(), stepFrame() y stop() despiertan el hilo.
+                if (!this.takeStep()) {
+                    LockSupport.park(this);
+                    pacing.resync(clock.nanoTime());
+                    continue;
+                }
 
-                this.step();
-            }
+                this.runFrame();
+                pacing.resync(clock.nanoTime());
+            } else if (this.isBlocked()) {
+                // Se suspende hasta que se pulse una tecla, los eventos de
+                // teclado y stop() despiertan el hilo.
+                LockSupport.park(this);
+                pacing.resync(clock.nanoTime());
+                continue;
+            } else if (this.turbo) {
+                // Sin limite de velocidad, la pantalla se dibuja como maximo
+                // una vez por cuadro real.
+                long now = clock.nanoTime();
+                boolean visible = 0 <= now - draw;
+                this.runFrame(visible);
+                if (visible) {
+                    draw = now + FRAME_NANOS;
+                }
+                pacing.resync(now);
+            } else {
+                int frames = pacing.due(clock.nanoTime());
+                if (0 == frames) {
+                    // Se suspende hasta el inicio del cuadro, stop() y los
+                    // eventos de teclado despiertan el hilo antes.
+                    clock.parkUntil(this, pacing.getNext());
+                    continue;
+                }
 
-            if (TIMER_FREQUENCY <= delta) {
-                renders++;
-                delta -= TIMER_FREQUENCY;
-                this.vram.draw();
-                this.decrementCounters();
+                // Al recuperar el retraso solo se dibuja el ultimo cuadro,
+                // los contadores se decrementan en todos.
+                for (; 1 < frames; frames--) {
+                    this.runFrame(false);
+                }
+                this.runFrame();
             }
 
-            timer += currentTime - lastTime;
-            if (1_000 <= timer) {
-                //LOGGER.debug("updates: {}, renders: {}", updates, renders);
-                timer = 0;
-                updates = 0;
-                renders = 0;
+            if (null != this.fault || this.faultStatus.hasFault()) {
+                LOGGER.error("CHIP 8 fault: {}", null != this.fault ? this.fault : this.faultStatus);
+                this.running = false;
             }
-
-            lastTime = currentTime;
         }
     }
 }
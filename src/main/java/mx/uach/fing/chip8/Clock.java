@@ -0,0 +1,64 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8;
+
+/**
+ * Reloj con el que el emulador mide el tiempo de los cuadros y decide cuantos
+ * ciclos ejecutar en cada uno.
+ *
+ * @author Luis Chávez
+ */
+public interface Clock {
+
+    /**
+     * Obtiene el tiempo actual del reloj.
+     *
+     * @return tiempo en nanosegundos, solo es valido compararlo con otros
+     * tiempos del mismo reloj.
+     */
+    public long nanoTime();
+
+    /**
+     * Espera hasta el tiempo especificado, puede regresar antes si se
+     * despierta el hilo.
+     *
+     * @param blocker objeto por el cual se suspende el hilo.
+     * @param deadline tiempo del reloj hasta el cual se espera.
+     */
+    public void parkUntil(Object blocker, long deadline);
+
+    /**
+     * Obtiene el numero de ciclos a ejecutar en el siguiente cuadro.
+     *
+     * @param clockHz frecuencia del reloj del emulador.
+     * @return numero de ciclos del cuadro.
+     */
+    public int frameBudget(int clockHz);
+
+    /**
+     * Registra el fin de un cuadro.
+     *
+     * @param budget ciclos solicitados con {@link #frameBudget(int)}.
+     * @param cycles ciclos ejecutados, pueden exceder el numero solicitado.
+     */
+    public void endFrame(int budget, int cycles);
+
+    /**
+     * Reinicia el estado del reloj, se utiliza al cargar una nueva ROM.
+     */
+    public void reset();
+}
@@ -0,0 +1,40 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8;
+
+/**
+ * Motor de ejecucion, se encarga de ejecutar las instrucciones a partir del
+ * contador del programa.
+ *
+ * @author Luis Chávez
+ */
+public interface ExecutionEngine extends Memory.WriteListener {
+
+    /**
+     * Ejecuta una o mas instrucciones a partir del contador del programa.
+     *
+     * @param chip8 instancia del emulador.
+     * @return numero de instrucciones (ciclos) ejecutadas.
+     */
+    public int execute(Chip8 chip8);
+
+    /**
+     * Descarta el codigo decodificado o traducido, se utiliza al cargar una
+     * nueva ROM.
+     */
+    public void clear();
+}
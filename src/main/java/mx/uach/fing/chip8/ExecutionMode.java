@@ -0,0 +1,38 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8;
+
+/**
+ * Modos de ejecucion del emulador.
+ *
+ * @author Luis Chávez
+ */
+public enum ExecutionMode {
+
+    // Interpreta una instruccion a la vez, utilizando la cache de instrucciones.
+    INTERPRETER,
+
+    // Traduce bloques basicos de la ROM a bytecode de la JVM.
+    RECOMPILER,
+
+    // Interpreta los bloques basicos y traduce a bytecode los mas ejecutados.
+    TIERED,
+
+    // Ejecuta la traduccion anticipada de la ROM (generada con AotCompiler),
+    // si la ROM no tiene traduccion se interpreta.
+    AOT
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8;
+
+/**
+ * Estado de error compartido por los componentes del emulador.
+ *
+ * Por defecto los componentes lanzan una excepcion en cada error, si se
+ * deshabilita solo se registran el codigo y la direccion del primer error, el
+ * componente continua con un valor neutro (0, false o sin escribir) y el ciclo
+ * de ejecucion se detiene al terminar la instruccion o el bloque actual, sin
+ * crear ningun objeto.
+ *
+ * @author Luis Chávez
+ */
+public class FaultStatus {
+
+    // No ha ocurrido un error.
+    public static final int NONE = 0;
+
+    // Direccion de memoria no valida, la direccion es la de memoria.
+    public static final int INVALID_MEMORY_ADDRESS = 1;
+
+    // Indice de registro no valido, la direccion es el indice.
+    public static final int INVALID_REGISTER_INDEX = 2;
+
+    // Valor de DT o ST no valido, la direccion es el valor.
+    public static final int INVALID_REGISTER_VALUE = 3;
+
+    // Retorno con la pila vacia, la direccion es 0.
+    public static final int STACK_UNDERFLOW = 4;
+
+    // Llamada con la pila llena, la direccion es la de retorno.
+    public static final int STACK_OVERFLOW = 5;
+
+    // Tecla no valida, la direccion es la tecla.
+    public static final int INVALID_KEY = 6;
+
+    // Punto fuera de la pantalla, la direccion es x | y << 8.
+    public static final int SCREEN_POINT_OUT_OF_BOUNDS = 7;
+
+    // Opcode desconocido, la direccion es la de la instruccion.
+    public static final int UNKNOWN_INSTRUCTION = 8;
+
+    // Indica si los errores se reportan con excepciones.
+    private boolean throwing = true;
+
+    // Codigo del primer error.
+    private int code = NONE;
+
+    // Direccion o valor que produjo el primer error.
+    private int address;
+
+    /**
+     * Verifica si los errores se reportan con excepciones.
+     *
+     * @return true si se lanzan excepciones, es el valor por defecto.
+     */
+    public boolean isThrowing() {
+        return this.throwing;
+    }
+
+    /**
+     * Establece si los errores se reportan con excepciones o solo se
+     * registran.
+     *
+     * @param throwing true para lanzar excepciones, false para registrar el
+     * codigo y la direccion.
+     */
+    public void setThrowing(boolean throwing) {
+        this.throwing = throwing;
+    }
+
+    /**
+     * Reporta un error, si no se lanzan excepciones se registra el error
+     * (solo el primero) y el componente debe continuar con un valor neutro.
+     *
+     * @param code codigo del error.
+     * @param address direccion o valor que produjo el error.
+     * @return true si el error se registro, false si se debe lanzar la
+     * excepcion.
+     */
+    public boolean report(int code, int address) {
+        if (this.throwing) {
+            return false;
+        }
+
+        if (NONE == this.code) {
+            this.code = code;
+            this.address = address;
+        }
+
+        return true;
+    }
+
+    /**
+     * Verifica si se registro un error.
+     *
+     * @return true si ocurrio un error.
+     */
+    public boolean hasFault() {
+        return NONE != this.code;
+    }
+
+    /**
+     * Obtiene el codigo del primer error.
+     *
+     * @return codigo del error, NONE si no ha ocurrido.
+     */
+    public int getCode() {
+        return this.code;
+    }
+
+    /**
+     * Obtiene la direccion o valor que produjo el primer error.
+     *
+     * @return direccion del error.
+     */
+    public int getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Limpia el error registrado.
+     */
+    public void clear() {
+        this.code = NONE;
+        this.address = 0;
+    }
+
+    @Override
+    public String toString() {
+        return NONE == this.code ? "NONE"
+                : String.format("%d at 0x%03X", this.code, this.address);
+    }
+}
@@ -0,0 +1,192 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8;
+
+import java.util.Arrays;
+
+/**
+ * Detecta ciclos de espera que no tienen efectos secundarios, un ciclo que
+ * consulta el tiempo de espera (Fx07, 3xkk o 4xkk, 1nnn), un ciclo que consulta
+ * una tecla (Ex9E o ExA1, 1nnn) o un salto a si mismo.
+ *
+ * Mientras el temporizador y el teclado no cambien, cada iteracion de estos
+ * ciclos produce el mismo estado, por lo que el emulador puede suspenderse
+ * hasta el siguiente decremento del temporizador o evento de teclado.
+ *
+ * @author Luis Chávez
+ */
+public class IdleLoopDetector implements Memory.WriteListener {
+
+    // Numero de direcciones cubiertas por el detector.
+    public static final int CACHE_SIZE
+            = Memory.PROGRAM_END - Memory.PROGRAM_INIT + 1;
+
+    // La direccion no se ha analizado.
+    private static final byte UNKNOWN = 0;
+
+    // La direccion no inicia un ciclo de espera.
+    private static final byte NONE = 1;
+
+    // Ciclo que espera a que cambie el tiempo de espera.
+    private static final byte DELAY = 2;
+
+    // Ciclo que espera a que cambie el estado de una tecla.
+    private static final byte KEY = 3;
+
+    // Salto a si mismo.
+    private static final byte HALT = 4;
+
+    // Tamano maximo de un ciclo en bytes.
+    private static final int MAX_LOOP_BYTES = 6;
+
+    // Memoria de la cual se leen las instrucciones.
+    private final Memory memory;
+
+    // Tipo de ciclo que inicia en cada direccion.
+    private final byte[] loops;
+
+    public IdleLoopDetector(Memory memory) {
+        this.memory = memory;
+        this.loops = new byte[CACHE_SIZE];
+    }
+
+    /**
+     * Verifica si el contador del programa esta al inicio de un ciclo de
+     * espera que seguira repitiendose, en ese caso aplica al estado del
+     * emulador el resultado de una iteracion.
+     *
+     * @param chip8 instancia del emulador.
+     * @return true si el programa esta en espera.
+     */
+    public boolean idle(Chip8 chip8) {
+        int pc = chip8.register.getPC();
+        int slot = pc - Memory.PROGRAM_INIT;
+        if (0 > slot || CACHE_SIZE <= slot) {
+            return false;
+        }
+
+        byte loop = this.loops[slot];
+        if (UNKNOWN == loop) {
+            loop = this.analyze(pc);
+            this.loops[slot] = loop;
+        }
+
+        switch (loop) {
+            case DELAY:
+                return this.delay(pc, chip8);
+            case KEY:
+                return this.key(pc, chip8);
+            case HALT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Evalua una iteracion del ciclo Fx07, 3xkk o 4xkk, 1nnn.
+     */
+    private boolean delay(int pc, Chip8 chip8) {
+        int load = this.memory.readWord(pc);
+        int skip = this.memory.readWord(pc + 2);
+
+        int dt = chip8.register.getDT();
+        boolean skipped = (dt == OPCode.kk(skip))
+                == (0x3 == OPCode.instruction(skip));
+        if (skipped) {
+            return false;
+        }
+
+        // Estado que deja cada iteracion del ciclo.
+        chip8.register.set(OPCode.x(load), dt);
+
+        return true;
+    }
+
+    /**
+     * Evalua una iteracion del ciclo Ex9E o ExA1, 1nnn.
+     */
+    private boolean key(int pc, Chip8 chip8) {
+        int opcode = this.memory.readWord(pc);
+
+        int key = chip8.register.get(OPCode.x(opcode));
+        if (0xF < key) {
+            // La instruccion genera un error, se deja que se ejecute.
+            return false;
+        }
+
+        boolean down = chip8.keyboard.isKeyDown(key);
+
+        // Ex9E salta si la tecla esta pulsada, ExA1 si no lo esta.
+        return (0x9E == OPCode.kk(opcode)) != down;
+    }
+
+    /**
+     * Determina el tipo de ciclo que inicia en la direccion especificada.
+     */
+    private byte analyze(int pc) {
+        if (Memory.PROGRAM_END <= pc) {
+            return NONE;
+        }
+
+        int self = 0x1000 | pc;
+        int first = this.memory.readWord(pc);
+        if (self == first) {
+            return HALT;
+        }
+
+        if (Memory.PROGRAM_END <= pc + 2) {
+            return NONE;
+        }
+
+        int second = this.memory.readWord(pc + 2);
+        int firstKK = OPCode.kk(first);
+        if (0xE == OPCode.instruction(first)
+                && (0x9E == firstKK || 0xA1 == firstKK)) {
+            return self == second ? KEY : NONE;
+        }
+
+        if (0xF007 != (first & 0xF0FF) || Memory.PROGRAM_END <= pc + 4) {
+            return NONE;
+        }
+
+        int secondInstruction = OPCode.instruction(second);
+        if ((0x3 == secondInstruction || 0x4 == secondInstruction)
+                && OPCode.x(first) == OPCode.x(second)
+                && self == this.memory.readWord(pc + 4)) {
+            return DELAY;
+        }
+
+        return NONE;
+    }
+
+    @Override
+    public void onWrite(int address) {
+        int slot = address - Memory.PROGRAM_INIT;
+        for (int start = Math.max(0, slot - MAX_LOOP_BYTES + 1);
+                start <= slot && CACHE_SIZE > start; start++) {
+            this.loops[start] = UNKNOWN;
+        }
+    }
+
+    /**
+     * Descarta los ciclos analizados, se utiliza al cargar una nueva ROM.
+     */
+    public void clear() {
+        Arrays.fill(this.loops, UNKNOWN);
+    }
+}
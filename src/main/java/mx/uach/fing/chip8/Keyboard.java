@@ -16,6 +16,8 @@
  */
 package mx.uach.fing.chip8;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  *
  * @author Luis Chávez
@@ -26,19 +28,50 @@ public class Keyboard {
     private final boolean[] keys;
 
     // Indica si se espera por la pulsacion de una tecla.
-    private boolean wait;
+    private volatile boolean wait;
+
+    // Registro donde se guardara la tecla esperada.
+    private int target;
+
+    // Tecla pulsada durante la espera, -1 si no se ha pulsado, los eventos
+    // llegan desde otro hilo.
+    private final AtomicInteger found;
+
+    // Funcion que se aplicara cuando cambie el estado de una tecla.
+    private StatusListener statusListener;
 
-    // Funcion que se aplicara cuando se encuentre una tecla.
-    private KeyListener listener;
+    // Estado en el cual se reportan los errores, por defecto se lanzan excepciones.
+    private FaultStatus faultStatus;
 
     public Keyboard() {
         this.keys = new boolean[16];
         this.wait = false;
-        this.listener = null;
+        this.found = new AtomicInteger(-1);
+        this.faultStatus = new FaultStatus();
     }
 
     /**
-     * Verifica si el teclado esta esperando por una tecla.
+     * Establece el estado en el cual se reportan los errores al consultar una tecla.
+     *
+     * @param faultStatus estado de error compartido.
+     */
+    public void setFaultStatus(FaultStatus faultStatus) {
+        this.faultStatus = faultStatus;
+    }
+
+    /**
+     * Establece el listener para los eventos de cambio de estado de las
+     * teclas.
+     *
+     * @param statusListener listener a agregar.
+     */
+    public void setStatusListener(StatusListener statusListener) {
+        this.statusListener = statusListener;
+    }
+
+    /**
+     * Verifica si el teclado esta esperando por una tecla, la espera termina
+     * cuando el emulador toma la tecla con {@link #takeKey()}.
      *
      * @return true si esta esperando una tecla, false de otra manera.
      */
@@ -46,14 +79,84 @@ public class Keyboard {
         return this.wait;
     }
 
+    /**
+     * Verifica si se pulso una tecla durante la espera.
+     *
+     * @return true si hay una tecla que el emulador no ha tomado.
+     */
+    public boolean isKeyFound() {
+        return 0 <= this.found.get();
+    }
+
+    /**
+     * Obtiene el registro donde se guardara la tecla esperada.
+     *
+     * @return indice del registro.
+     */
+    public int getWaitTarget() {
+        return this.target;
+    }
+
     /**
      * Indica que se espera por la pulsacion de una tecla.
      *
-     * @param listener funcion que se aplica cuando se pula una tecla.
+     * @param target registro donde se guardara la tecla.
      */
-    public void waitKey(KeyListener listener) {
+    public void waitKey(int target) {
+        this.target = target;
+        this.found.set(-1);
         this.wait = true;
-        this.listener = listener;
+    }
+
+    /**
+     * Toma la tecla pulsada durante la espera y termina la espera, solo lo
+     * llama el hilo del emulador.
+     *
+     * @return tecla pulsada, -1 si no se espera una tecla o no se ha pulsado.
+     */
+    public int takeKey() {
+        if (!this.wait) {
+            return -1;
+        }
+
+        int key = this.found.get();
+        if (0 <= key) {
+            this.wait = false;
+        }
+
+        return key;
+    }
+
+    /**
+     * Guarda el estado de las teclas y de la espera en una captura del
+     * estado.
+     *
+     * @param state captura del estado.
+     */
+    public void save(MachineState state) {
+        byte[] data = state.array();
+        for (int key = 0; key < this.keys.length; key++) {
+            data[MachineState.KEYS + key] = (byte) (this.keys[key] ? 1 : 0);
+        }
+        data[MachineState.KEY_WAIT] = (byte) (this.wait ? 1 : 0);
+        data[MachineState.KEY_TARGET] = (byte) this.target;
+        data[MachineState.KEY_FOUND] = (byte) this.found.get();
+    }
+
+    /**
+     * Restaura el estado de las teclas y de la espera de una captura del
+     * estado.
+     *
+     * @param state captura del estado.
+     */
+    public void restore(MachineState state) {
+        byte[] data = state.array();
+        for (int key = 0; key < this.keys.length; key++) {
+            this.keys[key] = 0 != data[MachineState.KEYS + key];
+        }
+        this.target = data[MachineState.KEY_TARGET] & 0xF;
+        this.found.set(data[MachineState.KEY_FOUND]);
+        this.wait = 0 != data[MachineState.KEY_WAIT];
     }
 
     /**
@@ -72,11 +175,14 @@ public class Keyboard {
 
         this.keys[key] = down;
 
-        // Verifica si se esta esperando por la tecla, si esta pulada la guarda.
-        if (down && this.wait && null != listener) {
-            this.wait = false;
-            this.listener.onKeyFound(key);
-            this.listener = null;
+        // Verifica si se esta esperando por la tecla, si esta pulada la guarda
+        // para que el emulador la tome en su hilo.
+        if (down && this.wait) {
+            this.found.compareAndSet(-1, key);
+        }
+
+        if (null != this.statusListener) {
+            this.statusListener.onKeyStatusChanged(key, down);
         }
     }
 
@@ -108,6 +214,9 @@ public class Keyboard {
     public boolean isKeyDown(int key) throws InvalidKeyException {
         // Verifica si la tecla es valida.
         if (0 > key || 0xF < key) {
+            if (this.faultStatus.report(FaultStatus.INVALID_KEY, key)) {
+                return false;
+            }
             throw new InvalidKeyException(String.format("La tecla %x no es valida", key));
         }
 
@@ -115,15 +224,16 @@ public class Keyboard {
     }
 
     /**
-     * Listener para la escucha de eventos de teclado.
+     * Listener para la escucha de cambios de estado de las teclas.
      */
-    public interface KeyListener {
+    public interface StatusListener {
 
         /**
-         * Se activa cuando se encuentra la pulsacion de una tecla.
+         * Se activa cuando se pulsa o se suelta una tecla.
          *
-         * @param key tecla encontrada.
+         * @param key tecla modificada.
+         * @param down true si la tecla esta pulsada, false de otra manera.
          */
-        public void onKeyFound(int key);
+        public void onKeyStatusChanged(int key, boolean down);
     }
 }
@@ -0,0 +1,361 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Planificador que ejecuta varios emuladores en un grupo fijo de hilos.
+ *
+ * Un hilo despachador revisa a TIMER_HZ los emuladores registrados y envia
+ * los cuadros pendientes de cada uno a un ForkJoinPool, los hilos del pool
+ * se roban el trabajo entre ellos de manera que un emulador lento no retrasa
+ * a los demas. Un emulador solo ejecuta un cuadro a la vez y los emuladores
+ * no tienen un hilo propio.
+ *
+ * Un emulador registrado se considera en ejecucion, Chip8.stop() lo elimina
+ * del planificador al terminar su cuadro y Chip8.awaitTermination() espera a
+ * que se elimine.
+ *
+ * @author Luis Chávez
+ */
+public class MachineScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MachineScheduler.class);
+
+    // Emuladores registrados.
+    private final Map<Chip8, Slot> slots;
+
+    // Hilos que ejecutan los cuadros.
+    private final ForkJoinPool pool;
+
+    // Hilo que envia los cuadros al pool.
+    private final Thread dispatcher;
+
+    // Bandera que indica que el planificador esta activo.
+    private volatile boolean running;
+
+    /**
+     * Crea el planificador con un hilo por procesador.
+     */
+    public MachineScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Crea el planificador.
+     *
+     * @param workers numero de hilos que ejecutan los cuadros.
+     */
+    public MachineScheduler(int workers) {
+        if (0 >= workers) {
+            throw new IllegalArgumentException(String.format("El numero de hilos %d no es valido", workers));
+        }
+
+        this.slots = new ConcurrentHashMap<>();
+        this.pool = new ForkJoinPool(workers);
+        this.running = true;
+
+        this.dispatcher = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, "CHIP-8 SCHEDULER");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Registra un emulador, su primer cuadro se ejecuta de inmediato.
+     *
+     * @param chip8 emulador a ejecutar.
+     * @throws IllegalStateException si el planificador se detuvo o si el
+     * emulador ya se ejecuta en su propio hilo o en un planificador.
+     */
+    public void register(Chip8 chip8) {
+        if (!this.running) {
+            throw new IllegalStateException("El planificador se detuvo");
+        }
+
+        chip8.attach();
+        chip8.getPacing().reset(System.nanoTime());
+        this.slots.put(chip8, new Slot(chip8));
+        LockSupport.unpark(this.dispatcher);
+    }
+
+    /**
+     * Elimina un emulador, si esta ejecutando un cuadro este termina y el
+     * emulador se libera al final del cuadro.
+     *
+     * @param chip8 emulador a eliminar.
+     * @return true si el emulador estaba registrado.
+     */
+    public boolean unregister(Chip8 chip8) {
+        Slot slot = this.slots.remove(chip8);
+        if (null == slot) {
+            return false;
+        }
+
+        slot.release();
+
+        return true;
+    }
+
+    /**
+     * Verifica si un emulador esta registrado.
+     *
+     * @param chip8 emulador.
+     * @return true si el emulador esta registrado.
+     */
+    public boolean isRegistered(Chip8 chip8) {
+        return this.slots.containsKey(chip8);
+    }
+
+    /**
+     * Obtiene el numero de emuladores registrados.
+     *
+     * @return numero de emuladores.
+     */
+    public int getMachineCount() {
+        return this.slots.size();
+    }
+
+    /**
+     * Obtiene el numero de hilos que ejecutan los cuadros.
+     *
+     * @return numero de hilos.
+     */
+    public int getWorkerCount() {
+        return this.pool.getParallelism();
+    }
+
+    /**
+     * Obtiene el retraso de un emulador, el tiempo entre el inicio programado
+     * de su cuadro pendiente mas antiguo y el momento actual.
+     *
+     * @param chip8 emulador.
+     * @return retraso en nanosegundos, 0 si esta al dia o no esta registrado.
+     */
+    public long getLag(Chip8 chip8) {
+        Slot slot = this.slots.get(chip8);
+
+        return null == slot ? 0 : Math.max(0, System.nanoTime() - slot.pacing.getNext());
+    }
+
+    /**
+     * Obtiene el numero de cuadros de un emulador que ya debieron iniciar y
+     * no se han ejecutado.
+     *
+     * @param chip8 emulador.
+     * @return numero de cuadros pendientes, 0 si no esta registrado.
+     */
+    public int getQueueDepth(Chip8 chip8) {
+        Slot slot = this.slots.get(chip8);
+        if (null == slot) {
+            return 0;
+        }
+
+        long late = System.nanoTime() - slot.pacing.getNext();
+
+        return 0 > late ? 0 : (int) Math.min(Integer.MAX_VALUE, late / Chip8.FRAME_NANOS + 1);
+    }
+
+    /**
+     * Obtiene el numero de cuadros enviados al pool que no han iniciado.
+     *
+     * @return numero de tareas en espera.
+     */
+    public long getQueuedFrames() {
+        return this.pool.getQueuedSubmissionCount() + this.pool.getQueuedTaskCount();
+    }
+
+    /**
+     * Detiene el planificador, los cuadros en ejecucion terminan.
+     */
+    public void shutdown() {
+        this.running = false;
+        LockSupport.unpark(this.dispatcher);
+        this.pool.shutdown();
+        for (Chip8 chip8 : this.slots.keySet()) {
+            this.unregister(chip8);
+        }
+    }
+
+    /**
+     * Ciclo del despachador, envia los cuadros pendientes y se suspende hasta
+     * el siguiente cuadro programado.
+     */
+    private void dispatch() {
+        while (this.running) {
+            long now = System.nanoTime();
+            long wake = now + Chip8.FRAME_NANOS;
+
+            for (Slot slot : this.slots.values()) {
+                if (!slot.chip8.isRunning()) {
+                    // Se llamo a stop(), si esta ejecutando un cuadro la
+                    // tarea lo elimina al terminar.
+                    if (slot.scheduled.compareAndSet(false, true)) {
+                        slot.finish();
+                    }
+                    continue;
+                }
+
+                long next = slot.pacing.getNext();
+                if (next - now <= 0) {
+                    // El emulador ejecuta un solo cuadro a la vez.
+                    if (slot.scheduled.compareAndSet(false, true)) {
+                        if (!slot.isReady()) {
+                            // Espera una tecla o esta en pausa, se revisa en
+                            // el siguiente cuadro sin ejecutarlo.
+                            slot.pacing.resync(now + Chip8.FRAME_NANOS);
+                            slot.scheduled.set(false);
+                        } else {
+                            try {
+                                this.pool.execute(slot);
+                            } catch (RejectedExecutionException ex) {
+                                // El planificador se detuvo.
+                                slot.finish();
+                            }
+                        }
+                    }
+                } else if (next - wake < 0) {
+                    wake = next;
+                }
+            }
+
+            LockSupport.parkNanos(this, wake - now);
+        }
+    }
+
+    /**
+     * Estado de un emulador registrado, ejecuta sus cuadros pendientes.
+     */
+    private class Slot implements Runnable {
+
+        private final Chip8 chip8;
+
+        // Calendario de cuadros del emulador.
+        private final PacingController pacing;
+
+        // Indica si hay una tarea del emulador en el pool, el hilo que lo
+        // activa es el unico que puede ejecutar o liberar el emulador. Un
+        // emulador liberado lo conserva activo para siempre.
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Slot(Chip8 chip8) {
+            this.chip8 = chip8;
+            this.pacing = chip8.getPacing();
+        }
+
+        /**
+         * Verifica si el emulador tiene un cuadro que ejecutar, en pausa solo
+         * se ejecutan los cuadros solicitados con stepFrame().
+         */
+        boolean isReady() {
+            return this.chip8.isPaused()
+                    ? this.chip8.hasPendingSteps() : !this.chip8.isBlocked();
+        }
+
+        /**
+         * Libera el emulador si no tiene una tarea en el pool, de otra
+         * manera la tarea lo libera al terminar su cuadro.
+         */
+        void release() {
+            if (this.scheduled.compareAndSet(false, true)) {
+                this.chip8.detach();
+            }
+        }
+
+        /**
+         * Elimina el emulador del planificador y lo libera, solo lo llama el
+         * hilo que activo scheduled.
+         */
+        void finish() {
+            slots.remove(this.chip8, this);
+            this.chip8.detach();
+        }
+
+        @Override
+        public void run() {
+            boolean finished = !this.chip8.isRunning();
+            try {
+                if (finished) {
+                    // Se llamo a stop() despues de enviar el cuadro.
+                } else if (this.chip8.isPaused()) {
+                    while (this.chip8.takeStep()) {
+                        this.chip8.runFrame();
+                    }
+                    this.pacing.resync(System.nanoTime() + Chip8.FRAME_NANOS);
+                } else {
+                    this.runFrames();
+                }
+
+                if (this.chip8.isExited() || null != this.chip8.getFault()
+                        || this.chip8.getFaultStatus().hasFault()) {
+                    LOGGER.debug("CHIP 8 finished, removing it from the scheduler");
+                    finished = true;
+                }
+            } catch (RuntimeException ex) {
+                LOGGER.error("CHIP 8 frame failed", ex);
+                finished = true;
+            }
+
+            if (finished || !this.chip8.isRunning()) {
+                this.finish();
+                return;
+            }
+
+            this.scheduled.set(false);
+            if (this != slots.get(this.chip8)) {
+                // Se elimino con unregister() durante el cuadro.
+                this.release();
+                return;
+            }
+
+            // El siguiente cuadro pudo vencer mientras se ejecutaba este.
+            if (running && System.nanoTime() - this.pacing.getNext() >= 0) {
+                LockSupport.unpark(dispatcher);
+            }
+        }
+
+        /**
+         * Ejecuta los cuadros que ya debieron iniciar, solo se dibuja el
+         * ultimo.
+         */
+        private void runFrames() {
+            int frames = this.pacing.due(System.nanoTime());
+            if (0 == frames) {
+                return;
+            }
+
+            for (; 1 < frames; frames--) {
+                this.chip8.runFrame(false);
+            }
+            this.chip8.runFrame();
+        }
+    }
+}
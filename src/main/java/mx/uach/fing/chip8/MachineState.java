@@ -0,0 +1,280 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Estado completo de un emulador en un solo arreglo de bytes.
+ *
+ * Cada componente guarda su estado en una region fija del arreglo, los
+ * valores de mas de un byte se guardan en little endian. Las capturas se
+ * pueden reutilizar, por lo que guardar o restaurar un estado no crea
+ * objetos, y copiar una captura a otra es una sola copia del arreglo.
+ *
+ * No se guardan el generador de numeros aleatorios, los contadores de ciclos
+ * y cuadros ni el codigo traducido.
+ *
+ * En disco una captura tiene un encabezado (magic, version y tamano del
+ * estado), el arreglo del estado y el CRC32 de los bytes anteriores, todo en
+ * little endian. Los archivos se escriben en un archivo temporal que se
+ * renombra de forma atomica y se leen mapeando el archivo en memoria.
+ *
+ * @author Luis Chávez
+ */
+public class MachineState {
+
+    // Version de la distribucion, cambia cuando cambia alguna region.
+    public static final int VERSION = 1;
+
+    // Identificador de los archivos de estado, "C8ST".
+    public static final int MAGIC = 0x43385354;
+
+    // Extension de los archivos de estado.
+    public static final String EXTENSION = ".c8s";
+
+    // Memoria, Memory.MEMORY_SIZE bytes.
+    public static final int MEMORY = 0;
+
+    // Registros V0 a VF, un byte cada uno.
+    public static final int REGISTERS = MEMORY + Memory.MEMORY_SIZE;
+
+    // Registro I, 2 bytes.
+    public static final int REGISTER_I = REGISTERS + Register.REGISTER_SIZE;
+
+    // Contador del programa, 2 bytes.
+    public static final int PC = REGISTER_I + 2;
+
+    // Contador dt, 1 byte.
+    public static final int DT = PC + 2;
+
+    // Contador st, 1 byte.
+    public static final int ST = DT + 1;
+
+    // Puntero de la pila, 1 byte.
+    public static final int SP = ST + 1;
+
+    // Direcciones de la pila, 2 bytes cada una.
+    public static final int STACK = SP + 1;
+
+    // Estado de las teclas, 1 byte cada una.
+    public static final int KEYS = STACK + Stack.STACK_SIZE * 2;
+
+    // 1 si se espera una tecla, 1 byte.
+    public static final int KEY_WAIT = KEYS + 16;
+
+    // Registro donde se guardara la tecla esperada, 1 byte.
+    public static final int KEY_TARGET = KEY_WAIT + 1;
+
+    // Tecla pulsada durante la espera, 0xFF si no se ha pulsado, 1 byte.
+    public static final int KEY_FOUND = KEY_TARGET + 1;
+
+    // Banderas del emulador, 1 byte.
+    public static final int FLAGS = KEY_FOUND + 1;
+
+    // Pixeles de la pantalla, un byte por pixel, en modo estandar solo se
+    // utilizan los primeros.
+    public static final int SCREEN = FLAGS + 1;
+
+    // Numero maximo de pixeles de la pantalla.
+    public static final int SCREEN_SIZE
+            = VRAM.EXTENDED_SCREEN_WIDTH * VRAM.EXTENDED_SCREEN_HEIGHT;
+
+    // Tamano del estado en bytes.
+    public static final int SIZE = SCREEN + SCREEN_SIZE;
+
+    // Tamano del encabezado de los archivos: magic, version, tamano.
+    private static final int HEADER_SIZE = 4 + 4 + 4;
+
+    // Tamano de los archivos de estado, el estado va seguido del CRC32.
+    public static final int FILE_SIZE = HEADER_SIZE + SIZE + 4;
+
+    // Bandera del modo extendido del emulador.
+    public static final int FLAG_EXTENDED = 1;
+
+    // Bandera del modo extendido de la pantalla.
+    public static final int FLAG_EXTENDED_SCREEN = 2;
+
+    // Bandera del programa terminado con 00FD.
+    public static final int FLAG_EXITED = 4;
+
+    // Arreglo con el estado.
+    private final byte[] data;
+
+    // Vista del arreglo para los valores de mas de un byte.
+    private final ByteBuffer buffer;
+
+    public MachineState() {
+        this.data = new byte[SIZE];
+        this.buffer = ByteBuffer.wrap(this.data).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Obtiene el arreglo con el estado.
+     *
+     * @return arreglo de {@link #SIZE} bytes.
+     */
+    public byte[] array() {
+        return this.data;
+    }
+
+    /**
+     * Obtiene la vista en little endian del arreglo.
+     *
+     * @return vista del arreglo.
+     */
+    public ByteBuffer buffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Copia otra captura en esta.
+     *
+     * @param state captura a copiar.
+     */
+    public void copyFrom(MachineState state) {
+        System.arraycopy(state.data, 0, this.data, 0, SIZE);
+    }
+
+    /**
+     * Activa o desactiva una bandera.
+     *
+     * @param flag bandera a modificar.
+     * @param value true para activarla.
+     */
+    public void setFlag(int flag, boolean value) {
+        this.data[FLAGS] = (byte) (value
+                ? this.data[FLAGS] | flag : this.data[FLAGS] & ~flag);
+    }
+
+    /**
+     * Verifica si una bandera esta activa.
+     *
+     * @param flag bandera a verificar.
+     * @return true si la bandera esta activa.
+     */
+    public boolean hasFlag(int flag) {
+        return 0 != (this.data[FLAGS] & flag);
+    }
+
+    /**
+     * Escribe la captura en un archivo, el archivo se reemplaza de forma
+     * atomica, por lo que nunca se observa un archivo incompleto. El archivo
+     * temporal tiene un nombre fijo, por lo que no se debe escribir el mismo
+     * archivo desde varios hilos a la vez.
+     *
+     * @param file archivo destino.
+     * @throws IOException si no se puede escribir el archivo.
+     */
+    public void write(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(SIZE);
+        header.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, HEADER_SIZE);
+        crc.update(this.data, 0, SIZE);
+
+        ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.putInt((int) crc.getValue());
+        trailer.flip();
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            // Los tres bloques se escriben con una sola llamada y sin copiar
+            // el estado.
+            ByteBuffer[] buffers = {header, ByteBuffer.wrap(this.data), trailer};
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long remaining = FILE_SIZE;
+                while (0 < remaining) {
+                    remaining -= channel.write(buffers);
+                }
+                // El contenido debe llegar al disco antes del renombrado, de
+                // otra manera una falla puede dejar un archivo vacio en lugar
+                // de la ultima captura.
+                channel.force(false);
+            }
+
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temporary = null;
+        } finally {
+            if (null != temporary) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /**
+     * Lee una captura de un archivo, el archivo se verifica completo antes de
+     * modificar la captura, por lo que un archivo no valido no la altera.
+     *
+     * @param file archivo con la captura.
+     * @throws IOException si no se puede leer el archivo, si es de otra
+     * version o si esta dañado.
+     */
+    public void read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (HEADER_SIZE > size) {
+                throw new IOException("Archivo de estado incompleto: " + file);
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (MAGIC != buffer.getInt(0)) {
+                throw new IOException("No es un archivo de estado: " + file);
+            }
+            if (VERSION != buffer.getInt(4) || SIZE != buffer.getInt(8)) {
+                throw new IOException(String.format(
+                        "Version del archivo de estado no soportada: %d", buffer.getInt(4)));
+            }
+            if (FILE_SIZE != size) {
+                throw new IOException("Archivo de estado incompleto: " + file);
+            }
+
+            int stored = buffer.getInt(FILE_SIZE - 4);
+            CRC32 crc = new CRC32();
+            buffer.limit(FILE_SIZE - 4);
+            crc.update(buffer);
+            if ((int) crc.getValue() != stored) {
+                throw new IOException("CRC no valido en el archivo de estado: " + file);
+            }
+
+            buffer.position(HEADER_SIZE);
+            buffer.get(this.data, 0, SIZE);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Crea los hilos que ejecutan un emulador con {@link Chip8#start(boolean)}.
+ *
+ * El ciclo de ejecucion se suspende con LockSupport entre cuadros, por lo que
+ * un hilo virtual libera su hilo de plataforma mientras espera. Los hilos
+ * virtuales se crean con reflexion para compilar con Java 17, si la JVM no
+ * los soporta se crea un hilo de plataforma.
+ *
+ * @author Luis Chávez
+ */
+public final class MachineThreads {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MachineThreads.class);
+
+    // Thread.ofVirtual(), null si la JVM no soporta hilos virtuales.
+    private static final Method OF_VIRTUAL;
+
+    // Thread.Builder.name(String).
+    private static final Method NAME;
+
+    // Thread.Builder.unstarted(Runnable).
+    private static final Method UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+
+            // En las versiones preliminares ofVirtual() lanza una excepcion.
+            ofVirtual.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            LOGGER.debug("Virtual threads not available: {}", ex.toString());
+            ofVirtual = null;
+        }
+
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    private MachineThreads() {
+    }
+
+    /**
+     * Verifica si la JVM soporta hilos virtuales.
+     *
+     * @return true si se pueden crear hilos virtuales.
+     */
+    public static boolean isVirtualAvailable() {
+        return null != OF_VIRTUAL;
+    }
+
+    /**
+     * Crea un hilo sin iniciarlo.
+     *
+     * @param task tarea del hilo.
+     * @param name nombre del hilo.
+     * @param virtual true para crear un hilo virtual si la JVM lo soporta.
+     * @return hilo creado.
+     */
+    public static Thread newThread(Runnable task, String name, boolean virtual) {
+        if (virtual && null != OF_VIRTUAL) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+
+                return (Thread) UNSTARTED.invoke(builder, task);
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException(ex);
+            } catch (InvocationTargetException ex) {
+                throw new IllegalStateException(ex.getCause());
+            }
+        }
+
+        return new Thread(task, name);
+    }
+}
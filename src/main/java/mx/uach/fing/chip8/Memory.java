@@ -16,6 +16,8 @@
  */
 package mx.uach.fing.chip8;
 
+import java.util.Arrays;
+
 /**
  *
  * @author Luis Chávez
@@ -308,14 +310,21 @@ public class Memory {
     // Fin de los programas en memoria, 0xFFF (4095).
     public static final int PROGRAM_END = 0xFFF;
 
-    // Arreglo que representa la memoria en bytes.
-    private final int[] ram;
+    // Arreglo que representa la memoria en bytes, se leen con & 0xFF.
+    private final byte[] ram;
 
     // Indice de la primera instruccion del programa.
     private int programIndex;
 
+    // Funcion que se aplicara cuando se escriba en memoria.
+    private WriteListener listener;
+
+    // Estado en el cual se reportan los errores, por defecto se lanzan excepciones.
+    private FaultStatus faultStatus;
+
     public Memory() {
-        this.ram = new int[MEMORY_SIZE];
+        this.ram = new byte[MEMORY_SIZE];
+        this.faultStatus = new FaultStatus();
 
         this.loadFont();
     }
@@ -326,10 +335,10 @@ public class Memory {
     private void loadFont() {
         // Copia la fuente en memoria.
         for (int i = 0; i < FONT.length; i++) {
-            this.ram[FONT_INIT + i] = FONT[i] & 0xFF;
+            this.ram[FONT_INIT + i] = (byte) FONT[i];
         }
         for (int i = 0; i < EXTENDED_FONT.length; i++) {
-            this.ram[EXTENDED_FONT_INIT + i] = EXTENDED_FONT[i] & 0xFFFF;
+            this.ram[EXTENDED_FONT_INIT + i] = (byte) EXTENDED_FONT[i];
         }
     }
 
@@ -342,6 +351,24 @@ public class Memory {
         return this.programIndex;
     }
 
+    /**
+     * Establece el listener para los eventos de escritura en memoria.
+     *
+     * @param listener listener a agregar.
+     */
+    public void setListener(WriteListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Establece el estado en el cual se reportan los errores de acceso a memoria.
+     *
+     * @param faultStatus estado de error compartido.
+     */
+    public void setFaultStatus(FaultStatus faultStatus) {
+        this.faultStatus = faultStatus;
+    }
+
     /**
      * Carga una ROM en memoria.
      *
@@ -358,10 +385,7 @@ public class Memory {
         this.programIndex = PROGRAM_INIT;
 
         // Almacena la ROM en memoria.
-        int currentIndex = this.programIndex;
-        for (int i = 0; i < data.length; i++) {
-            this.ram[currentIndex++] = data[i];
-        }
+        System.arraycopy(data, 0, this.ram, this.programIndex, data.length);
     }
 
     /**
@@ -373,10 +397,13 @@ public class Memory {
     public int read(int address) throws InvalidMemoryAddressException {
         // Verifica si la direccion es valida.
         if (MEMORY_INIT > address || PROGRAM_END < address) {
+            if (this.faultStatus.report(FaultStatus.INVALID_MEMORY_ADDRESS, address)) {
+                return 0;
+            }
             throw new InvalidMemoryAddressException(String.format("La direccion 0x%x no es valida", address));
         }
 
-        return this.ram[address];
+        return this.ram[address] & 0xFF;
     }
 
     /**
@@ -390,10 +417,183 @@ public class Memory {
     public void set(int address, int b) throws InvalidMemoryAddressException {
         // Verifica si la direccion es valida.
         if (MEMORY_INIT > address || PROGRAM_END < address) {
+            if (this.faultStatus.report(FaultStatus.INVALID_MEMORY_ADDRESS, address)) {
+                return;
+            }
+            throw new InvalidMemoryAddressException(String.format("La direccion 0x%x no es valida", address));
+        }
+
+        this.ram[address] = (byte) b;
+
+        if (null != this.listener) {
+            this.listener.onWrite(address);
+        }
+    }
+
+    /**
+     * Lee un bloque de memoria.
+     *
+     * Si el bloque excede la memoria se copian los bytes validos y se reporta
+     * la primera direccion no valida, como al leer byte por byte; si no se
+     * lanzan excepciones el resto del destino se llena con 0.
+     *
+     * @param address direccion del primer byte.
+     * @param destination arreglo destino.
+     * @param offset indice del arreglo donde se copia el primer byte.
+     * @param length numero de bytes a leer.
+     * @throws InvalidMemoryAddressException si el bloque excede la memoria.
+     */
+    public void readBlock(int address, byte[] destination, int offset, int length)
+            throws InvalidMemoryAddressException {
+        int valid = this.valid(address, length);
+        if (0 < valid) {
+            System.arraycopy(this.ram, address, destination, offset, valid);
+        }
+
+        if (valid < length) {
+            this.fault(address + valid);
+            Arrays.fill(destination, offset + valid, offset + length, (byte) 0);
+        }
+    }
+
+    /**
+     * Escribe un bloque en memoria.
+     *
+     * Si el bloque excede la memoria se escriben los bytes validos y se
+     * reporta la primera direccion no valida.
+     *
+     * @param address direccion del primer byte.
+     * @param source arreglo origen.
+     * @param offset indice del arreglo con el primer byte.
+     * @param length numero de bytes a escribir.
+     * @throws InvalidMemoryAddressException si el bloque excede la memoria.
+     */
+    public void writeBlock(int address, byte[] source, int offset, int length)
+            throws InvalidMemoryAddressException {
+        int valid = this.valid(address, length);
+        if (0 < valid) {
+            System.arraycopy(source, offset, this.ram, address, valid);
+        }
+        this.written(address, valid);
+
+        if (valid < length) {
+            this.fault(address + valid);
+        }
+    }
+
+    /**
+     * Copia los registros V0 a V(count - 1) a la memoria, se utiliza con la
+     * instruccion Fx55.
+     *
+     * @param register registros a copiar.
+     * @param address direccion donde se copia V0.
+     * @param count numero de registros.
+     * @throws InvalidMemoryAddressException si el bloque excede la memoria.
+     */
+    public void copyFrom(Register register, int address, int count)
+            throws InvalidMemoryAddressException {
+        int valid = this.valid(address, count);
+        register.store(this.ram, address, valid);
+        this.written(address, valid);
+
+        if (valid < count) {
+            this.fault(address + valid);
+        }
+    }
+
+    /**
+     * Carga los registros V0 a V(count - 1) desde la memoria, se utiliza con
+     * la instruccion Fx65. Si no se lanzan excepciones los registros fuera de
+     * la memoria se cargan con 0.
+     *
+     * @param register registros a cargar.
+     * @param address direccion del valor de V0.
+     * @param count numero de registros.
+     * @throws InvalidMemoryAddressException si el bloque excede la memoria.
+     */
+    public void copyTo(Register register, int address, int count)
+            throws InvalidMemoryAddressException {
+        int valid = this.valid(address, count);
+        register.load(this.ram, address, valid);
+
+        if (valid < count) {
+            this.fault(address + valid);
+            for (int index = valid; index < count; index++) {
+                register.set(index, 0);
+            }
+        }
+    }
+
+    /**
+     * Guarda la memoria en una captura del estado.
+     *
+     * @param state captura del estado.
+     */
+    public void save(MachineState state) {
+        System.arraycopy(this.ram, 0, state.array(), MachineState.MEMORY, MEMORY_SIZE);
+    }
+
+    /**
+     * Restaura la memoria de una captura del estado, solo se escriben y se
+     * notifican los bytes que cambian, de manera que el codigo traducido de
+     * las regiones iguales se conserva.
+     *
+     * @param state captura del estado.
+     */
+    public void restore(MachineState state) {
+        final byte[] source = state.array();
+        final int base = MachineState.MEMORY;
+
+        if (null == this.listener) {
+            System.arraycopy(source, base, this.ram, 0, MEMORY_SIZE);
+            return;
+        }
+
+        int address = 0;
+        while (MEMORY_SIZE > address) {
+            int skip = Arrays.mismatch(this.ram, address, MEMORY_SIZE,
+                    source, base + address, base + MEMORY_SIZE);
+            if (0 > skip) {
+                break;
+            }
+
+            address += skip;
+            this.ram[address] = source[base + address];
+            this.listener.onWrite(address);
+            address++;
+        }
+    }
+
+    /**
+     * Obtiene el numero de bytes de un bloque que estan dentro de la memoria.
+     */
+    private int valid(int address, int length) {
+        if (MEMORY_INIT > address || PROGRAM_END < address || 0 >= length) {
+            return 0;
+        }
+
+        return Math.min(length, MEMORY_SIZE - address);
+    }
+
+    /**
+     * Reporta una direccion no valida de un bloque, si se lanzan excepciones
+     * lanza la excepcion.
+     */
+    private void fault(int address) throws InvalidMemoryAddressException {
+        if (!this.faultStatus.report(FaultStatus.INVALID_MEMORY_ADDRESS, address)) {
             throw new InvalidMemoryAddressException(String.format("La direccion 0x%x no es valida", address));
         }
+    }
 
-        this.ram[address] = b & 0xFF;
+    /**
+     * Notifica la escritura de un bloque.
+     */
+    private void written(int address, int length) {
+        if (null != this.listener) {
+            for (int index = 0; index < length; index++) {
+                this.listener.onWrite(address + index);
+            }
+        }
     }
 
     /**
@@ -406,17 +606,44 @@ public class Memory {
      * valida.
      */
     public OPCode readInstruction(int address) throws InvalidMemoryAddressException {
+        return new OPCode(this.readWord(address));
+    }
+
+    /**
+     * Lee una instruccion de la memoria como entero, sin crear un objeto
+     * {@link OPCode}.
+     *
+     * @param address direccion de la cual leer.
+     * @return instruccion almacenada (2 bytes).
+     * @throws InvalidMemoryAddressException si la direccion de memoria no es
+     * valida.
+     */
+    public int readWord(int address) throws InvalidMemoryAddressException {
         // Verifica si la direccion es valida.
         if (this.programIndex > address || PROGRAM_END < address) {
+            if (this.faultStatus.report(FaultStatus.INVALID_MEMORY_ADDRESS, address)) {
+                return 0;
+            }
             throw new InvalidMemoryAddressException(String.format("La direccion 0x%x no es valida", address));
         }
 
-        int b1 = this.read(address);
+        int b1 = this.ram[address] & 0xFF;
         int b2 = this.read(address + 1);
 
         // Se combinan los dos bytes en uno solo, formando una instruccion de 2 bytes.
-        int instr = (b1 << 0x8) | (b2 & 0xFF);
+        return (b1 << 0x8) | b2;
+    }
 
-        return new OPCode(instr);
+    /**
+     * Listener para la escucha de eventos de escritura en memoria.
+     */
+    public interface WriteListener {
+
+        /**
+         * Se activa cuando se escribe un valor en memoria.
+         *
+         * @param address direccion modificada.
+         */
+        public void onWrite(int address);
     }
 }
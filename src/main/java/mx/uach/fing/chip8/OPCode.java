@@ -38,6 +38,66 @@ public class OPCode {
         return this.code & 0xFFFF;
     }
 
+    /**
+     * Obtiene la instruccion de un opcode, los 4 bits mas altos.
+     *
+     * @param code opcode de 2 bytes.
+     * @return instruccion.
+     */
+    public static int instruction(int code) {
+        return (code >> 0xC) & 0xF;
+    }
+
+    /**
+     * Obtiene la direccion de memoria de un opcode, los 12 bits mas bajos.
+     *
+     * @param code opcode de 2 bytes.
+     * @return direccion de memoria.
+     */
+    public static int nnn(int code) {
+        return code & 0xFFF;
+    }
+
+    /**
+     * Obtiene el nibble de un opcode, los 4 bits mas bajos.
+     *
+     * @param code opcode de 2 bytes.
+     * @return valor de 4 bits.
+     */
+    public static int n(int code) {
+        return code & 0xF;
+    }
+
+    /**
+     * Obtiene el indice x de un opcode, los 4 bits mas bajos del primer byte.
+     *
+     * @param code opcode de 2 bytes.
+     * @return valor de 4 bits.
+     */
+    public static int x(int code) {
+        return (code >> 0x8) & 0xF;
+    }
+
+    /**
+     * Obtiene el indice y de un opcode, los 4 bits mas altos del segundo byte.
+     *
+     * @param code opcode de 2 bytes.
+     * @return valor de 4 bits.
+     */
+    public static int y(int code) {
+        return (code >> 0x4) & 0xF;
+    }
+
+    /**
+     * Obtiene el byte kk de un opcode, los 8 bits mas bajos.
+     *
+     * @param code opcode de 2 bytes.
+     * @return byte.
+     */
+    public static int kk(int code) {
+        return code & 0xFF;
+    }
+
     /**
      * Obtiene la instruccion, los 4 bits mas altos del primer byte de la
      * instruccion.
@@ -45,7 +105,7 @@ public class OPCode {
      * @return instruccion.
      */
     public int getInstruction() {
-        return (this.code >> 0xC) & 0xF;
+        return instruction(this.code);
     }
 
     /**
@@ -55,7 +115,7 @@ public class OPCode {
      * @return direccion de memoria.
      */
     public int getAddress() {
-        return this.code & 0xFFF;
+        return nnn(this.code);
     }
 
     /**
@@ -65,7 +125,7 @@ public class OPCode {
      * @return valor de 4 bits.
      */
     public int getNibble() {
-        return this.code & 0xF;
+        return n(this.code);
     }
 
     /**
@@ -74,7 +134,7 @@ public class OPCode {
      * @return valor de 4 bits.
      */
     public int getX() {
-        return (this.code >> 0x8) & 0xF;
+        return x(this.code);
     }
 
     /**
@@ -84,7 +144,7 @@ public class OPCode {
      * @return valor de 4 bits.
      */
     public int getY() {
-        return (this.code >> 0x4) & 0xF;
+        return y(this.code);
     }
 
     /**
@@ -93,7 +153,7 @@ public class OPCode {
      * @return byte.
      */
     public int getByte() {
-        return this.code & 0xFF;
+        return kk(this.code);
     }
 
     @Override
@@ -0,0 +1,237 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8;
+
+/**
+ * Calendario de cuadros de un emulador, compara el tiempo emulado con el
+ * tiempo real.
+ *
+ * Los cuadros se programan en tiempos absolutos (inicio + n cuadros), por lo
+ * que el error de cada espera no se acumula. Si el emulador se retrasa se
+ * ejecutan los cuadros pendientes seguidos, hasta un maximo, y los que
+ * exceden el maximo se descartan. Se registran el retraso, las rafagas de
+ * recuperacion y los cuadros descartados.
+ *
+ * Los tiempos son del reloj del emulador, la velocidad excluye los periodos
+ * en pausa o esperando una tecla.
+ *
+ * @author Luis Chávez
+ */
+public class PacingController {
+
+    // Numero maximo de cuadros que se ejecutan seguidos.
+    private final int maxCatchUp;
+
+    // Inicio programado del siguiente cuadro.
+    private volatile long next;
+
+    // Inicio del periodo actual.
+    private long segmentStart;
+
+    // Tiempo real de los periodos anteriores.
+    private long activeNanos;
+
+    // Cuadros ejecutados.
+    private long frames;
+
+    // Cuadros ejecutados fuera de tiempo para recuperar el retraso.
+    private long caughtUpFrames;
+
+    // Veces que se ejecutaron varios cuadros seguidos.
+    private long bursts;
+
+    // Cuadros descartados por exceder el maximo.
+    private long droppedFrames;
+
+    // Retraso al iniciar el ultimo cuadro.
+    private long drift;
+
+    // Retraso maximo al iniciar un cuadro.
+    private long maxDrift;
+
+    /**
+     * Crea el calendario.
+     *
+     * @param maxCatchUp numero maximo de cuadros que se ejecutan seguidos.
+     */
+    public PacingController(int maxCatchUp) {
+        if (0 >= maxCatchUp) {
+            throw new IllegalArgumentException(String.format("El maximo de cuadros %d no es valido", maxCatchUp));
+        }
+
+        this.maxCatchUp = maxCatchUp;
+    }
+
+    /**
+     * Reinicia el calendario y las metricas, el primer cuadro inicia de
+     * inmediato.
+     *
+     * @param now tiempo actual.
+     */
+    public void reset(long now) {
+        this.next = now;
+        this.segmentStart = now;
+        this.activeNanos = 0;
+        this.frames = 0;
+        this.caughtUpFrames = 0;
+        this.bursts = 0;
+        this.droppedFrames = 0;
+        this.drift = 0;
+        this.maxDrift = 0;
+    }
+
+    /**
+     * Reinicia el calendario sin perder las metricas, se utiliza al salir de
+     * una pausa o de una espera, el tiempo suspendido no se cuenta.
+     *
+     * @param start inicio del siguiente cuadro.
+     */
+    public void resync(long start) {
+        this.activeNanos += Math.max(0, Math.min(start, this.next) - this.segmentStart);
+        this.next = start;
+        this.segmentStart = start;
+    }
+
+    /**
+     * Obtiene los cuadros que se deben ejecutar y los programa, si exceden el
+     * maximo se descartan los mas antiguos.
+     *
+     * @param now tiempo actual.
+     * @return numero de cuadros a ejecutar, 0 si el siguiente cuadro aun no
+     * inicia.
+     */
+    public int due(long now) {
+        long late = now - this.next;
+        if (0 > late) {
+            return 0;
+        }
+
+        this.drift = late;
+        this.maxDrift = Math.max(this.maxDrift, late);
+
+        long count = late / Chip8.FRAME_NANOS + 1;
+        if (this.maxCatchUp < count) {
+            long dropped = count - this.maxCatchUp;
+            this.droppedFrames += dropped;
+            this.next += dropped * Chip8.FRAME_NANOS;
+            count = this.maxCatchUp;
+        }
+
+        if (1 < count) {
+            this.bursts++;
+            this.caughtUpFrames += count - 1;
+        }
+
+        this.frames += count;
+        this.next += count * Chip8.FRAME_NANOS;
+
+        return (int) count;
+    }
+
+    /**
+     * Obtiene el inicio programado del siguiente cuadro.
+     *
+     * @return tiempo del siguiente cuadro.
+     */
+    public long getNext() {
+        return this.next;
+    }
+
+    /**
+     * Obtiene el numero maximo de cuadros que se ejecutan seguidos.
+     *
+     * @return numero maximo de cuadros.
+     */
+    public int getMaxCatchUp() {
+        return this.maxCatchUp;
+    }
+
+    /**
+     * Obtiene el numero de cuadros ejecutados.
+     *
+     * @return numero de cuadros.
+     */
+    public long getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Obtiene el numero de cuadros ejecutados fuera de tiempo, en estos
+     * cuadros no se dibuja la pantalla pero se decrementan los contadores.
+     *
+     * @return numero de cuadros recuperados.
+     */
+    public long getCaughtUpFrames() {
+        return this.caughtUpFrames;
+    }
+
+    /**
+     * Obtiene las veces que se ejecutaron varios cuadros seguidos.
+     *
+     * @return numero de rafagas.
+     */
+    public long getCatchUpBursts() {
+        return this.bursts;
+    }
+
+    /**
+     * Obtiene el numero de cuadros descartados, el tiempo emulado de estos
+     * cuadros se pierde.
+     *
+     * @return numero de cuadros descartados.
+     */
+    public long getDroppedFrames() {
+        return this.droppedFrames;
+    }
+
+    /**
+     * Obtiene el retraso con el que inicio el ultimo cuadro.
+     *
+     * @return retraso en nanosegundos.
+     */
+    public long getDrift() {
+        return this.drift;
+    }
+
+    /**
+     * Obtiene el retraso maximo con el que inicio un cuadro.
+     *
+     * @return retraso en nanosegundos.
+     */
+    public long getMaxDrift() {
+        return this.maxDrift;
+    }
+
+    /**
+     * Obtiene la velocidad del emulador, el tiempo emulado entre el tiempo
+     * real sin contar las pausas.
+     *
+     * @param now tiempo actual.
+     * @return velocidad, 1 es la velocidad real.
+     */
+    public double getSpeed(long now) {
+        long elapsed = this.activeNanos + Math.max(0, now - this.segmentStart);
+        if (0 >= elapsed) {
+            return 1;
+        }
+
+        // El cuadro programado que aun no inicia no se cuenta.
+        long emulated = this.frames * Chip8.FRAME_NANOS - Math.max(0, this.next - Math.max(now, this.segmentStart));
+
+        return (double) emulated / elapsed;
+    }
+}
@@ -0,0 +1,235 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mx.uach.fing.chip8.utils.MemoryUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Perfil de compatibilidad (quirks) de las instrucciones cuyo comportamiento
+ * varia entre CHIP-8 y SCHIP.
+ *
+ * El perfil se elige una vez por maquina, al construir la tabla de despacho se
+ * seleccionan las implementaciones especializadas de cada instruccion, de
+ * manera que al ejecutarlas no se consulta el perfil. Se puede asignar un
+ * perfil a una ROM por su hash SHA-256 con {@link #register(String,
+ * QuirkProfile)} o en el recurso quirks.properties (hash=perfil).
+ *
+ * @author Luis Chávez
+ */
+public final class QuirkProfile {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QuirkProfile.class);
+
+    // Recurso con los perfiles asignados a cada ROM.
+    public static final String RESOURCE = "/quirks.properties";
+
+    // 8xy6 y 8xyE desplazan Vy y guardan el resultado en Vx.
+    public static final int SHIFT_VY = 0x1;
+
+    // Fx55 y Fx65 incrementan I en x + 1.
+    public static final int LOAD_STORE_INCREMENTS_I = 0x2;
+
+    // Dxyn recorta los sprites en el borde de la pantalla en lugar de
+    // continuarlos en el lado opuesto.
+    public static final int CLIP_SPRITES = 0x4;
+
+    // Bxnn salta a xnn + Vx en lugar de nnn + V0.
+    public static final int JUMP_VX = 0x8;
+
+    // Comportamiento original del emulador.
+    public static final QuirkProfile DEFAULT = new QuirkProfile("DEFAULT", 0);
+
+    // Interprete original de la COSMAC VIP.
+    public static final QuirkProfile COSMAC_VIP = new QuirkProfile("COSMAC_VIP",
+            SHIFT_VY | LOAD_STORE_INCREMENTS_I | CLIP_SPRITES);
+
+    // SUPER-CHIP 1.1 de la HP48.
+    public static final QuirkProfile SCHIP = new QuirkProfile("SCHIP",
+            CLIP_SPRITES | JUMP_VX);
+
+    // Perfiles asignados a las ROMs, indexados por su hash.
+    private static final Map<String, QuirkProfile> PROFILES = profiles();
+
+    // Nombre del perfil.
+    private final String name;
+
+    // Combinacion de los quirks activos.
+    private final int flags;
+
+    public QuirkProfile(String name, int flags) {
+        this.name = name;
+        this.flags = flags & (SHIFT_VY | LOAD_STORE_INCREMENTS_I | CLIP_SPRITES | JUMP_VX);
+    }
+
+    /**
+     * Obtiene el nombre del perfil.
+     *
+     * @return nombre del perfil.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Obtiene la combinacion de los quirks activos.
+     *
+     * @return quirks activos.
+     */
+    public int getFlags() {
+        return this.flags;
+    }
+
+    /**
+     * Verifica si 8xy6 y 8xyE desplazan Vy en lugar de Vx.
+     *
+     * @return true si se desplaza Vy.
+     */
+    public boolean isShiftVy() {
+        return 0 != (this.flags & SHIFT_VY);
+    }
+
+    /**
+     * Verifica si Fx55 y Fx65 incrementan I.
+     *
+     * @return true si se incrementa I.
+     */
+    public boolean isLoadStoreIncrementsI() {
+        return 0 != (this.flags & LOAD_STORE_INCREMENTS_I);
+    }
+
+    /**
+     * Verifica si los sprites se recortan en el borde de la pantalla.
+     *
+     * @return true si se recortan, false si continuan en el lado opuesto.
+     */
+    public boolean isClipSprites() {
+        return 0 != (this.flags & CLIP_SPRITES);
+    }
+
+    /**
+     * Verifica si Bxnn salta a xnn + Vx.
+     *
+     * @return true si se utiliza Vx, false si se utiliza V0.
+     */
+    public boolean isJumpVx() {
+        return 0 != (this.flags & JUMP_VX);
+    }
+
+    /**
+     * Asigna un perfil a una ROM.
+     *
+     * @param hash hash SHA-256 de la ROM.
+     * @param profile perfil de la ROM, null para eliminar la asignacion.
+     */
+    public static void register(String hash, QuirkProfile profile) {
+        if (null == profile) {
+            PROFILES.remove(hash.toLowerCase());
+        } else {
+            PROFILES.put(hash.toLowerCase(), profile);
+        }
+    }
+
+    /**
+     * Obtiene el perfil asignado a una ROM.
+     *
+     * @param hash hash SHA-256 de la ROM.
+     * @return perfil asignado, null si la ROM no tiene uno.
+     */
+    public static QuirkProfile forHash(String hash) {
+        return PROFILES.get(hash.toLowerCase());
+    }
+
+    /**
+     * Obtiene el perfil asignado a una ROM.
+     *
+     * @param rom bytes de la ROM.
+     * @return perfil asignado, null si la ROM no tiene uno.
+     */
+    public static QuirkProfile forRom(byte[] rom) {
+        return PROFILES.isEmpty() ? null : forHash(MemoryUtils.sha256(rom));
+    }
+
+    /**
+     * Obtiene uno de los perfiles predefinidos por su nombre.
+     *
+     * @param name nombre del perfil.
+     * @return perfil, null si no existe.
+     */
+    public static QuirkProfile valueOf(String name) {
+        for (QuirkProfile profile : new QuirkProfile[]{DEFAULT, COSMAC_VIP, SCHIP}) {
+            if (profile.name.equalsIgnoreCase(name)) {
+                return profile;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Lee los perfiles asignados en el recurso quirks.properties.
+     */
+    private static Map<String, QuirkProfile> profiles() {
+        Map<String, QuirkProfile> profiles = new ConcurrentHashMap<>();
+
+        try (InputStream input = QuirkProfile.class.getResourceAsStream(RESOURCE)) {
+            if (null == input) {
+                return profiles;
+            }
+
+            Properties properties = new Properties();
+            properties.load(input);
+            for (String hash : properties.stringPropertyNames()) {
+                String name = properties.getProperty(hash).trim();
+                QuirkProfile profile = valueOf(name);
+                if (null == profile) {
+                    LOGGER.warn("Perfil desconocido {} para la ROM {}", name, hash);
+                } else {
+                    profiles.put(hash.toLowerCase(), profile);
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.error("No se pudo leer " + RESOURCE, ex);
+        }
+
+        return profiles;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof QuirkProfile
+                && this.flags == ((QuirkProfile) object).flags;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.flags;
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
@@ -16,6 +16,8 @@
  */
 package mx.uach.fing.chip8;
 
+import java.nio.ByteBuffer;
+
 /**
  *
  * @author Luis Chávez
@@ -52,9 +54,48 @@ public class Register {
     // Bandera que indica que no ocurrio una colision.
     public static final int NOT_COLLISION = 0;
 
+    // No hay una operacion pendiente de calcular VF.
+    public static final int FLAG_NONE = 0;
+
+    // Suma, VF = a > a + b (8xy4).
+    public static final int FLAG_ADD = 1;
+
+    // Resta, VF = a > b (8xy5).
+    public static final int FLAG_SUB = 2;
+
+    // Resta inversa, VF = b > a (8xy7).
+    public static final int FLAG_SUBN = 3;
+
+    // Corrimiento a la derecha, VF = bit menos significativo de a (8xy6).
+    public static final int FLAG_SHR = 4;
+
+    // Corrimiento a la izquierda, VF = bit mas significativo de a (8xyE).
+    public static final int FLAG_SHL = 5;
+
     // Valores almacenados en el registro.
     private final int[] values;
 
+    // Estado en el cual se reportan los errores, por defecto se lanzan excepciones.
+    private FaultStatus faultStatus;
+
+    // Indica si VF se calcula hasta que se lee.
+    private boolean lazyFlags;
+
+    // Ultima operacion que produjo VF y no se ha calculado.
+    private int flagOperation;
+
+    // Primer operando de la operacion pendiente.
+    private int flagA;
+
+    // Segundo operando de la operacion pendiente.
+    private int flagB;
+
+    // Numero de operaciones que produjeron VF.
+    private long flagOperations;
+
+    // Numero de veces que se calculo VF.
+    private long flagEvaluations;
+
     // Registro especial, usualmente se utiliza para almacenar direcciones de memoria.
     private int i;
 
@@ -69,6 +110,117 @@ public class Register {
 
     public Register() {
         this.values = new int[REGISTER_SIZE];
+        this.faultStatus = new FaultStatus();
+        this.lazyFlags = true;
+        this.flagOperation = FLAG_NONE;
+    }
+
+    /**
+     * Establece el estado en el cual se reportan los errores de acceso a los registros.
+     *
+     * @param faultStatus estado de error compartido.
+     */
+    public void setFaultStatus(FaultStatus faultStatus) {
+        this.faultStatus = faultStatus;
+    }
+
+    /**
+     * Verifica si VF se calcula hasta que se lee.
+     *
+     * @return true si el calculo de VF es perezoso.
+     */
+    public boolean isLazyFlags() {
+        return this.lazyFlags;
+    }
+
+    /**
+     * Establece si VF se calcula hasta que se lee, de otra manera se calcula
+     * en cada operacion.
+     *
+     * @param lazyFlags true para calcular VF hasta que se lea.
+     */
+    public void setLazyFlags(boolean lazyFlags) {
+        this.materializeFlag();
+        this.lazyFlags = lazyFlags;
+    }
+
+    /**
+     * Registra una operacion que produce VF, en modo perezoso solo se guardan
+     * la operacion y sus operandos.
+     *
+     * @param operation operacion, FLAG_ADD, FLAG_SUB, FLAG_SUBN, FLAG_SHR o
+     * FLAG_SHL.
+     * @param a valor previo de Vx.
+     * @param b valor previo de Vy.
+     */
+    public void setFlag(int operation, int a, int b) {
+        this.flagOperations++;
+
+        if (this.lazyFlags) {
+            this.flagOperation = operation;
+            this.flagA = a;
+            this.flagB = b;
+        } else {
+            this.flagEvaluations++;
+            this.values[REGISTER_FLAG] = flag(operation, a, b);
+        }
+    }
+
+    /**
+     * Calcula VF para una operacion.
+     *
+     * @param operation operacion que produce VF.
+     * @param a valor previo de Vx.
+     * @param b valor previo de Vy.
+     * @return valor de VF.
+     */
+    public static int flag(int operation, int a, int b) {
+        switch (operation) {
+            case FLAG_ADD:
+                return a > a + b ? CARRY : NOT_CARRY;
+            case FLAG_SUB:
+                return a > b ? NOT_BORROW : BORROW;
+            case FLAG_SUBN:
+                return b > a ? NOT_BORROW : BORROW;
+            case FLAG_SHR:
+                return a & 0x1;
+            case FLAG_SHL:
+                return (a & 0x80) != 0 ? BIT_1 : BIT_0;
+            default:
+                throw new RegisterException(
+                        String.format("La operacion %d no produce VF", operation));
+        }
+    }
+
+    /**
+     * Calcula VF si hay una operacion pendiente.
+     */
+    private void materializeFlag() {
+        if (FLAG_NONE != this.flagOperation) {
+            this.flagEvaluations++;
+            this.values[REGISTER_FLAG]
+                    = flag(this.flagOperation, this.flagA, this.flagB);
+            this.flagOperation = FLAG_NONE;
+        }
+    }
+
+    /**
+     * Obtiene el numero de operaciones que produjeron VF.
+     *
+     * @return numero de operaciones.
+     */
+    public long getFlagOperations() {
+        return this.flagOperations;
+    }
+
+    /**
+     * Obtiene el numero de veces que se calculo VF, en modo perezoso las
+     * operaciones cuyo VF se sobrescribe antes de leerse no se calculan.
+     *
+     * @return numero de calculos de VF.
+     */
+    public long getFlagEvaluations() {
+        return this.flagEvaluations;
     }
 
     /**
@@ -106,6 +258,9 @@ public class Register {
      */
     public void setDT(int dt) throws RegisterException {
         if (0 > dt) {
+            if (this.faultStatus.report(FaultStatus.INVALID_REGISTER_VALUE, dt)) {
+                return;
+            }
             throw new RegisterException("El valor de dt no puede ser menor de 0");
         }
 
@@ -142,6 +297,9 @@ public class Register {
      */
     public void setST(int st) throws RegisterException {
         if (0 > st) {
+            if (this.faultStatus.report(FaultStatus.INVALID_REGISTER_VALUE, st)) {
+                return;
+            }
             throw new RegisterException("El valor de st no puede ser menor de 0");
         }
 
@@ -196,9 +354,16 @@ public class Register {
     public int get(int index) throws InvalidRegisterIndexException {
         // Verifica si el indice del registro es valido.
         if (0 > index || REGISTER_SIZE - 1 < index) {
+            if (this.faultStatus.report(FaultStatus.INVALID_REGISTER_INDEX, index)) {
+                return 0;
+            }
             throw new InvalidRegisterIndexException(String.format("El indice %d no es valido", index));
         }
 
+        if (REGISTER_FLAG == index) {
+            this.materializeFlag();
+        }
+
         return this.values[index];
     }
 
@@ -212,12 +377,116 @@ public class Register {
     public void set(int index, int value) throws InvalidRegisterIndexException {
         // Verifica si el indice del registro es valido.
         if (0 > index || REGISTER_SIZE - 1 < index) {
+            if (this.faultStatus.report(FaultStatus.INVALID_REGISTER_INDEX, index)) {
+                return;
+            }
             throw new InvalidRegisterIndexException(String.format("El indice %d no es valido", index));
         }
 
+        // Escribir VF descarta la operacion pendiente.
+        if (REGISTER_FLAG == index) {
+            this.flagOperation = FLAG_NONE;
+        }
+
         this.values[index] = value & 0xFF;
     }
 
+    /**
+     * Copia los registros V0 a V(count - 1) a un arreglo de bytes.
+     *
+     * @param destination arreglo destino.
+     * @param offset indice del arreglo donde se copia V0.
+     * @param count numero de registros a copiar.
+     * @throws InvalidRegisterIndexException si el numero de registros no es
+     * valido.
+     */
+    public void store(byte[] destination, int offset, int count) throws InvalidRegisterIndexException {
+        if (!this.checkCount(count)) {
+            return;
+        }
+
+        if (REGISTER_FLAG < count) {
+            this.materializeFlag();
+        }
+
+        final int[] values = this.values;
+        for (int index = 0; index < count; index++) {
+            destination[offset + index] = (byte) values[index];
+        }
+    }
+
+    /**
+     * Carga los registros V0 a V(count - 1) desde un arreglo de bytes.
+     *
+     * @param source arreglo origen.
+     * @param offset indice del arreglo con el valor de V0.
+     * @param count numero de registros a cargar.
+     * @throws InvalidRegisterIndexException si el numero de registros no es
+     * valido.
+     */
+    public void load(byte[] source, int offset, int count) throws InvalidRegisterIndexException {
+        if (!this.checkCount(count)) {
+            return;
+        }
+
+        // Escribir VF descarta la operacion pendiente.
+        if (REGISTER_FLAG < count) {
+            this.flagOperation = FLAG_NONE;
+        }
+
+        final int[] values = this.values;
+        for (int index = 0; index < count; index++) {
+            values[index] = source[offset + index] & 0xFF;
+        }
+    }
+
+    /**
+     * Guarda los registros en una captura del estado, VF se calcula si hay
+     * una operacion pendiente.
+     *
+     * @param state captura del estado.
+     */
+    public void save(MachineState state) {
+        this.store(state.array(), MachineState.REGISTERS, REGISTER_SIZE);
+
+        ByteBuffer buffer = state.buffer();
+        buffer.putShort(MachineState.REGISTER_I, (short) this.i);
+        buffer.putShort(MachineState.PC, (short) this.pc);
+        buffer.put(MachineState.DT, (byte) this.dt);
+        buffer.put(MachineState.ST, (byte) this.st);
+    }
+
+    /**
+     * Restaura los registros de una captura del estado.
+     *
+     * @param state captura del estado.
+     */
+    public void restore(MachineState state) {
+        this.load(state.array(), MachineState.REGISTERS, REGISTER_SIZE);
+
+        ByteBuffer buffer = state.buffer();
+        this.i = buffer.getShort(MachineState.REGISTER_I) & 0xFFFF;
+        this.pc = buffer.getShort(MachineState.PC) & 0xFFFF;
+        this.dt = buffer.get(MachineState.DT) & 0xFF;
+        this.st = buffer.get(MachineState.ST) & 0xFF;
+    }
+
+    /**
+     * Verifica el numero de registros de una copia.
+     *
+     * @return false si el numero no es valido y el error se registro.
+     */
+    private boolean checkCount(int count) throws InvalidRegisterIndexException {
+        if (0 > count || REGISTER_SIZE < count) {
+            if (this.faultStatus.report(FaultStatus.INVALID_REGISTER_INDEX, count - 1)) {
+                return false;
+            }
+            throw new InvalidRegisterIndexException(String.format("El indice %d no es valido", count - 1));
+        }
+
+        return true;
+    }
+
     /**
      * Copia un valor de un indice a otro.
      *
@@ -16,6 +16,8 @@
  */
 package mx.uach.fing.chip8;
 
+import java.nio.ByteBuffer;
+
 /**
  *
  * @author Luis Chávez
@@ -31,8 +33,21 @@ public class Stack {
     // Puntero de la pila (Stack pointer), indica la posicion actual. 
     private byte sp;
 
+    // Estado en el cual se reportan los errores, por defecto se lanzan excepciones.
+    private FaultStatus faultStatus;
+
     public Stack() {
         this.addresses = new int[STACK_SIZE];
+        this.faultStatus = new FaultStatus();
+    }
+
+    /**
+     * Establece el estado en el cual se reportan los errores de la pila.
+     *
+     * @param faultStatus estado de error compartido.
+     */
+    public void setFaultStatus(FaultStatus faultStatus) {
+        this.faultStatus = faultStatus;
     }
 
     /**
@@ -45,6 +60,9 @@ public class Stack {
     public int pop() throws StackOverflowException {
         // Verifica si la pila esta vacia, si esta vacia lanza un error.
         if (0 == this.sp) {
+            if (this.faultStatus.report(FaultStatus.STACK_UNDERFLOW, 0)) {
+                return 0;
+            }
             throw new StackOverflowException("La pila esta vacia, no se puede obtener el valor solicitado");
         }
 
@@ -62,10 +80,39 @@ public class Stack {
     public void push(int address) throws StackOverflowException {
         // Verifica si la pila esta llena, si esta llena lanza un error.
         if (STACK_SIZE == this.sp) {
+            if (this.faultStatus.report(FaultStatus.STACK_OVERFLOW, address)) {
+                return;
+            }
             throw new StackOverflowException(String.format("La pila esta llena, no se puede almacenar el valor %x", address));
         }
 
         // Almancena la direccion pero previamente incrementa el puntero.
         this.addresses[this.sp++] = address & 0xFFFF;
     }
+
+    /**
+     * Guarda la pila en una captura del estado.
+     *
+     * @param state captura del estado.
+     */
+    public void save(MachineState state) {
+        ByteBuffer buffer = state.buffer();
+        buffer.put(MachineState.SP, this.sp);
+        for (int index = 0; index < STACK_SIZE; index++) {
+            buffer.putShort(MachineState.STACK + index * 2, (short) this.addresses[index]);
+        }
+    }
+
+    /**
+     * Restaura la pila de una captura del estado.
+     *
+     * @param state captura del estado.
+     */
+    public void restore(MachineState state) {
+        ByteBuffer buffer = state.buffer();
+        this.sp = buffer.get(MachineState.SP);
+        for (int index = 0; index < STACK_SIZE; index++) {
+            this.addresses[index] = buffer.getShort(MachineState.STACK + index * 2) & 0xFFFF;
+        }
+    }
 }
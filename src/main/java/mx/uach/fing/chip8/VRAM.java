@@ -69,13 +69,26 @@ public class VRAM {
     // Funcion que se aplicara cuando se cambie un pixel.
     private BufferListener listener;
 
+    // Estado en el cual se reportan los errores, por defecto se lanzan excepciones.
+    private FaultStatus faultStatus;
+
     /**
      * Inicializa la memoria de video en modo estandar.
      */
     public VRAM() {
+        this.faultStatus = new FaultStatus();
         setMode(false);
     }
 
+    /**
+     * Establece el estado en el cual se reportan los errores de la pantalla.
+     *
+     * @param faultStatus estado de error compartido.
+     */
+    public void setFaultStatus(FaultStatus faultStatus) {
+        this.faultStatus = faultStatus;
+    }
+
     /**
      * Obtiene el ancho de la pantalla.
      *
@@ -198,6 +211,9 @@ public class VRAM {
             throws ScreenPointOutOfBoundsException {
         // Verifica que el punto (x, y) sea valido.
         if ((0 > x || screenWidth < x) || (0 > y || screenHeight < y)) {
+            if (this.faultStatus.report(FaultStatus.SCREEN_POINT_OUT_OF_BOUNDS, x | y << 8)) {
+                return 0;
+            }
             throw new ScreenPointOutOfBoundsException(
                     String.format("El punto (%d, %d) "
                             + "no es valido en la pantalla", x, y));
@@ -230,6 +246,41 @@ public class VRAM {
         }
     }
 
+    /**
+     * Guarda el modo y los pixeles en una captura del estado.
+     *
+     * @param state captura del estado.
+     */
+    public void save(MachineState state) {
+        state.setFlag(MachineState.FLAG_EXTENDED_SCREEN,
+                EXTENDED_SCREEN_WIDTH == this.screenWidth);
+
+        final byte[] data = state.array();
+        final int[] pixels = this.buffer;
+        for (int index = 0; index < this.bufferSize; index++) {
+            data[MachineState.SCREEN + index] = (byte) pixels[index];
+        }
+    }
+
+    /**
+     * Restaura el modo y los pixeles de una captura del estado, el buffer
+     * solo se reemplaza si cambia el modo.
+     *
+     * @param state captura del estado.
+     */
+    public void restore(MachineState state) {
+        boolean extended = state.hasFlag(MachineState.FLAG_EXTENDED_SCREEN);
+        if (extended != (EXTENDED_SCREEN_WIDTH == this.screenWidth)) {
+            this.setMode(extended);
+        }
+
+        final byte[] data = state.array();
+        final int[] pixels = this.buffer;
+        for (int index = 0; index < this.bufferSize; index++) {
+            pixels[index] = data[MachineState.SCREEN + index] & 0xFF;
+        }
+    }
+
     /**
      * Transforma un punto (x, y) en un indice.
      *
@@ -0,0 +1,98 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8;
+
+/**
+ * Reloj virtual guiado por los ciclos ejecutados, cada cuadro ejecuta
+ * exactamente el mismo numero de ciclos y avanza el tiempo 1/TIMER_HZ
+ * segundos sin esperar el tiempo real, de manera que dos ejecuciones de la
+ * misma ROM con las mismas entradas producen el mismo resultado.
+ *
+ * @author Luis Chávez
+ */
+public class VirtualClock implements Clock {
+
+    // Ciclos por cuadro, 0 para calcularlos con la frecuencia del emulador.
+    private final int cyclesPerFrame;
+
+    // Tiempo actual del reloj.
+    private long time = 0;
+
+    // Ciclos por cuadro calculados en el ultimo frameBudget().
+    private int frameCycles = 0;
+
+    // Ciclos ejecutados de mas en los cuadros anteriores, un bloque traducido
+    // puede exceder varios cuadros.
+    private long overrun = 0;
+
+    /**
+     * Crea el reloj con Chip8.CYCLES_PER_FRAME ciclos por cuadro.
+     */
+    public VirtualClock() {
+        this(Chip8.CYCLES_PER_FRAME);
+    }
+
+    /**
+     * Crea el reloj con el numero de ciclos por cuadro especificado.
+     *
+     * @param cyclesPerFrame ciclos entre cada decremento de los contadores, 0
+     * para utilizar clockHz / TIMER_HZ.
+     */
+    public VirtualClock(int cyclesPerFrame) {
+        if (0 > cyclesPerFrame) {
+            throw new IllegalArgumentException(String.format("El numero de ciclos %d no es valido", cyclesPerFrame));
+        }
+
+        this.cyclesPerFrame = cyclesPerFrame;
+    }
+
+    @Override
+    public long nanoTime() {
+        return this.time;
+    }
+
+    @Override
+    public void parkUntil(Object blocker, long deadline) {
+        // El tiempo de espera transcurre de inmediato.
+        this.time = Math.max(this.time, deadline);
+    }
+
+    @Override
+    public int frameBudget(int clockHz) {
+        this.frameCycles = 0 < this.cyclesPerFrame
+                ? this.cyclesPerFrame : Math.max(1, clockHz / Chip8.TIMER_HZ);
+
+        // Las instrucciones que exceden un cuadro (bloques traducidos) se
+        // descuentan de los siguientes, hasta saldar la deuda los cuadros no
+        // ejecutan instrucciones pero los contadores se siguen decrementando.
+        return (int) Math.max(0, this.frameCycles - this.overrun);
+    }
+
+    @Override
+    public void endFrame(int budget, int cycles) {
+        // Un cuadro que termina antes (esperando una tecla) no acumula ciclos
+        // para los siguientes, igual que WallClock.
+        this.overrun += Math.max(cycles, budget) - this.frameCycles;
+        this.time += Chip8.FRAME_NANOS;
+    }
+
+    @Override
+    public void reset() {
+        this.time = 0;
+        this.overrun = 0;
+    }
+}
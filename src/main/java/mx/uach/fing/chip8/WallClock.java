@@ -0,0 +1,63 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reloj de tiempo real, los cuadros se miden con System.nanoTime() y cada uno
+ * ejecuta clockHz / TIMER_HZ ciclos, el residuo se acumula para los
+ * siguientes cuadros.
+ *
+ * @author Luis Chávez
+ */
+public class WallClock implements Clock {
+
+    // Ciclos acumulados para los siguientes cuadros, en unidades de 1/TIMER_HZ.
+    private long frameCredit = 0;
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void parkUntil(Object blocker, long deadline) {
+        long wait = deadline - System.nanoTime();
+        if (0 < wait) {
+            LockSupport.parkNanos(blocker, wait);
+        }
+    }
+
+    @Override
+    public int frameBudget(int clockHz) {
+        this.frameCredit += clockHz;
+
+        return (int) Math.max(0, this.frameCredit / Chip8.TIMER_HZ);
+    }
+
+    @Override
+    public void endFrame(int budget, int cycles) {
+        // Los ciclos ejecutados de mas se descuentan del siguiente cuadro.
+        this.frameCredit -= (long) Math.max(cycles, budget) * Chip8.TIMER_HZ;
+    }
+
+    @Override
+    public void reset() {
+        this.frameCredit = 0;
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.analysis;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import mx.uach.fing.chip8.QuirkProfile;
+import mx.uach.fing.chip8.utils.MemoryUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache en disco del analisis de las ROMs, cada entrada se identifica por el
+ * hash SHA-256 de la ROM y contiene el grafo de control de flujo (los bloques
+ * con sus opcodes decodificados y las regiones de datos).
+ *
+ * Las entradas se leen mapeando el archivo en memoria y se escriben en un
+ * archivo temporal que se renombra de forma atomica, de manera que varias
+ * JVMs pueden compartir el directorio sin ver entradas incompletas. Una
+ * entrada dañada, de otra version del formato o de otra ROM se reconstruye
+ * sin reportar un error.
+ *
+ * @author Luis Chávez
+ */
+public class AnalysisCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnalysisCache.class);
+
+    // Propiedad del sistema con el directorio de la cache.
+    public static final String DIRECTORY_PROPERTY = "chip8.cache.dir";
+
+    // Identificador de los archivos de la cache, "C8AC".
+    public static final int MAGIC = 0x43384143;
+
+    // Version del formato, se incrementa cuando cambia el formato o el
+    // resultado del analisis.
+    public static final int FORMAT_VERSION = 1;
+
+    // Extension de las entradas.
+    public static final String EXTENSION = ".c8a";
+
+    // Tamano del encabezado: magic, version, hash, tamano de la ROM.
+    private static final int HEADER_SIZE = 4 + 4 + 64 + 4;
+
+    // Directorio de la cache.
+    private final Path directory;
+
+    // Analizador utilizado para reconstruir las entradas.
+    private final ControlFlowAnalyzer analyzer;
+
+    // Numero de entradas leidas de la cache.
+    private long hits;
+
+    // Numero de entradas reconstruidas.
+    private long misses;
+
+    public AnalysisCache(Path directory, ControlFlowAnalyzer analyzer) {
+        this.directory = directory;
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * Obtiene el directorio de la cache.
+     *
+     * @return directorio de la cache.
+     */
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Obtiene el analisis de una ROM, lo lee de la cache si existe una entrada
+     * valida, de otra manera analiza la ROM y guarda la entrada.
+     *
+     * @param rom bytes de la ROM.
+     * @return grafo de control de flujo de la ROM.
+     */
+    public ControlFlowGraph get(byte[] rom) {
+        String hash = MemoryUtils.sha256(rom);
+        Path file = this.directory.resolve(this.name(hash));
+
+        ControlFlowGraph graph = this.read(file, hash, rom.length);
+        if (null != graph) {
+            this.hits++;
+            return graph;
+        }
+
+        this.misses++;
+        graph = this.analyzer.analyze(rom);
+        this.write(file, hash, rom.length, graph);
+
+        return graph;
+    }
+
+    /**
+     * Obtiene el nombre de la entrada de una ROM, el analisis depende del
+     * perfil de compatibilidad, por lo que los perfiles distintos al de por
+     * defecto agregan sus quirks al nombre.
+     */
+    private String name(String hash) {
+        QuirkProfile profile = this.analyzer.getQuirkProfile();
+        if (QuirkProfile.DEFAULT.equals(profile)) {
+            return hash + EXTENSION;
+        }
+
+        return String.format("%s-%x%s", hash, profile.getFlags(), EXTENSION);
+    }
+
+    /**
+     * Obtiene el numero de entradas leidas de la cache.
+     *
+     * @return numero de entradas leidas.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Obtiene el numero de entradas que se tuvieron que reconstruir.
+     *
+     * @return numero de entradas reconstruidas.
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Lee una entrada de la cache.
+     *
+     * @return grafo de la entrada, null si no existe o no es valida.
+     */
+    private ControlFlowGraph read(Path file, String hash, int size) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            return decode(buffer, hash, size);
+        } catch (NoSuchFileException ex) {
+            return null;
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.debug("Entrada no valida en la cache {}: {}", file, ex.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Escribe una entrada en un archivo temporal y la mueve a su lugar.
+     */
+    private void write(Path file, String hash, int size, ControlFlowGraph graph) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(this.directory);
+            temporary = Files.createTempFile(this.directory, hash, ".tmp");
+
+            ByteBuffer buffer = encode(hash, size, graph);
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temporary = null;
+        } catch (IOException ex) {
+            // Otra JVM pudo escribir la misma entrada, la cache es opcional.
+            LOGGER.debug("No se pudo escribir la entrada {}: {}", file, ex.toString());
+        } finally {
+            if (null != temporary) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ex) {
+                    LOGGER.debug("No se pudo eliminar {}", temporary);
+                }
+            }
+        }
+    }
+
+    /**
+     * Serializa un grafo, todos los valores se escriben en big endian y al
+     * final se agrega el CRC32 de los bytes anteriores.
+     */
+    static ByteBuffer encode(String hash, int size, ControlFlowGraph graph) {
+        List<BasicBlock> blocks = graph.getBlocks();
+        List<DataRegion> regions = graph.getDataRegions();
+
+        int length = HEADER_SIZE + 1 + 4 + 4 * regions.size() * 4 + 4 + 4;
+        for (BasicBlock block : blocks) {
+            length += 4 + 1 + 4 + block.getLength() * 2 + 4 + block.getTargets().length * 4;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(MAGIC);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.put(hash.getBytes(StandardCharsets.US_ASCII));
+        buffer.putInt(size);
+
+        buffer.put((byte) (graph.hasUnknownStores() ? 1 : 0));
+
+        buffer.putInt(blocks.size());
+        for (BasicBlock block : blocks) {
+            buffer.putInt(block.getStart());
+            buffer.put((byte) block.getExit().ordinal());
+            buffer.putInt(block.getLength());
+            for (int index = 0; index < block.getLength(); index++) {
+                buffer.putShort((short) block.getOpcode(index));
+            }
+
+            int[] targets = block.getTargets();
+            buffer.putInt(targets.length);
+            for (int target : targets) {
+                buffer.putInt(target);
+            }
+        }
+
+        buffer.putInt(regions.size());
+        for (DataRegion region : regions) {
+            buffer.putInt(region.getStart());
+            buffer.putInt(region.getLength());
+            buffer.putInt(region.getKind().ordinal());
+            buffer.putInt(region.getSource());
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+
+        buffer.flip();
+
+        return buffer;
+    }
+
+    /**
+     * Lee un grafo serializado con {@link #encode}.
+     *
+     * @return grafo, null si la entrada es de otra version o de otra ROM.
+     * @throws IllegalArgumentException si la entrada esta dañada.
+     */
+    static ControlFlowGraph decode(ByteBuffer buffer, String hash, int size) {
+        if (HEADER_SIZE + 4 > buffer.remaining()) {
+            throw new IllegalArgumentException("Entrada incompleta");
+        }
+
+        // Verifica el CRC antes de interpretar el contenido.
+        int end = buffer.limit() - 4;
+        CRC32 crc = new CRC32();
+        ByteBuffer content = buffer.duplicate();
+        content.limit(end);
+        byte[] bytes = new byte[end];
+        content.get(bytes);
+        crc.update(bytes, 0, bytes.length);
+        if ((int) crc.getValue() != buffer.getInt(end)) {
+            throw new IllegalArgumentException("CRC no valido");
+        }
+
+        if (MAGIC != buffer.getInt() || FORMAT_VERSION != buffer.getInt()) {
+            return null;
+        }
+
+        byte[] stored = new byte[64];
+        buffer.get(stored);
+        if (!hash.equals(new String(stored, StandardCharsets.US_ASCII))
+                || size != buffer.getInt()) {
+            return null;
+        }
+
+        try {
+            boolean unknownStores = 0 != buffer.get();
+
+            BasicBlock.Exit[] exits = BasicBlock.Exit.values();
+            int blockCount = count(buffer, 13);
+            List<BasicBlock> blocks = new ArrayList<>(blockCount);
+            for (int index = 0; index < blockCount; index++) {
+                int start = buffer.getInt();
+                BasicBlock.Exit exit = exits[buffer.get()];
+
+                int[] opcodes = new int[count(buffer, 2)];
+                for (int opcode = 0; opcode < opcodes.length; opcode++) {
+                    opcodes[opcode] = buffer.getShort() & 0xFFFF;
+                }
+
+                int[] targets = new int[count(buffer, 4)];
+                for (int target = 0; target < targets.length; target++) {
+                    targets[target] = buffer.getInt();
+                }
+
+                blocks.add(new BasicBlock(start, opcodes, exit, targets));
+            }
+
+            DataRegion.Kind[] kinds = DataRegion.Kind.values();
+            int regionCount = count(buffer, 16);
+            List<DataRegion> regions = new ArrayList<>(regionCount);
+            for (int index = 0; index < regionCount; index++) {
+                int start = buffer.getInt();
+                int length = buffer.getInt();
+                DataRegion.Kind kind = kinds[buffer.getInt()];
+                regions.add(new DataRegion(start, length, kind, buffer.getInt()));
+            }
+
+            if (end != buffer.position()) {
+                throw new IllegalArgumentException("Entrada con bytes sobrantes");
+            }
+
+            return new ControlFlowGraph(size, blocks, regions, unknownStores);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Entrada no valida", ex);
+        }
+    }
+
+    /**
+     * Lee el numero de elementos de una lista y verifica que quepan en los
+     * bytes restantes.
+     *
+     * @param size tamano minimo de cada elemento en bytes.
+     */
+    private static int count(ByteBuffer buffer, int size) {
+        int count = buffer.getInt();
+        if (0 > count || buffer.remaining() / size < count) {
+            throw new IllegalArgumentException("Numero de elementos no valido: " + count);
+        }
+
+        return count;
+    }
+}
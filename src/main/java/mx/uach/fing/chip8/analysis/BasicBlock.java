@@ -0,0 +1,193 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bloque basico del grafo de control, una secuencia de instrucciones que se
+ * ejecuta desde su primera instruccion hasta la ultima sin saltos.
+ *
+ * @author Luis Chávez
+ */
+public class BasicBlock {
+
+    /**
+     * Forma en la que termina un bloque.
+     */
+    public enum Exit {
+
+        // Continua en la siguiente instruccion, que inicia otro bloque.
+        FALLTHROUGH,
+
+        // Salto incondicional (1nnn).
+        JUMP,
+
+        // Llamada a una subrutina (2nnn), continua en la siguiente instruccion.
+        CALL,
+
+        // Instruccion que puede saltar la siguiente (3xkk, 4xkk, 5xy0, 9xy0,
+        // Ex9E, ExA1).
+        BRANCH,
+
+        // Regreso de una subrutina (00EE).
+        RETURN,
+
+        // Salto calculado (Bnnn), el destino no se conoce.
+        COMPUTED,
+
+        // Fin del programa (00FD).
+        EXIT,
+
+        // Opcode desconocido.
+        INVALID,
+
+        // El bloque continua fuera de la ROM.
+        END
+    }
+
+    // Direccion de la primera instruccion.
+    private final int start;
+
+    // Opcodes del bloque.
+    private final int[] opcodes;
+
+    // Forma en la que termina el bloque.
+    private final Exit exit;
+
+    // Direcciones a las que puede continuar la ejecucion.
+    private final int[] targets;
+
+    // Bloques a los que puede continuar la ejecucion.
+    private final List<BasicBlock> successors;
+
+    // Bloques desde los que se puede llegar a este.
+    private final List<BasicBlock> predecessors;
+
+    public BasicBlock(int start, int[] opcodes, Exit exit, int[] targets) {
+        this.start = start;
+        this.opcodes = opcodes;
+        this.exit = exit;
+        this.targets = targets;
+        this.successors = new ArrayList<>();
+        this.predecessors = new ArrayList<>();
+    }
+
+    /**
+     * Obtiene la direccion de la primera instruccion.
+     *
+     * @return direccion de inicio.
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Obtiene la direccion siguiente a la ultima instruccion.
+     *
+     * @return direccion de fin (exclusiva).
+     */
+    public int getEnd() {
+        return this.start + this.opcodes.length * 2;
+    }
+
+    /**
+     * Obtiene la direccion de la ultima instruccion.
+     *
+     * @return direccion de la ultima instruccion.
+     */
+    public int getLast() {
+        return this.getEnd() - 2;
+    }
+
+    /**
+     * Obtiene el numero de instrucciones del bloque.
+     *
+     * @return numero de instrucciones.
+     */
+    public int getLength() {
+        return this.opcodes.length;
+    }
+
+    /**
+     * Obtiene el opcode de una instruccion del bloque.
+     *
+     * @param index indice de la instruccion.
+     * @return opcode.
+     */
+    public int getOpcode(int index) {
+        return this.opcodes[index];
+    }
+
+    /**
+     * Obtiene la forma en la que termina el bloque.
+     *
+     * @return salida del bloque.
+     */
+    public Exit getExit() {
+        return this.exit;
+    }
+
+    /**
+     * Obtiene las direcciones a las que puede continuar la ejecucion, para una
+     * llamada la primera es la subrutina y la segunda la direccion de
+     * regreso, para una bifurcacion la primera es la siguiente instruccion y
+     * la segunda la instruccion saltada.
+     *
+     * @return direcciones destino.
+     */
+    public int[] getTargets() {
+        return this.targets.clone();
+    }
+
+    /**
+     * Obtiene los bloques a los que puede continuar la ejecucion.
+     *
+     * @return bloques sucesores.
+     */
+    public List<BasicBlock> getSuccessors() {
+        return Collections.unmodifiableList(this.successors);
+    }
+
+    /**
+     * Obtiene los bloques desde los que se puede llegar a este.
+     *
+     * @return bloques predecesores.
+     */
+    public List<BasicBlock> getPredecessors() {
+        return Collections.unmodifiableList(this.predecessors);
+    }
+
+    /**
+     * Une este bloque con uno de sus sucesores.
+     *
+     * @param successor bloque sucesor.
+     */
+    void link(BasicBlock successor) {
+        if (!this.successors.contains(successor)) {
+            this.successors.add(successor);
+            successor.predecessors.add(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("0x%03X-0x%03X %s", this.start, this.getLast(), this.exit);
+    }
+}
@@ -0,0 +1,454 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.analysis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import mx.uach.fing.chip8.Memory;
+import mx.uach.fing.chip8.OPCode;
+import mx.uach.fing.chip8.QuirkProfile;
+import mx.uach.fing.chip8.instruction.InstructionSet;
+import mx.uach.fing.chip8.instruction.UnknownInstructionException;
+
+/**
+ * Construye el grafo de control de una ROM recorriendo las instrucciones
+ * alcanzables desde {@link Memory#PROGRAM_INIT}.
+ *
+ * El recorrido sigue los saltos, las llamadas y ambas salidas de las
+ * instrucciones que saltan la siguiente, los saltos calculados (Bnnn) se
+ * marcan como desconocidos. Los valores posibles del registro I se propagan
+ * entre los bloques para encontrar las regiones de datos leidas por Dxyn y
+ * Fx65 o escritas por Fx33 y Fx55.
+ *
+ * @author Luis Chávez
+ */
+public class ControlFlowAnalyzer {
+
+    // Tamano de un sprite de 16x16 en bytes.
+    private static final int EXTENDED_SPRITE_BYTES = 32;
+
+    // Numero maximo de valores posibles de I que se siguen por bloque.
+    private static final int MAX_I_VALUES = 4;
+
+    // Valores posibles de I cuando no se conoce.
+    private static final int[] UNKNOWN_I = new int[0];
+
+    // Ordena las regiones por direccion.
+    private static final Comparator<DataRegion> BY_ADDRESS = new Comparator<DataRegion>() {
+
+        @Override
+        public int compare(DataRegion a, DataRegion b) {
+            return a.getStart() != b.getStart()
+                    ? Integer.compare(a.getStart(), b.getStart())
+                    : Integer.compare(a.getSource(), b.getSource());
+        }
+    };
+
+    // Set de instrucciones con el cual se identifican los opcodes validos.
+    private final InstructionSet instructionSet;
+
+    public ControlFlowAnalyzer(InstructionSet instructionSet) {
+        this.instructionSet = instructionSet;
+    }
+
+    /**
+     * Obtiene el perfil de compatibilidad con el que se analizan las ROMs.
+     *
+     * @return perfil del set de instrucciones.
+     */
+    public QuirkProfile getQuirkProfile() {
+        return this.instructionSet.getQuirkProfile();
+    }
+
+    /**
+     * Analiza una ROM cargada a partir de {@link Memory#PROGRAM_INIT}.
+     *
+     * @param rom bytes de la ROM.
+     * @return grafo de control.
+     */
+    public ControlFlowGraph analyze(byte[] rom) {
+        int size = Math.min(rom.length, Memory.MAX_PROGRAM_SIZE);
+        boolean[] reached = new boolean[size];
+        boolean[] leaders = new boolean[size];
+
+        // Recorre las instrucciones alcanzables marcando el inicio de los bloques.
+        int[] pending = new int[size + 1];
+        int count = 0;
+        if (2 <= size) {
+            leaders[0] = true;
+            pending[count++] = 0;
+        }
+
+        while (0 < count) {
+            int offset = pending[--count];
+
+            while (fits(offset, size) && !reached[offset]) {
+                reached[offset] = true;
+
+                int opcode = read(rom, offset);
+                int next = offset + 2;
+                int[] targets = this.targets(opcode, offset);
+                if (null == targets) {
+                    offset = next;
+                    continue;
+                }
+
+                for (int target : targets) {
+                    if (fits(target, size) && !leaders[target]) {
+                        leaders[target] = true;
+                        pending[count++] = target;
+                    }
+                }
+                break;
+            }
+        }
+
+        // Forma los bloques desde cada inicio de bloque alcanzable.
+        List<BasicBlock> blocks = new ArrayList<>();
+        BasicBlock[] starts = new BasicBlock[size];
+        for (int start = 0; start < size; start++) {
+            if (!leaders[start] || !reached[start]) {
+                continue;
+            }
+
+            int[] opcodes = new int[16];
+            int length = 0;
+
+            int offset = start;
+            BasicBlock.Exit exit;
+            int[] targets;
+            while (true) {
+                int opcode = read(rom, offset);
+                if (opcodes.length == length) {
+                    opcodes = Arrays.copyOf(opcodes, length * 2);
+                }
+                opcodes[length++] = opcode;
+
+                targets = this.targets(opcode, offset);
+                if (null != targets) {
+                    exit = this.exit(opcode);
+                    break;
+                }
+
+                offset += 2;
+                if (!fits(offset, size)) {
+                    exit = BasicBlock.Exit.END;
+                    targets = new int[0];
+                    break;
+                }
+
+                if (leaders[offset]) {
+                    exit = BasicBlock.Exit.FALLTHROUGH;
+                    targets = new int[]{offset};
+                    break;
+                }
+            }
+
+            for (int index = 0; index < targets.length; index++) {
+                targets[index] += Memory.PROGRAM_INIT;
+            }
+
+            BasicBlock block = new BasicBlock(Memory.PROGRAM_INIT + start,
+                    Arrays.copyOf(opcodes, length), exit, targets);
+            blocks.add(block);
+            starts[start] = block;
+        }
+
+        List<DataRegion> regions = new ArrayList<>();
+        boolean unknownStores = this.regions(blocks, starts, regions);
+
+        return new ControlFlowGraph(size, blocks, regions, unknownStores);
+    }
+
+    /**
+     * Propaga los valores posibles del registro I entre los bloques y
+     * encuentra las regiones de datos, I se considera desconocido al inicio
+     * del programa y al regresar de una subrutina.
+     *
+     * @param blocks bloques del programa.
+     * @param starts bloque que inicia en cada desplazamiento de la ROM.
+     * @param regions lista donde se agregan las regiones encontradas.
+     * @return true si hay escrituras con I desconocido.
+     */
+    private boolean regions(List<BasicBlock> blocks, BasicBlock[] starts,
+            List<DataRegion> regions) {
+        Map<BasicBlock, int[]> inputs = new HashMap<>();
+        Deque<BasicBlock> pending = new ArrayDeque<>();
+        if (!blocks.isEmpty()) {
+            inputs.put(blocks.get(0), UNKNOWN_I);
+            pending.add(blocks.get(0));
+        }
+
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.poll();
+            int[] output = this.transfer(block, inputs.get(block), null);
+
+            int[] targets = block.getTargets();
+            for (int index = 0; index < targets.length; index++) {
+                int offset = targets[index] - Memory.PROGRAM_INIT;
+                if (0 > offset || starts.length <= offset || null == starts[offset]) {
+                    continue;
+                }
+
+                // La subrutina puede modificar I antes de regresar.
+                boolean returnSite = BasicBlock.Exit.CALL == block.getExit() && 1 == index;
+                BasicBlock successor = starts[offset];
+                int[] previous = inputs.get(successor);
+                int[] merged = merge(previous, returnSite ? UNKNOWN_I : output);
+                if (!Arrays.equals(previous, merged)) {
+                    inputs.put(successor, merged);
+                    pending.add(successor);
+                }
+            }
+        }
+
+        Set<String> found = new HashSet<>();
+        boolean[] unknownStores = new boolean[1];
+        for (BasicBlock block : blocks) {
+            int[] input = inputs.get(block);
+            List<DataRegion> blockRegions = new ArrayList<>();
+            this.transfer(block, null == input ? UNKNOWN_I : input, blockRegions);
+            for (DataRegion region : blockRegions) {
+                if (null == region) {
+                    unknownStores[0] = true;
+                } else if (found.add(region.toString() + region.getSource())) {
+                    regions.add(region);
+                }
+            }
+        }
+
+        Collections.sort(regions, BY_ADDRESS);
+
+        return unknownStores[0];
+    }
+
+    /**
+     * Ejecuta simbolicamente un bloque sobre los valores posibles de I.
+     *
+     * @param block bloque a evaluar.
+     * @param input valores posibles de I al inicio del bloque.
+     * @param regions lista donde se agregan las regiones de datos, null para
+     * no buscarlas, una escritura con I desconocido se agrega como null.
+     * @return valores posibles de I al final del bloque.
+     */
+    private int[] transfer(BasicBlock block, int[] input, List<DataRegion> regions) {
+        boolean increments = this.instructionSet.getQuirkProfile().isLoadStoreIncrementsI();
+
+        int[] values = input;
+        for (int index = 0; index < block.getLength(); index++) {
+            int opcode = block.getOpcode(index);
+            int address = block.getStart() + index * 2;
+
+            switch (OPCode.instruction(opcode)) {
+                case 0xA:
+                    values = new int[]{OPCode.nnn(opcode)};
+                    break;
+                case 0xD:
+                    int n = OPCode.n(opcode);
+                    region(regions, values, 0 == n ? EXTENDED_SPRITE_BYTES : n,
+                            DataRegion.Kind.SPRITE, address);
+                    break;
+                case 0xF:
+                    switch (OPCode.kk(opcode)) {
+                        case 0x33:
+                            region(regions, values, 3, DataRegion.Kind.STORE, address);
+                            break;
+                        case 0x55:
+                            region(regions, values, OPCode.x(opcode) + 1,
+                                    DataRegion.Kind.STORE, address);
+                            if (increments) {
+                                values = offset(values, OPCode.x(opcode) + 1);
+                            }
+                            break;
+                        case 0x65:
+                            region(regions, values, OPCode.x(opcode) + 1,
+                                    DataRegion.Kind.LOAD, address);
+                            if (increments) {
+                                values = offset(values, OPCode.x(opcode) + 1);
+                            }
+                            break;
+                        case 0x1E:
+                        case 0x29:
+                        case 0x30:
+                            values = UNKNOWN_I;
+                            break;
+                        default:
+                            break;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return values;
+    }
+
+    private static void region(List<DataRegion> regions, int[] values,
+            int length, DataRegion.Kind kind, int source) {
+        if (null == regions) {
+            return;
+        }
+
+        if (UNKNOWN_I == values) {
+            if (DataRegion.Kind.STORE == kind) {
+                regions.add(null);
+            }
+            return;
+        }
+
+        for (int value : values) {
+            regions.add(new DataRegion(value, length, kind, source));
+        }
+    }
+
+    /**
+     * Desplaza los valores posibles de I, se utiliza cuando Fx55 y Fx65
+     * incrementan I.
+     */
+    private static int[] offset(int[] values, int delta) {
+        if (UNKNOWN_I == values) {
+            return UNKNOWN_I;
+        }
+
+        int[] shifted = new int[values.length];
+        for (int index = 0; index < values.length; index++) {
+            shifted[index] = (values[index] + delta) & 0xFFFF;
+        }
+
+        return shifted;
+    }
+
+    /**
+     * Une dos conjuntos de valores posibles de I.
+     */
+    private static int[] merge(int[] a, int[] b) {
+        if (null == a) {
+            return b;
+        }
+
+        if (UNKNOWN_I == a || UNKNOWN_I == b) {
+            return UNKNOWN_I;
+        }
+
+        TreeSet<Integer> union = new TreeSet<>();
+        for (int value : a) {
+            union.add(value);
+        }
+        for (int value : b) {
+            union.add(value);
+        }
+
+        if (MAX_I_VALUES < union.size()) {
+            return UNKNOWN_I;
+        }
+
+        int[] merged = new int[union.size()];
+        int index = 0;
+        for (Integer value : union) {
+            merged[index++] = value;
+        }
+
+        return merged;
+    }
+
+    /**
+     * Verifica si una instruccion completa cabe en la ROM.
+     */
+    private static boolean fits(int offset, int size) {
+        return 0 <= offset && size > offset + 1;
+    }
+
+    private static int read(byte[] rom, int offset) {
+        return ((rom[offset] & 0xFF) << 8) | (rom[offset + 1] & 0xFF);
+    }
+
+    /**
+     * Obtiene los destinos de una instruccion que termina un bloque, como
+     * desplazamientos dentro de la ROM.
+     *
+     * @return destinos, null si la instruccion no termina el bloque.
+     */
+    private int[] targets(int opcode, int offset) {
+        switch (this.exit(opcode)) {
+            case JUMP:
+                return new int[]{OPCode.nnn(opcode) - Memory.PROGRAM_INIT};
+            case CALL:
+                return new int[]{OPCode.nnn(opcode) - Memory.PROGRAM_INIT, offset + 2};
+            case BRANCH:
+                return new int[]{offset + 2, offset + 4};
+            case RETURN:
+            case COMPUTED:
+            case EXIT:
+            case INVALID:
+                return new int[0];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Clasifica una instruccion segun la forma en la que termina un bloque.
+     *
+     * @return salida, FALLTHROUGH si la instruccion no termina el bloque.
+     */
+    private BasicBlock.Exit exit(int opcode) {
+        if (!this.known(opcode)) {
+            return BasicBlock.Exit.INVALID;
+        }
+
+        switch (OPCode.instruction(opcode)) {
+            case 0x0:
+                return 0x00EE == opcode ? BasicBlock.Exit.RETURN
+                        : 0x00FD == opcode ? BasicBlock.Exit.EXIT
+                                : BasicBlock.Exit.FALLTHROUGH;
+            case 0x1:
+                return BasicBlock.Exit.JUMP;
+            case 0x2:
+                return BasicBlock.Exit.CALL;
+            case 0x3:
+            case 0x4:
+            case 0x5:
+            case 0x9:
+            case 0xE:
+                return BasicBlock.Exit.BRANCH;
+            case 0xB:
+                return BasicBlock.Exit.COMPUTED;
+            default:
+                return BasicBlock.Exit.FALLTHROUGH;
+        }
+    }
+
+    private boolean known(int opcode) {
+        try {
+            return InstructionSet.UNKNOWN != this.instructionSet.resolve(opcode);
+        } catch (UnknownInstructionException ex) {
+            return false;
+        }
+    }
+}
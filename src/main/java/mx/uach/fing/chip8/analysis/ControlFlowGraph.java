@@ -0,0 +1,359 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import mx.uach.fing.chip8.Memory;
+
+/**
+ * Grafo de control de una ROM, formado por los bloques basicos alcanzables
+ * desde {@link Memory#PROGRAM_INIT} y las regiones de datos que utilizan.
+ *
+ * @author Luis Chávez
+ */
+public class ControlFlowGraph {
+
+    // Tamano de la ROM en bytes.
+    private final int size;
+
+    // Bloques ordenados por direccion.
+    private final List<BasicBlock> blocks;
+
+    // Bloque que inicia en cada direccion de la ROM.
+    private final BasicBlock[] starts;
+
+    // Indica si cada byte de la ROM pertenece a una instruccion alcanzable.
+    private final boolean[] code;
+
+    // Indica si cada byte de la ROM se utiliza como datos.
+    private final boolean[] data;
+
+    // Regiones de datos ordenadas por direccion.
+    private final List<DataRegion> regions;
+
+    // Direcciones de las subrutinas (2nnn).
+    private final int[] callTargets;
+
+    // Direcciones destino de los saltos (1nnn).
+    private final int[] jumpTargets;
+
+    // Direcciones de los saltos calculados (Bnnn).
+    private final int[] computedJumps;
+
+    // Indica si hay escrituras (Fx33, Fx55) en direcciones desconocidas.
+    private final boolean unknownStores;
+
+    /**
+     * Crea el grafo y une los bloques con sus sucesores.
+     *
+     * @param size tamano de la ROM en bytes.
+     * @param blocks bloques basicos.
+     * @param regions regiones de datos.
+     * @param unknownStores true si hay escrituras en direcciones desconocidas.
+     */
+    public ControlFlowGraph(int size, List<BasicBlock> blocks,
+            List<DataRegion> regions, boolean unknownStores) {
+        this.size = size;
+        this.blocks = new ArrayList<>(blocks);
+        this.starts = new BasicBlock[size];
+        this.code = new boolean[size];
+        this.data = new boolean[size];
+        this.regions = new ArrayList<>(regions);
+        this.unknownStores = unknownStores;
+
+        TreeSet<Integer> calls = new TreeSet<>();
+        TreeSet<Integer> jumps = new TreeSet<>();
+        List<Integer> computed = new ArrayList<>();
+
+        for (BasicBlock block : this.blocks) {
+            this.starts[this.offset(block.getStart())] = block;
+            for (int address = block.getStart(); address < block.getEnd()
+                    && this.contains(address); address++) {
+                this.code[this.offset(address)] = true;
+            }
+
+            int[] targets = block.getTargets();
+            switch (block.getExit()) {
+                case CALL:
+                    calls.add(targets[0]);
+                    break;
+                case JUMP:
+                    jumps.add(targets[0]);
+                    break;
+                case COMPUTED:
+                    computed.add(block.getLast());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        for (BasicBlock block : this.blocks) {
+            for (int target : block.getTargets()) {
+                BasicBlock successor = this.getBlock(target);
+                if (null != successor) {
+                    block.link(successor);
+                }
+            }
+        }
+
+        for (DataRegion region : this.regions) {
+            for (int address = region.getStart(); address < region.getEnd(); address++) {
+                if (this.contains(address)) {
+                    this.data[this.offset(address)] = true;
+                }
+            }
+        }
+
+        this.callTargets = toArray(calls);
+        this.jumpTargets = toArray(jumps);
+        this.computedJumps = toArray(computed);
+    }
+
+    private static int[] toArray(Iterable<Integer> values) {
+        List<Integer> list = new ArrayList<>();
+        for (Integer value : values) {
+            list.add(value);
+        }
+
+        int[] array = new int[list.size()];
+        for (int index = 0; index < array.length; index++) {
+            array[index] = list.get(index);
+        }
+
+        return array;
+    }
+
+    private int offset(int address) {
+        return address - Memory.PROGRAM_INIT;
+    }
+
+    /**
+     * Verifica si una direccion pertenece a la ROM.
+     *
+     * @param address direccion a verificar.
+     * @return true si la direccion esta dentro de la ROM.
+     */
+    public boolean contains(int address) {
+        int offset = this.offset(address);
+
+        return 0 <= offset && this.size > offset;
+    }
+
+    /**
+     * Obtiene el tamano de la ROM analizada.
+     *
+     * @return tamano en bytes.
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Obtiene los bloques basicos ordenados por direccion.
+     *
+     * @return bloques basicos.
+     */
+    public List<BasicBlock> getBlocks() {
+        return Collections.unmodifiableList(this.blocks);
+    }
+
+    /**
+     * Obtiene el bloque de entrada del programa.
+     *
+     * @return bloque que inicia en {@link Memory#PROGRAM_INIT}, null si la ROM
+     * esta vacia.
+     */
+    public BasicBlock getEntry() {
+        return this.getBlock(Memory.PROGRAM_INIT);
+    }
+
+    /**
+     * Obtiene el bloque que inicia en la direccion especificada.
+     *
+     * @param address direccion de inicio.
+     * @return bloque, null si ningun bloque inicia en la direccion.
+     */
+    public BasicBlock getBlock(int address) {
+        return this.contains(address) ? this.starts[this.offset(address)] : null;
+    }
+
+    /**
+     * Verifica si la direccion pertenece a una instruccion alcanzable.
+     *
+     * @param address direccion a verificar.
+     * @return true si la direccion es codigo.
+     */
+    public boolean isCode(int address) {
+        return this.contains(address) && this.code[this.offset(address)];
+    }
+
+    /**
+     * Verifica si la direccion se utiliza como datos.
+     *
+     * @param address direccion a verificar.
+     * @return true si la direccion es parte de una region de datos.
+     */
+    public boolean isData(int address) {
+        return this.contains(address) && this.data[this.offset(address)];
+    }
+
+    /**
+     * Obtiene las regiones de datos ordenadas por direccion.
+     *
+     * @return regiones de datos.
+     */
+    public List<DataRegion> getDataRegions() {
+        return Collections.unmodifiableList(this.regions);
+    }
+
+    /**
+     * Obtiene las direcciones de las subrutinas.
+     *
+     * @return direcciones de las subrutinas ordenadas.
+     */
+    public int[] getCallTargets() {
+        return this.callTargets.clone();
+    }
+
+    /**
+     * Obtiene las direcciones destino de los saltos incondicionales.
+     *
+     * @return direcciones destino ordenadas.
+     */
+    public int[] getJumpTargets() {
+        return this.jumpTargets.clone();
+    }
+
+    /**
+     * Obtiene las direcciones de los saltos calculados (Bnnn), su destino
+     * depende de V0 y no se conoce.
+     *
+     * @return direcciones de los saltos calculados.
+     */
+    public int[] getComputedJumps() {
+        return this.computedJumps.clone();
+    }
+
+    /**
+     * Verifica si el programa tiene saltos calculados, en ese caso puede haber
+     * codigo que no se encuentra en el grafo.
+     *
+     * @return true si hay saltos calculados.
+     */
+    public boolean hasComputedJumps() {
+        return 0 < this.computedJumps.length;
+    }
+
+    /**
+     * Verifica si hay escrituras en memoria con el registro I desconocido.
+     *
+     * @return true si hay escrituras en direcciones desconocidas.
+     */
+    public boolean hasUnknownStores() {
+        return this.unknownStores;
+    }
+
+    /**
+     * Verifica si alguna escritura conocida modifica codigo alcanzable.
+     *
+     * @return true si el programa se modifica a si mismo.
+     */
+    public boolean hasCodeStores() {
+        for (DataRegion region : this.regions) {
+            if (DataRegion.Kind.STORE == region.getKind()) {
+                for (int address = region.getStart(); address < region.getEnd(); address++) {
+                    if (this.isCode(address)) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Exporta el grafo en formato DOT (Graphviz).
+     *
+     * @return grafo en formato DOT.
+     */
+    public String toDot() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("digraph chip8 {\n");
+        builder.append("    node [shape=box, fontname=\"monospace\"];\n");
+
+        for (BasicBlock block : this.blocks) {
+            builder.append(String.format("    b%03X [label=\"", block.getStart()));
+            for (int index = 0; index < block.getLength(); index++) {
+                builder.append(String.format("%03X: %04X\\l",
+                        block.getStart() + index * 2, block.getOpcode(index)));
+            }
+            builder.append(block.getExit()).append("\\l\"];\n");
+
+            int[] targets = block.getTargets();
+            for (int index = 0; index < targets.length; index++) {
+                String style = BasicBlock.Exit.CALL == block.getExit() && 0 == index
+                        ? " [style=dashed, label=\"call\"]" : "";
+                if (null != this.getBlock(targets[index])) {
+                    builder.append(String.format("    b%03X -> b%03X%s;\n",
+                            block.getStart(), targets[index], style));
+                }
+            }
+
+            if (BasicBlock.Exit.COMPUTED == block.getExit()) {
+                builder.append(String.format(
+                        "    b%03X -> unknown [style=dotted];\n", block.getStart()));
+            }
+        }
+
+        if (this.hasComputedJumps()) {
+            builder.append("    unknown [shape=diamond, label=\"V0 + nnn\"];\n");
+        }
+
+        for (DataRegion region : this.regions) {
+            builder.append(String.format(
+                    "    d%03X_%d [shape=note, label=\"%03X-%03X %s\"];\n",
+                    region.getStart(), region.getKind().ordinal(),
+                    region.getStart(), region.getEnd() - 1, region.getKind()));
+            builder.append(String.format("    b%03X -> d%03X_%d [style=dotted];\n",
+                    this.blockOf(region.getSource()), region.getStart(),
+                    region.getKind().ordinal()));
+        }
+
+        builder.append("}\n");
+
+        return builder.toString();
+    }
+
+    /**
+     * Obtiene la direccion del bloque que contiene una instruccion.
+     */
+    private int blockOf(int address) {
+        for (BasicBlock block : this.blocks) {
+            if (block.getStart() <= address && block.getEnd() > address) {
+                return block.getStart();
+            }
+        }
+
+        return address;
+    }
+}
@@ -0,0 +1,109 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.analysis;
+
+/**
+ * Region de memoria que el programa utiliza como datos.
+ *
+ * @author Luis Chávez
+ */
+public class DataRegion {
+
+    /**
+     * Forma en la que se accede a la region.
+     */
+    public enum Kind {
+
+        // Sprite dibujado por Dxyn.
+        SPRITE,
+
+        // Valores leidos por Fx65.
+        LOAD,
+
+        // Valores escritos por Fx33 o Fx55.
+        STORE
+    }
+
+    // Direccion de inicio.
+    private final int start;
+
+    // Tamano en bytes.
+    private final int length;
+
+    // Forma en la que se accede a la region.
+    private final Kind kind;
+
+    // Direccion de la instruccion que accede a la region.
+    private final int source;
+
+    public DataRegion(int start, int length, Kind kind, int source) {
+        this.start = start;
+        this.length = length;
+        this.kind = kind;
+        this.source = source;
+    }
+
+    /**
+     * Obtiene la direccion de inicio.
+     *
+     * @return direccion de inicio.
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Obtiene el tamano de la region.
+     *
+     * @return tamano en bytes.
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * Obtiene la direccion siguiente al ultimo byte de la region.
+     *
+     * @return direccion de fin (exclusiva).
+     */
+    public int getEnd() {
+        return this.start + this.length;
+    }
+
+    /**
+     * Obtiene la forma en la que se accede a la region.
+     *
+     * @return tipo de acceso.
+     */
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Obtiene la direccion de la instruccion que accede a la region.
+     *
+     * @return direccion de la instruccion.
+     */
+    public int getSource() {
+        return this.source;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("0x%03X-0x%03X %s", this.start, this.getEnd() - 1, this.kind);
+    }
+}
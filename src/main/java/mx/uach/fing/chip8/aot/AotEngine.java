@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.aot;
+
+import java.util.Arrays;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.ExecutionEngine;
+import mx.uach.fing.chip8.Memory;
+import mx.uach.fing.chip8.instruction.InstructionCache;
+import mx.uach.fing.chip8.instruction.InstructionSet;
+
+/**
+ * Motor que ejecuta la traduccion anticipada de la ROM cargada.
+ *
+ * Las direcciones sin un bloque traducido (por ejemplo los destinos de Bnnn)
+ * y los bloques cuyo codigo se modifico se ejecutan con el interprete, si la
+ * ROM no tiene traduccion todo se interpreta.
+ *
+ * @author Luis Chávez
+ */
+public class AotEngine implements ExecutionEngine {
+
+    // Set de instrucciones para las instrucciones delegadas.
+    private final InstructionSet instructionSet;
+
+    // Interprete utilizado para las instrucciones que no se tradujeron.
+    private final InstructionCache interpreter;
+
+    // Bloques modificados por escrituras, indexados por su direccion de entrada.
+    private final boolean[] invalid;
+
+    // Programa traducido de la ROM cargada, null si no hay uno.
+    private AotProgram program;
+
+    // Numero de bloques invalidados por escrituras en memoria.
+    private long invalidatedBlocks;
+
+    // Numero de bloques traducidos ejecutados.
+    private long blockExecutions;
+
+    // Numero de instrucciones ejecutadas por bloques traducidos.
+    private long compiledCycles;
+
+    // Numero de instrucciones ejecutadas por el interprete.
+    private long interpretedCycles;
+
+    public AotEngine(InstructionSet instructionSet, InstructionCache interpreter) {
+        this.instructionSet = instructionSet;
+        this.interpreter = interpreter;
+        this.invalid = new boolean[InstructionCache.CACHE_SIZE];
+    }
+
+    /**
+     * Busca la traduccion de una ROM, se utiliza al cargar la ROM.
+     *
+     * @param rom bytes de la ROM.
+     * @return true si se encontro una traduccion.
+     */
+    public boolean load(byte[] rom) {
+        this.clear();
+        this.program = AotProgram.load(rom, this.instructionSet);
+
+        return null != this.program;
+    }
+
+    /**
+     * Obtiene el programa traducido de la ROM cargada.
+     *
+     * @return programa traducido, null si la ROM no tiene traduccion.
+     */
+    public AotProgram getProgram() {
+        return this.program;
+    }
+
+    @Override
+    public int execute(Chip8 chip8) {
+        AotProgram current = this.program;
+        if (null != current) {
+            int pc = chip8.register.getPC();
+            int slot = pc - Memory.PROGRAM_INIT;
+
+            if (0 <= slot && this.invalid.length > slot && !this.invalid[slot]) {
+                int executed = current.execute(pc, chip8);
+                if (0 < executed) {
+                    this.blockExecutions++;
+                    this.compiledCycles += executed;
+                    return executed;
+                }
+            }
+        }
+
+        int executed = this.interpreter.execute(chip8);
+        this.interpretedCycles += executed;
+
+        return executed;
+    }
+
+    @Override
+    public void onWrite(int address) {
+        this.interpreter.onWrite(address);
+
+        AotProgram current = this.program;
+        if (null == current) {
+            return;
+        }
+
+        // Busca el ultimo bloque que inicia antes de la direccion.
+        int count = current.getBlockCount();
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (current.getStart(middle) <= address) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        // Invalida los bloques que contienen la direccion modificada.
+        int limit = address - current.getMaxSpan();
+        for (int index = high; index >= 0 && current.getStart(index) > limit; index--) {
+            if (current.getEnd(index) > address) {
+                int slot = current.getStart(index) - Memory.PROGRAM_INIT;
+                if (!this.invalid[slot]) {
+                    this.invalid[slot] = true;
+                    this.invalidatedBlocks++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        this.interpreter.clear();
+        Arrays.fill(this.invalid, false);
+    }
+
+    /**
+     * Obtiene el numero de bloques invalidados por escrituras en memoria.
+     *
+     * @return numero de bloques invalidados.
+     */
+    public long getInvalidatedBlocks() {
+        return this.invalidatedBlocks;
+    }
+
+    /**
+     * Obtiene el numero de bloques traducidos ejecutados.
+     *
+     * @return numero de bloques ejecutados.
+     */
+    public long getBlockExecutions() {
+        return this.blockExecutions;
+    }
+
+    /**
+     * Obtiene el numero de instrucciones ejecutadas por bloques traducidos.
+     *
+     * @return instrucciones ejecutadas en bloques traducidos.
+     */
+    public long getCompiledCycles() {
+        return this.compiledCycles;
+    }
+
+    /**
+     * Obtiene el numero de instrucciones ejecutadas por el interprete.
+     *
+     * @return instrucciones interpretadas.
+     */
+    public long getInterpretedCycles() {
+        return this.interpretedCycles;
+    }
+
+    /**
+     * Obtiene la fraccion de instrucciones ejecutadas por bloques traducidos.
+     *
+     * @return valor entre 0 y 1.
+     */
+    public double getCompiledShare() {
+        long total = this.interpretedCycles + this.compiledCycles;
+
+        return 0 == total ? 0 : (double) this.compiledCycles / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("program: %s, invalidated blocks: %d, "
+                + "compiled share: %.1f%%",
+                null == this.program ? "none" : this.program.getClass().getSimpleName(),
+                this.invalidatedBlocks, this.getCompiledShare() * 100);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.aot;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.QuirkProfile;
+import mx.uach.fing.chip8.instruction.Instruction;
+import mx.uach.fing.chip8.instruction.InstructionSet;
+import mx.uach.fing.chip8.utils.MemoryUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Programa traducido antes de la ejecucion a partir de una ROM, las clases
+ * concretas las genera {@link AotTranslator} y se buscan por el hash SHA-256
+ * de la ROM.
+ *
+ * Cada bloque traducido inicia en una direccion de entrada y termina con el
+ * contador del programa apuntando a la siguiente instruccion a ejecutar, las
+ * instrucciones que no se traducen se delegan al interprete.
+ *
+ * @author Luis Chávez
+ */
+public abstract class AotProgram {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AotProgram.class);
+
+    // Paquete de las clases generadas.
+    public static final String PACKAGE = "mx.uach.fing.chip8.aot.rom";
+
+    // Numero de caracteres del hash utilizados en el nombre de la clase.
+    private static final int NAME_HASH_LENGTH = 16;
+
+    // Hash SHA-256 de la ROM traducida.
+    private final String hash;
+
+    // Quirks del perfil de compatibilidad con el que se tradujo la ROM.
+    private final int quirks;
+
+    // Direcciones de entrada de los bloques, ordenadas.
+    private final int[] starts;
+
+    // Direccion final (exclusiva) de cada bloque.
+    private final int[] ends;
+
+    // Opcodes de las instrucciones delegadas al interprete.
+    private final int[] delegated;
+
+    // Instrucciones delegadas al interprete, en el orden de los opcodes.
+    protected final Instruction[] handlers;
+
+    // Numero maximo de bytes de un bloque.
+    private final int maxSpan;
+
+    protected AotProgram(String hash, int quirks, int[] starts, int[] ends, int[] delegated) {
+        this.hash = hash;
+        this.quirks = quirks;
+        this.starts = starts;
+        this.ends = ends;
+        this.delegated = delegated;
+        this.handlers = new Instruction[delegated.length];
+
+        int span = 0;
+        for (int index = 0; index < starts.length; index++) {
+            span = Math.max(span, ends[index] - starts[index]);
+        }
+        this.maxSpan = span;
+    }
+
+    /**
+     * Resuelve las instrucciones delegadas al interprete.
+     *
+     * @param instructionSet set de instrucciones a utilizar.
+     */
+    public void bind(InstructionSet instructionSet) {
+        for (int index = 0; index < this.delegated.length; index++) {
+            this.handlers[index] = instructionSet.resolve(this.delegated[index]);
+        }
+    }
+
+    /**
+     * Obtiene el hash SHA-256 de la ROM traducida.
+     *
+     * @return hash en hexadecimal.
+     */
+    public String getHash() {
+        return this.hash;
+    }
+
+    /**
+     * Obtiene los quirks del perfil de compatibilidad con el que se tradujo
+     * la ROM.
+     *
+     * @return combinacion de quirks, ver {@link QuirkProfile#getFlags()}.
+     */
+    public int getQuirks() {
+        return this.quirks;
+    }
+
+    /**
+     * Obtiene el numero de bloques traducidos.
+     *
+     * @return numero de bloques.
+     */
+    public int getBlockCount() {
+        return this.starts.length;
+    }
+
+    /**
+     * Obtiene la direccion de entrada de un bloque.
+     *
+     * @param index indice del bloque.
+     * @return direccion de la primera instruccion.
+     */
+    public int getStart(int index) {
+        return this.starts[index];
+    }
+
+    /**
+     * Obtiene la direccion final (exclusiva) de un bloque.
+     *
+     * @param index indice del bloque.
+     * @return direccion siguiente al ultimo byte del bloque.
+     */
+    public int getEnd(int index) {
+        return this.ends[index];
+    }
+
+    /**
+     * Obtiene el numero maximo de bytes de un bloque, una escritura solo puede
+     * modificar los bloques que inician a esta distancia o menos.
+     *
+     * @return numero de bytes.
+     */
+    public int getMaxSpan() {
+        return this.maxSpan;
+    }
+
+    /**
+     * Ejecuta el bloque que inicia en la direccion especificada.
+     *
+     * @param pc direccion de entrada.
+     * @param chip8 instancia del emulador.
+     * @return numero de instrucciones ejecutadas, 0 si no hay un bloque
+     * traducido en la direccion.
+     */
+    public abstract int execute(int pc, Chip8 chip8);
+
+    /**
+     * Obtiene el nombre de la clase generada para una ROM.
+     *
+     * @param hash hash SHA-256 de la ROM.
+     * @return nombre binario de la clase.
+     */
+    public static String className(String hash) {
+        return PACKAGE + ".Rom_" + hash.substring(0, NAME_HASH_LENGTH);
+    }
+
+    /**
+     * Busca la traduccion de una ROM en el classpath.
+     *
+     * @param rom bytes de la ROM.
+     * @param instructionSet set de instrucciones para las instrucciones
+     * delegadas.
+     * @return programa traducido, null si la ROM no se tradujo o se tradujo
+     * con otro perfil de compatibilidad.
+     */
+    public static AotProgram load(byte[] rom, InstructionSet instructionSet) {
+        String hash = MemoryUtils.sha256(rom);
+        String name = className(hash);
+
+        try {
+            Class<?> type = Class.forName(name, true, AotProgram.class.getClassLoader());
+            AotProgram program = (AotProgram) type.getConstructor().newInstance();
+
+            // El nombre solo contiene una parte del hash.
+            if (!hash.equals(program.getHash())) {
+                LOGGER.warn("La clase {} no corresponde a la ROM {}", name, hash);
+                return null;
+            }
+
+            // El codigo traducido depende del perfil.
+            if (instructionSet.getQuirkProfile().getFlags() != program.getQuirks()) {
+                LOGGER.debug("La clase {} se tradujo con otro perfil", name);
+                return null;
+            }
+
+            program.bind(instructionSet);
+
+            return program;
+        } catch (ClassNotFoundException ex) {
+            LOGGER.debug("No hay una traduccion para la ROM {}", hash);
+            return null;
+        } catch (ReflectiveOperationException | ClassCastException | LinkageError ex) {
+            LOGGER.error(String.format("No se pudo cargar la clase %s", name), ex);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,615 @@
+/*
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.aot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import mx.uach.fing.chip8.OPCode;
+import mx.uach.fing.chip8.QuirkProfile;
+import mx.uach.fing.chip8.Register;
+import mx.uach.fing.chip8.analysis.BasicBlock;
+import mx.uach.fing.chip8.analysis.ControlFlowGraph;
+import mx.uach.fing.chip8.compiler.BlockCompiler;
+import mx.uach.fing.chip8.instruction.InstructionSet;
+import mx.uach.fing.chip8.instruction.UnknownInstructionException;
+import mx.uach.fing.chip8.utils.MemoryUtils;
+
+/**
+ * Traduce una ROM completa a una clase de Java que extiende
+ * {@link AotProgram}.
+ *
+ * Los bloques basicos del grafo de control de flujo se dividen en las mismas
+ * instrucciones que terminan un bloque del recompilador (escrituras en
+ * memoria, espera de tecla y salida), cada bloque se traduce a un metodo y
+ * {@link AotProgram#execute(int, mx.uach.fing.chip8.Chip8)} despacha por
+ * pagina de 256 bytes para que ningun metodo crezca demasiado para el JIT.
+ * Los registros se mantienen en variables locales igual que en
+ * {@link BlockCompiler}.
+ *
+ * @author Luis Chávez
+ */
+public class AotTranslator {
+
+    // Set de instrucciones con el cual se resuelven los opcodes.
+    private final InstructionSet instructionSet;
+
+    public AotTranslator(InstructionSet instructionSet) {
+        this.instructionSet = instructionSet;
+    }
+
+    /**
+     * Genera el codigo fuente de la traduccion de una ROM.
+     *
+     * @param name nombre de la ROM, solo se utiliza en la documentacion.
+     * @param rom bytes de la ROM.
+     * @param graph grafo de control de flujo de la ROM.
+     * @return codigo fuente de la clase {@link AotProgram#className(String)}.
+     */
+    public String translate(String name, byte[] rom, ControlFlowGraph graph) {
+        String hash = MemoryUtils.sha256(rom);
+        String className = AotProgram.className(hash);
+        QuirkProfile quirkProfile = this.instructionSet.getQuirkProfile();
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+
+        List<Segment> segments = this.segments(graph);
+
+        // Opcodes delegados al interprete y su indice en los handlers.
+        Map<Integer, Integer> delegated = new LinkedHashMap<>();
+
+        StringBuilder blocks = new StringBuilder();
+        for (Segment segment : segments) {
+            blocks.append('\n');
+            blocks.append(new BlockWriter(segment, delegated, quirkProfile.isShiftVy()).write());
+        }
+
+        int[] starts = new int[segments.size()];
+        int[] ends = new int[segments.size()];
+        for (int index = 0; index < starts.length; index++) {
+            starts[index] = segments.get(index).start;
+            ends[index] = segments.get(index).end();
+        }
+
+        int[] opcodes = new int[delegated.size()];
+        for (Map.Entry<Integer, Integer> entry : delegated.entrySet()) {
+            opcodes[entry.getValue()] = entry.getKey();
+        }
+
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(AotProgram.PACKAGE).append(";\n\n");
+        source.append("import mx.uach.fing.chip8.Chip8;\n");
+        source.append("import mx.uach.fing.chip8.Register;\n");
+        source.append("import mx.uach.fing.chip8.aot.AotProgram;\n\n");
+        source.append("/**\n");
+        source.append(" * Traduccion anticipada de la ROM ").append(name).append(".\n");
+        source.append(" *\n");
+        source.append(" * Generado por mx.uach.fing.chip8.tools.AotCompiler, no modificar.\n");
+        source.append(" */\n");
+        source.append("public final class ").append(simpleName).append(" extends AotProgram {\n\n");
+        source.append("    private static final String HASH = \"").append(hash).append("\";\n\n");
+        source.append(String.format("    private static final int QUIRKS = 0x%X; // %s\n\n",
+                quirkProfile.getFlags(), quirkProfile.getName()));
+        source.append("    private static final int[] STARTS = ").append(array(starts, "0x%03X")).append(";\n\n");
+        source.append("    private static final int[] ENDS = ").append(array(ends, "0x%03X")).append(";\n\n");
+        source.append("    private static final int[] DELEGATED = ").append(array(opcodes, "0x%04X")).append(";\n\n");
+        source.append("    public ").append(simpleName).append("() {\n");
+        source.append("        super(HASH, QUIRKS, STARTS, ENDS, DELEGATED);\n");
+        source.append("    }\n\n");
+        source.append(dispatch(segments));
+        source.append(blocks);
+        source.append("}\n");
+
+        return source.toString();
+    }
+
+    /**
+     * Divide los bloques basicos del grafo en los bloques a traducir.
+     */
+    private List<Segment> segments(ControlFlowGraph graph) {
+        List<Segment> segments = new ArrayList<>();
+
+        for (BasicBlock block : graph.getBlocks()) {
+            Segment segment = new Segment(block.getStart());
+
+            for (int index = 0; index < block.getLength(); index++) {
+                int opcode = block.getOpcode(index);
+
+                // Las instrucciones desconocidas se dejan al interprete.
+                if (!this.known(opcode)) {
+                    break;
+                }
+
+                segment.opcodes.add(opcode);
+
+                boolean last = index == block.getLength() - 1;
+                if (!last && (BlockCompiler.endsBlock(opcode)
+                        || BlockCompiler.MAX_BLOCK_LENGTH == segment.opcodes.size())) {
+                    segments.add(segment);
+                    segment = new Segment(segment.end());
+                }
+            }
+
+            if (!segment.opcodes.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+
+        Collections.sort(segments, new Comparator<Segment>() {
+
+            @Override
+            public int compare(Segment a, Segment b) {
+                return Integer.compare(a.start, b.start);
+            }
+        });
+
+        return segments;
+    }
+
+    private boolean known(int opcode) {
+        try {
+            return InstructionSet.UNKNOWN != this.instructionSet.resolve(opcode);
+        } catch (UnknownInstructionException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Genera el metodo execute y un metodo de despacho por pagina.
+     */
+    private static String dispatch(List<Segment> segments) {
+        StringBuilder execute = new StringBuilder();
+        StringBuilder pages = new StringBuilder();
+
+        execute.append("    @Override\n");
+        execute.append("    public int execute(int pc, Chip8 chip8) {\n");
+        execute.append("        switch (pc >> 8) {\n");
+
+        int index = 0;
+        while (index < segments.size()) {
+            int page = segments.get(index).start >> 8;
+
+            execute.append(String.format("            case 0x%X:\n", page));
+            execute.append(String.format("                return this.page%X(pc, chip8);\n", page));
+
+            pages.append('\n');
+            pages.append(String.format("    private int page%X(int pc, Chip8 chip8) {\n", page));
+            pages.append("        switch (pc) {\n");
+            while (index < segments.size() && page == segments.get(index).start >> 8) {
+                int start = segments.get(index).start;
+                pages.append(String.format("            case 0x%03X:\n", start));
+                pages.append(String.format("                return this.block%03X(chip8);\n", start));
+                index++;
+            }
+            pages.append("            default:\n");
+            pages.append("                return 0;\n");
+            pages.append("        }\n");
+            pages.append("    }\n");
+        }
+
+        execute.append("            default:\n");
+        execute.append("                return 0;\n");
+        execute.append("        }\n");
+        execute.append("    }\n");
+
+        return execute.append(pages).toString();
+    }
+
+    private static String array(int[] values, String format) {
+        if (0 == values.length) {
+            return "{}";
+        }
+
+        StringBuilder builder = new StringBuilder("{");
+        for (int index = 0; index < values.length; index++) {
+            builder.append(0 == index % 8 ? "\n        " : " ");
+            builder.append(String.format(format, values[index]));
+            if (index < values.length - 1) {
+                builder.append(',');
+            }
+        }
+
+        return builder.append("\n    }").toString();
+    }
+
+    /**
+     * Bloque a traducir, una secuencia de instrucciones con una sola entrada.
+     */
+    private static class Segment {
+
+        private final int start;
+        private final List<Integer> opcodes;
+
+        Segment(int start) {
+            this.start = start;
+            this.opcodes = new ArrayList<>();
+        }
+
+        int end() {
+            return this.start + this.opcodes.size() * 2;
+        }
+    }
+
+    /**
+     * Genera el metodo de un bloque, lleva el estado de las variables locales
+     * mientras se genera el codigo.
+     */
+    private static class BlockWriter {
+
+        private final Segment segment;
+        private final Map<Integer, Integer> delegated;
+        private final StringBuilder body;
+
+        // Registros cargados en variables locales.
+        private final boolean[] loaded;
+
+        // Registros modificados que no se han escrito en el registro.
+        private final boolean[] dirty;
+
+        // Registros con una variable local.
+        private final boolean[] used;
+
+        // Estado del registro I.
+        private boolean iLoaded;
+        private boolean iDirty;
+        private boolean iUsed;
+
+        // Nivel de indentacion actual.
+        private int indent;
+
+        // Indica si 8xy6 y 8xyE desplazan Vy, segun el perfil de compatibilidad.
+        private final boolean shiftVy;
+
+        BlockWriter(Segment segment, Map<Integer, Integer> delegated, boolean shiftVy) {
+            this.segment = segment;
+            this.delegated = delegated;
+            this.shiftVy = shiftVy;
+            this.body = new StringBuilder();
+            this.loaded = new boolean[Register.REGISTER_SIZE];
+            this.dirty = new boolean[Register.REGISTER_SIZE];
+            this.used = new boolean[Register.REGISTER_SIZE];
+            this.indent = 2;
+        }
+
+        String write() {
+            int length = this.segment.opcodes.size();
+            boolean terminated = false;
+            for (int index = 0; index < length; index++) {
+                int address = this.segment.start + index * 2;
+                int opcode = this.segment.opcodes.get(index);
+
+                this.line(String.format("// 0x%03X: %04X", address, opcode));
+                terminated = this.instruction(address, opcode, index == length - 1);
+            }
+
+            // El bloque termino sin una instruccion de control de flujo.
+            if (!terminated) {
+                this.exit(this.segment.end());
+            }
+
+            StringBuilder method = new StringBuilder();
+            method.append(String.format("    private int block%03X(Chip8 chip8) {\n", this.segment.start));
+            method.append("        Register r = chip8.register;\n");
+
+            StringBuilder locals = new StringBuilder();
+            for (int x = 0; x < Register.REGISTER_SIZE; x++) {
+                if (this.used[x]) {
+                    locals.append(0 == locals.length() ? "" : ", ").append(v(x));
+                }
+            }
+            if (this.iUsed) {
+                locals.append(0 == locals.length() ? "" : ", ").append("i");
+            }
+            if (0 < locals.length()) {
+                method.append("        int ").append(locals).append(";\n");
+            }
+
+            method.append(this.body);
+            method.append("    }\n");
+
+            return method.toString();
+        }
+
+        /**
+         * Genera el codigo de una instruccion.
+         *
+         * @return true si la instruccion termino el bloque (retorna).
+         */
+        private boolean instruction(int address, int opcode, boolean last) {
+            int x = OPCode.x(opcode);
+            int y = OPCode.y(opcode);
+            int kk = OPCode.kk(opcode);
+            int nnn = OPCode.nnn(opcode);
+
+            switch (OPCode.instruction(opcode)) {
+                case 0x1:
+                    // 1nnn - JP addr
+                    this.exit(nnn);
+                    return true;
+                case 0x3:
+                    // 3xkk - SE Vx, byte
+                    this.skip(String.format("%s == 0x%02X", this.load(x), kk), address);
+                    return true;
+                case 0x4:
+                    // 4xkk - SNE Vx, byte
+                    this.skip(String.format("%s != 0x%02X", this.load(x), kk), address);
+                    return true;
+                case 0x5:
+                    // 5xy0 - SE Vx, Vy
+                    this.skip(String.format("%s == %s", this.load(x), this.load(y)), address);
+                    return true;
+                case 0x9:
+                    // 9xy0 - SNE Vx, Vy
+                    this.skip(String.format("%s != %s", this.load(x), this.load(y)), address);
+                    return true;
+                case 0x6:
+                    // 6xkk - LD Vx, byte
+                    this.store(x, String.format("0x%02X", kk));
+                    return false;
+                case 0x7:
+                    // 7xkk - ADD Vx, byte
+                    this.store(x, String.format("(%s + 0x%02X) & 0xFF", this.load(x), kk));
+                    return false;
+                case 0x8:
+                    if (this.alu(x, y, OPCode.n(opcode))) {
+                        return false;
+                    }
+                    break;
+                case 0xA:
+                    // Annn - LD I, addr
+                    this.storeI(String.format("0x%03X", nnn));
+                    return false;
+                case 0xF:
+                    if (this.misc(x, kk)) {
+                        return false;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            // Delega la instruccion al interprete.
+            this.delegate(address, opcode);
+            if (last) {
+                this.line("return " + this.segment.opcodes.size() + ";");
+            }
+
+            return last;
+        }
+
+        /**
+         * Genera las operaciones 8xyN, VF se registra con los valores previos
+         * de Vx y Vy antes de escribir Vx, igual que en el interprete.
+         *
+         * @return false si la operacion no se traduce.
+         */
+        private boolean alu(int x, int y, int n) {
+            switch (n) {
+                case 0x0:
+                    // 8xy0 - LD Vx, Vy
+                    this.store(x, this.load(y));
+                    return true;
+                case 0x1:
+                    // 8xy1 - OR Vx, Vy
+                    this.store(x, this.load(x) + " | " + this.load(y));
+                    return true;
+                case 0x2:
+                    // 8xy2 - AND Vx, Vy
+                    this.store(x, this.load(x) + " & " + this.load(y));
+                    return true;
+                case 0x3:
+                    // 8xy3 - XOR Vx, Vy
+                    this.store(x, this.load(x) + " ^ " + this.load(y));
+                    return true;
+                case 0x4:
+                    // 8xy4 - ADD Vx, Vy
+                    this.flag(x, x, y, "FLAG_ADD", "(a + b) & 0xFF");
+                    return true;
+                case 0x5:
+                    // 8xy5 - SUB Vx, Vy
+                    this.flag(x, x, y, "FLAG_SUB", "(a - b) & 0xFF");
+                    return true;
+                case 0x6:
+                    // 8xy6 - SHR Vx {, Vy}
+                    this.flag(x, this.shiftVy ? y : x, -1, "FLAG_SHR", "a >>> 1");
+                    return true;
+                case 0x7:
+                    // 8xy7 - SUBN Vx, Vy
+                    this.flag(x, x, y, "FLAG_SUBN", "(b - a) & 0xFF");
+                    return true;
+                case 0xE:
+                    // 8xyE - SHL Vx {, Vy}
+                    this.flag(x, this.shiftVy ? y : x, -1, "FLAG_SHL", "(a << 1) & 0xFF");
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Genera una operacion que produce VF, los operandos se copian a a y b
+         * para que el resultado no dependa del orden de las escrituras.
+         *
+         * @param x indice del registro destino.
+         * @param source indice del primer operando (Vx, o Vy en los
+         * desplazamientos con el quirk SHIFT_VY).
+         * @param y indice de Vy, -1 si la operacion solo utiliza un operando.
+         */
+        private void flag(int x, int source, int y, String operation, String value) {
+            String a = this.load(source);
+            String b = -1 == y ? "0" : this.load(y);
+
+            this.line("{");
+            this.indent++;
+            this.line("int a = " + a + ";");
+            if (-1 != y) {
+                this.line("int b = " + b + ";");
+            }
+            this.line(String.format("r.setFlag(Register.%s, a, %s);", operation, -1 == y ? "0" : "b"));
+
+            // La operacion pendiente reemplaza el valor anterior de VF.
+            this.loaded[Register.REGISTER_FLAG] = false;
+            this.dirty[Register.REGISTER_FLAG] = false;
+
+            this.store(x, value);
+            this.indent--;
+            this.line("}");
+        }
+
+        /**
+         * Genera las operaciones Fxkk que no requieren al interprete.
+         *
+         * @return false si la operacion no se traduce.
+         */
+        private boolean misc(int x, int kk) {
+            switch (kk) {
+                case 0x07:
+                    // Fx07 - LD Vx, DT
+                    this.store(x, "r.getDT()");
+                    return true;
+                case 0x15:
+                    // Fx15 - LD DT, Vx
+                    this.line("r.setDT(" + this.load(x) + ");");
+                    return true;
+                case 0x18:
+                    // Fx18 - LD ST, Vx
+                    this.line("r.setST(" + this.load(x) + ");");
+                    return true;
+                case 0x1E:
+                    // Fx1E - ADD I, Vx
+                    this.storeI(String.format("(%s + %s) & 0xFFFF", this.loadI(), this.load(x)));
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Genera un salto condicional, si la condicion se cumple se salta la
+         * siguiente instruccion.
+         */
+        private void skip(String condition, int address) {
+            this.flush();
+            this.line(String.format("r.setPC(%s ? 0x%03X : 0x%03X);",
+                    condition, address + 4, address + 2));
+            this.line("return " + this.segment.opcodes.size() + ";");
+        }
+
+        /**
+         * Termina el bloque continuando en la direccion especificada.
+         */
+        private void exit(int address) {
+            this.flush();
+            this.line(String.format("r.setPC(0x%03X);", address));
+            this.line("return " + this.segment.opcodes.size() + ";");
+        }
+
+        /**
+         * Ejecuta la instruccion con el interprete, previamente escribe los
+         * registros modificados y apunta el contador a la siguiente
+         * instruccion.
+         */
+        private void delegate(int address, int opcode) {
+            this.flush();
+            this.line(String.format("r.setPC(0x%03X);", address + 2));
+
+            Integer handler = this.delegated.get(opcode);
+            if (null == handler) {
+                handler = this.delegated.size();
+                this.delegated.put(opcode, handler);
+            }
+            this.line(String.format("this.handlers[%d].execute(0x%04X, chip8);", handler, opcode));
+
+            // La instruccion pudo modificar cualquier registro.
+            for (int index = 0; index < Register.REGISTER_SIZE; index++) {
+                this.loaded[index] = false;
+            }
+            this.iLoaded = false;
+        }
+
+        /**
+         * Obtiene la variable de Vx, la lee del registro la primera vez.
+         */
+        private String load(int x) {
+            if (!this.loaded[x]) {
+                this.line(String.format("%s = r.get(0x%X);", v(x), x));
+                this.loaded[x] = true;
+                this.used[x] = true;
+            }
+
+            return v(x);
+        }
+
+        /**
+         * Almacena un valor en la variable de Vx.
+         */
+        private void store(int x, String value) {
+            this.line(v(x) + " = " + value + ";");
+            this.loaded[x] = true;
+            this.dirty[x] = true;
+            this.used[x] = true;
+        }
+
+        private String loadI() {
+            if (!this.iLoaded) {
+                this.line("i = r.getRegisterI();");
+                this.iLoaded = true;
+                this.iUsed = true;
+            }
+
+            return "i";
+        }
+
+        private void storeI(String value) {
+            this.line("i = " + value + ";");
+            this.iLoaded = true;
+            this.iDirty = true;
+            this.iUsed = true;
+        }
+
+        /**
+         * Escribe en el registro los valores modificados.
+         */
+        private void flush() {
+            for (int index = 0; index < Register.REGISTER_SIZE; index++) {
+                if (this.dirty[index]) {
+                    this.line(String.format("r.set(0x%X, %s);", index, v(index)));
+                    this.dirty[index] = false;
+                }
+            }
+
+            if (this.iDirty) {
+                this.line("r.setRegisterI(i);");
+                this.iDirty = false;
+            }
+        }
+
+        private void line(String line) {
+            for (int level = 0; level < this.indent; level++) {
+                this.body.append("    ");
+            }
+            this.body.append(line).append('\n');
+        }
+
+        private static String v(int x) {
+            return String.format("v%X", x);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.compiler;
+
+import java.util.Arrays;
+
+import mx.uach.fing.chip8.Memory;
+
+/**
+ * Almacena los bloques traducidos indexados por su direccion de inicio, y
+ * descarta los bloques que contienen una direccion modificada.
+ *
+ * @author Luis Chávez
+ */
+public class BlockCache {
+
+    // Numero de direcciones cubiertas por la cache.
+    public static final int CACHE_SIZE
+            = Memory.PROGRAM_END - Memory.PROGRAM_INIT + 1;
+
+    // Tamano maximo de un bloque en bytes.
+    private static final int MAX_BLOCK_BYTES = BlockCompiler.MAX_BLOCK_LENGTH * 2;
+
+    // Bloque que inicia en cada direccion, null si no se ha traducido.
+    private final CompiledBlock[] blocks;
+
+    // Direcciones en las que no se puede traducir un bloque.
+    private final boolean[] rejected;
+
+    // Numero de bloques que contienen cada byte del programa.
+    private final int[] coverage;
+
+    // Numero de bloques agregados.
+    private long added;
+
+    // Numero de bloques invalidados por escrituras en memoria.
+    private long invalidated;
+
+    public BlockCache() {
+        this.blocks = new CompiledBlock[CACHE_SIZE];
+        this.rejected = new boolean[CACHE_SIZE];
+        this.coverage = new int[CACHE_SIZE];
+    }
+
+    /**
+     * Convierte una direccion en un indice de la cache.
+     *
+     * @param address direccion de memoria.
+     * @return indice, -1 si la direccion esta fuera del area del programa.
+     */
+    public static int slot(int address) {
+        int slot = address - Memory.PROGRAM_INIT;
+
+        return 0 > slot || CACHE_SIZE <= slot ? -1 : slot;
+    }
+
+    /**
+     * Obtiene el bloque que inicia en el indice especificado.
+     *
+     * @param slot indice de la cache.
+     * @return bloque, null si no se ha traducido.
+     */
+    public CompiledBlock get(int slot) {
+        return this.blocks[slot];
+    }
+
+    /**
+     * Verifica si en el indice especificado no se puede traducir un bloque.
+     *
+     * @param slot indice de la cache.
+     * @return true si la direccion fue rechazada por el traductor.
+     */
+    public boolean isRejected(int slot) {
+        return this.rejected[slot];
+    }
+
+    /**
+     * Marca el indice especificado como no traducible.
+     *
+     * @param slot indice de la cache.
+     */
+    public void reject(int slot) {
+        this.rejected[slot] = true;
+    }
+
+    /**
+     * Agrega un bloque traducido.
+     *
+     * @param slot indice de la primera instruccion del bloque.
+     * @param block bloque traducido.
+     */
+    public void put(int slot, CompiledBlock block) {
+        this.blocks[slot] = block;
+        this.added++;
+
+        int end = Math.min(CACHE_SIZE, block.getEnd() - Memory.PROGRAM_INIT);
+        for (int index = slot; index < end; index++) {
+            this.coverage[index]++;
+        }
+    }
+
+    /**
+     * Descarta los bloques que contienen la direccion especificada.
+     *
+     * @param address direccion modificada.
+     * @return numero de bloques descartados.
+     */
+    public int invalidate(int address) {
+        int slot = slot(address);
+        if (-1 == slot) {
+            return 0;
+        }
+
+        // La instruccion que inicia en la direccion o un byte antes cambio.
+        this.rejected[slot] = false;
+        if (0 < slot) {
+            this.rejected[slot - 1] = false;
+        }
+
+        if (0 == this.coverage[slot]) {
+            return 0;
+        }
+
+        int removed = 0;
+        for (int start = Math.max(0, slot - MAX_BLOCK_BYTES + 1); start <= slot; start++) {
+            CompiledBlock block = this.blocks[start];
+            if (null != block && block.getEnd() - Memory.PROGRAM_INIT > slot) {
+                this.remove(start);
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Descarta todos los bloques.
+     */
+    public void clear() {
+        Arrays.fill(this.blocks, null);
+        Arrays.fill(this.rejected, false);
+        Arrays.fill(this.coverage, 0);
+    }
+
+    /**
+     * Obtiene el numero de bloques agregados.
+     *
+     * @return numero de bloques agregados.
+     */
+    public long getAdded() {
+        return this.added;
+    }
+
+    /**
+     * Obtiene el numero de bloques invalidados por escrituras en memoria.
+     *
+     * @return numero de bloques invalidados.
+     */
+    public long getInvalidated() {
+        return this.invalidated;
+    }
+
+    private void remove(int slot) {
+        CompiledBlock block = this.blocks[slot];
+        this.blocks[slot] = null;
+        this.invalidated++;
+
+        int end = Math.min(CACHE_SIZE, block.getEnd() - Memory.PROGRAM_INIT);
+        for (int index = slot; index < end; index++) {
+            this.coverage[index]--;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.compiler;
+
+/**
+ * Cargador de las clases generadas, se crea uno por cada bloque para que la
+ * clase se pueda descargar cuando el bloque se invalida.
+ *
+ * @author Luis Chávez
+ */
+public class BlockClassLoader extends ClassLoader {
+
+    public BlockClassLoader(ClassLoader parent) {
+        super(parent);
+    }
+
+    /**
+     * Define una clase a partir de sus bytes.
+     *
+     * @param name nombre binario de la clase (con '.').
+     * @param bytes archivo de clase.
+     * @return clase definida.
+     */
+    public Class<?> define(String name, byte[] bytes) {
+        return this.defineClass(name, bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,611 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import mx.uach.fing.chip8.Memory;
+import mx.uach.fing.chip8.OPCode;
+import mx.uach.fing.chip8.Register;
+import mx.uach.fing.chip8.instruction.Instruction;
+import mx.uach.fing.chip8.instruction.InstructionSet;
+import mx.uach.fing.chip8.instruction.UnknownInstructionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Traduce bloques basicos de la ROM a clases de la JVM.
+ *
+ * Un bloque termina en los saltos, llamadas, retornos, instrucciones de salto
+ * condicional (skip), la espera de tecla, la salida del interprete y las
+ * escrituras en memoria (para respetar el codigo que se modifica a si mismo).
+ * Los registros V0 - VF e I se mantienen en variables locales y solo se
+ * escriben en el registro a la salida del bloque o antes de delegar una
+ * instruccion al interprete.
+ *
+ * @author Luis Chávez
+ */
+public class BlockCompiler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlockCompiler.class);
+
+    // Numero maximo de instrucciones por bloque.
+    public static final int MAX_BLOCK_LENGTH = 64;
+
+    // Nombres internos de las clases utilizadas por el codigo generado.
+    private static final String CHIP8 = "mx/uach/fing/chip8/Chip8";
+    private static final String REGISTER = "mx/uach/fing/chip8/Register";
+    private static final String INSTRUCTION = "mx/uach/fing/chip8/instruction/Instruction";
+    private static final String COMPILED_BLOCK = "mx/uach/fing/chip8/compiler/CompiledBlock";
+
+    // Descriptores utilizados por el codigo generado.
+    private static final String HANDLERS = "[L" + INSTRUCTION + ";";
+    private static final String CONSTRUCTOR = "(" + HANDLERS + "II)V";
+    private static final String EXECUTE = "(L" + CHIP8 + ";)I";
+    private static final String INSTRUCTION_EXECUTE = "(IL" + CHIP8 + ";)V";
+
+    // Variables locales del metodo generado.
+    private static final int LOCAL_THIS = 0;
+    private static final int LOCAL_CHIP8 = 1;
+    private static final int LOCAL_REGISTER = 2;
+    private static final int LOCAL_V = 3;
+    private static final int LOCAL_I = LOCAL_V + Register.REGISTER_SIZE;
+    private static final int MAX_LOCALS = LOCAL_I + 1;
+
+    // Tamano maximo de la pila de operandos del metodo generado.
+    private static final int MAX_STACK = 6;
+
+    // Memoria de la cual se leen las instrucciones.
+    private final Memory memory;
+
+    // Set de instrucciones con el cual se resuelven los opcodes.
+    private final InstructionSet instructionSet;
+
+    // Numero de bloques traducidos, se utiliza para nombrar las clases.
+    private int count;
+
+    public BlockCompiler(Memory memory, InstructionSet instructionSet) {
+        this.memory = memory;
+        this.instructionSet = instructionSet;
+    }
+
+    /**
+     * Verifica si la instruccion termina un bloque basico.
+     *
+     * @param opcode opcode de la instruccion.
+     * @return true si la instruccion termina el bloque, false de otra manera.
+     */
+    public static boolean endsBlock(int opcode) {
+        switch (OPCode.instruction(opcode)) {
+            case 0x0:
+                // 00EE - RET, 00FD - EXIT.
+                return 0x00EE == opcode || 0x00FD == opcode;
+            case 0x1:
+            case 0x2:
+            case 0x3:
+            case 0x4:
+            case 0x5:
+            case 0x9:
+            case 0xB:
+            case 0xE:
+                return true;
+            case 0xF:
+                // Fx0A - LD Vx, K, Fx33 - LD B, Vx, Fx55 - LD [I], Vx.
+                int kk = OPCode.kk(opcode);
+                return 0x0A == kk || 0x33 == kk || 0x55 == kk;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Traduce el bloque basico que inicia en la direccion especificada.
+     *
+     * @param start direccion de la primera instruccion.
+     * @return bloque traducido, null si no se puede traducir ninguna
+     * instruccion en la direccion.
+     */
+    public CompiledBlock compile(int start) {
+        // Lee las instrucciones del bloque.
+        List<Integer> opcodes = new ArrayList<>();
+        List<Instruction> instructions = new ArrayList<>();
+
+        int address = start;
+        while (MAX_BLOCK_LENGTH > opcodes.size()
+                && Memory.PROGRAM_INIT <= address && Memory.PROGRAM_END > address) {
+            int opcode = this.memory.readWord(address);
+
+            Instruction instruction;
+            try {
+                instruction = this.instructionSet.resolve(opcode);
+            } catch (UnknownInstructionException ex) {
+                instruction = InstructionSet.UNKNOWN;
+            }
+
+            // Las instrucciones desconocidas se dejan al interprete.
+            if (InstructionSet.UNKNOWN == instruction) {
+                break;
+            }
+
+            opcodes.add(opcode);
+            instructions.add(instruction);
+            address += 2;
+
+            if (endsBlock(opcode)) {
+                break;
+            }
+        }
+
+        if (opcodes.isEmpty()) {
+            return null;
+        }
+
+        String name = String.format("mx/uach/fing/chip8/compiler/Block_%03X_%d", start, this.count++);
+
+        Translation translation = new Translation(name, start, opcodes, instructions,
+                this.instructionSet.getQuirkProfile().isShiftVy());
+        byte[] bytes = translation.translate();
+
+        try {
+            BlockClassLoader loader = new BlockClassLoader(CompiledBlock.class.getClassLoader());
+            Class<?> type = loader.define(name.replace('/', '.'), bytes);
+
+            return (CompiledBlock) type
+                    .getConstructor(Instruction[].class, int.class, int.class)
+                    .newInstance(translation.handlers(), start, opcodes.size());
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            LOGGER.error(String.format("No se pudo traducir el bloque 0x%03X", start), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Traduccion de un bloque, lleva el estado de las variables locales
+     * mientras se genera el codigo.
+     */
+    private static class Translation {
+
+        private final ClassBuilder builder;
+        private final CodeBuilder code;
+        private final int start;
+        private final List<Integer> opcodes;
+        private final List<Instruction> instructions;
+
+        // Instrucciones delegadas al interprete.
+        private final List<Instruction> handlers;
+
+        // Registros cargados en variables locales.
+        private final boolean[] loaded;
+
+        // Registros modificados que no se han escrito en el registro.
+        private final boolean[] dirty;
+
+        // Estado del registro I.
+        private boolean iLoaded;
+        private boolean iDirty;
+
+        // Indica si 8xy6 y 8xyE desplazan Vy, segun el perfil de compatibilidad.
+        private final boolean shiftVy;
+
+        Translation(String name, int start, List<Integer> opcodes, List<Instruction> instructions,
+                boolean shiftVy) {
+            this.builder = new ClassBuilder(name, COMPILED_BLOCK);
+            this.code = new CodeBuilder(this.builder, MAX_STACK, MAX_LOCALS);
+            this.start = start;
+            this.opcodes = opcodes;
+            this.instructions = instructions;
+            this.handlers = new ArrayList<>();
+            this.loaded = new boolean[Register.REGISTER_SIZE];
+            this.dirty = new boolean[Register.REGISTER_SIZE];
+            this.shiftVy = shiftVy;
+        }
+
+        Instruction[] handlers() {
+            return this.handlers.toArray(new Instruction[this.handlers.size()]);
+        }
+
+        byte[] translate() {
+            this.constructor();
+
+            // Register register = chip8.register;
+            this.code.local(CodeBuilder.ALOAD, LOCAL_CHIP8);
+            this.code.getField(CHIP8, "register", "L" + REGISTER + ";");
+            this.code.local(CodeBuilder.ASTORE, LOCAL_REGISTER);
+
+            int length = this.opcodes.size();
+            boolean terminated = false;
+            for (int index = 0; index < length; index++) {
+                int address = this.start + index * 2;
+                boolean last = index == length - 1;
+
+                terminated = this.instruction(address, this.opcodes.get(index), this.instructions.get(index), last);
+            }
+
+            // El bloque termino sin una instruccion de control de flujo.
+            if (!terminated) {
+                this.exit(this.start + length * 2);
+            }
+
+            this.builder.method(ClassBuilder.ACC_PUBLIC, "execute", EXECUTE, this.code);
+
+            return this.builder.toByteArray();
+        }
+
+        private void constructor() {
+            CodeBuilder init = new CodeBuilder(this.builder, 4, 4);
+            init.local(CodeBuilder.ALOAD, 0);
+            init.local(CodeBuilder.ALOAD, 1);
+            init.local(CodeBuilder.ILOAD, 2);
+            init.local(CodeBuilder.ILOAD, 3);
+            init.invoke(CodeBuilder.INVOKESPECIAL, COMPILED_BLOCK, "<init>", CONSTRUCTOR);
+            init.op(CodeBuilder.RETURN);
+
+            this.builder.method(ClassBuilder.ACC_PUBLIC, "<init>", CONSTRUCTOR, init);
+        }
+
+        /**
+         * Genera el codigo de una instruccion.
+         *
+         * @return true si la instruccion termino el bloque (retorna).
+         */
+        private boolean instruction(int address, int opcode, Instruction instruction, boolean last) {
+            int x = OPCode.x(opcode);
+            int y = OPCode.y(opcode);
+            int n = OPCode.n(opcode);
+            int kk = OPCode.kk(opcode);
+            int nnn = OPCode.nnn(opcode);
+
+            switch (OPCode.instruction(opcode)) {
+                case 0x1:
+                    // 1nnn - JP addr
+                    this.exit(nnn);
+                    return true;
+                case 0x3:
+                    // 3xkk - SE Vx, byte
+                    this.load(x);
+                    this.code.push(kk);
+                    this.skip(CodeBuilder.IF_ICMPNE, address);
+                    return true;
+                case 0x4:
+                    // 4xkk - SNE Vx, byte
+                    this.load(x);
+                    this.code.push(kk);
+                    this.skip(CodeBuilder.IF_ICMPEQ, address);
+                    return true;
+                case 0x5:
+                    // 5xy0 - SE Vx, Vy
+                    this.load(x);
+                    this.load(y);
+                    this.skip(CodeBuilder.IF_ICMPNE, address);
+                    return true;
+                case 0x9:
+                    // 9xy0 - SNE Vx, Vy
+                    this.load(x);
+                    this.load(y);
+                    this.skip(CodeBuilder.IF_ICMPEQ, address);
+                    return true;
+                case 0x6:
+                    // 6xkk - LD Vx, byte
+                    this.code.push(kk);
+                    this.store(x);
+                    return false;
+                case 0x7:
+                    // 7xkk - ADD Vx, byte
+                    this.load(x);
+                    this.code.push(kk);
+                    this.code.op(CodeBuilder.IADD);
+                    this.mask(0xFF);
+                    this.store(x);
+                    return false;
+                case 0x8:
+                    if (this.alu(x, y, n)) {
+                        return false;
+                    }
+                    break;
+                case 0xA:
+                    // Annn - LD I, addr
+                    this.code.push(nnn);
+                    this.storeI();
+                    return false;
+                case 0xF:
+                    if (this.misc(x, kk)) {
+                        return false;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            // Delega la instruccion al interprete.
+            this.delegate(address, opcode, instruction);
+            if (last) {
+                this.code.push(this.opcodes.size());
+                this.code.op(CodeBuilder.IRETURN);
+            }
+
+            return last;
+        }
+
+        /**
+         * Genera las operaciones 8xyN, VF se calcula con los valores previos de
+         * Vx y Vy y se escribe antes que Vx, igual que en el interprete.
+         *
+         * @return false si la operacion no se traduce.
+         */
+        private boolean alu(int x, int y, int n) {
+            int f = Register.REGISTER_FLAG;
+            int s = this.shiftVy ? y : x;
+
+            switch (n) {
+                case 0x0:
+                    // 8xy0 - LD Vx, Vy
+                    this.load(y);
+                    this.store(x);
+                    return true;
+                case 0x1:
+                case 0x2:
+                case 0x3:
+                    // 8xy1 - OR, 8xy2 - AND, 8xy3 - XOR
+                    this.load(x);
+                    this.load(y);
+                    this.code.op(0x1 == n ? CodeBuilder.IOR
+                            : 0x2 == n ? CodeBuilder.IAND : CodeBuilder.IXOR);
+                    this.store(x);
+                    return true;
+                case 0x4:
+                    // 8xy4 - ADD Vx, Vy, VF = vx > vx + vy.
+                    this.load(x);
+                    this.load(y);
+                    this.code.op(CodeBuilder.IADD);
+                    this.mask(0xFF);
+                    this.load(y);
+                    this.code.push(31);
+                    this.code.op(CodeBuilder.IUSHR);
+                    this.store(f);
+                    this.store(x);
+                    return true;
+                case 0x5:
+                    // 8xy5 - SUB Vx, Vy, VF = vx > vy.
+                    this.load(x);
+                    this.load(y);
+                    this.code.op(CodeBuilder.ISUB);
+                    this.mask(0xFF);
+                    this.greater(x, y);
+                    this.store(f);
+                    this.store(x);
+                    return true;
+                case 0x6:
+                    // 8xy6 - SHR Vx {, Vy}, VF = bit menos significativo.
+                    this.load(s);
+                    this.code.push(1);
+                    this.code.op(CodeBuilder.IUSHR);
+                    this.load(s);
+                    this.mask(0x1);
+                    this.store(f);
+                    this.store(x);
+                    return true;
+                case 0x7:
+                    // 8xy7 - SUBN Vx, Vy, VF = vy > vx.
+                    this.load(y);
+                    this.load(x);
+                    this.code.op(CodeBuilder.ISUB);
+                    this.mask(0xFF);
+                    this.greater(y, x);
+                    this.store(f);
+                    this.store(x);
+                    return true;
+                case 0xE:
+                    // 8xyE - SHL Vx {, Vy}, VF = bit mas significativo.
+                    this.load(s);
+                    this.code.push(1);
+                    this.code.op(CodeBuilder.ISHL);
+                    this.mask(0xFF);
+                    this.load(s);
+                    this.code.push(7);
+                    this.code.op(CodeBuilder.IUSHR);
+                    this.mask(0x1);
+                    this.store(f);
+                    this.store(x);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Genera las operaciones Fxkk que no requieren al interprete.
+         *
+         * @return false si la operacion no se traduce.
+         */
+        private boolean misc(int x, int kk) {
+            switch (kk) {
+                case 0x07:
+                    // Fx07 - LD Vx, DT
+                    this.code.local(CodeBuilder.ALOAD, LOCAL_REGISTER);
+                    this.code.invoke(CodeBuilder.INVOKEVIRTUAL, REGISTER, "getDT", "()I");
+                    this.store(x);
+                    return true;
+                case 0x15:
+                    // Fx15 - LD DT, Vx
+                    this.code.local(CodeBuilder.ALOAD, LOCAL_REGISTER);
+                    this.load(x);
+                    this.code.invoke(CodeBuilder.INVOKEVIRTUAL, REGISTER, "setDT", "(I)V");
+                    return true;
+                case 0x18:
+                    // Fx18 - LD ST, Vx
+                    this.code.local(CodeBuilder.ALOAD, LOCAL_REGISTER);
+                    this.load(x);
+                    this.code.invoke(CodeBuilder.INVOKEVIRTUAL, REGISTER, "setST", "(I)V");
+                    return true;
+                case 0x1E:
+                    // Fx1E - ADD I, Vx
+                    this.loadI();
+                    this.load(x);
+                    this.code.op(CodeBuilder.IADD);
+                    this.mask(0xFFFF);
+                    this.storeI();
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Agrega a la pila 1 si va > vb, 0 de otra manera (los valores son de
+         * 8 bits, el signo de vb - va indica la comparacion).
+         */
+        private void greater(int a, int b) {
+            this.load(b);
+            this.load(a);
+            this.code.op(CodeBuilder.ISUB);
+            this.code.push(31);
+            this.code.op(CodeBuilder.IUSHR);
+        }
+
+        /**
+         * Genera un salto condicional, compara los dos valores en la pila y si
+         * la condicion de no saltar se cumple continua en la siguiente
+         * instruccion.
+         */
+        private void skip(int noSkip, int address) {
+            this.flush();
+
+            int next = this.code.label();
+            this.code.jump(noSkip, next);
+            this.setPC(address + 4);
+            this.code.push(this.opcodes.size());
+            this.code.op(CodeBuilder.IRETURN);
+
+            this.code.mark(next);
+            this.setPC(address + 2);
+            this.code.push(this.opcodes.size());
+            this.code.op(CodeBuilder.IRETURN);
+        }
+
+        /**
+         * Termina el bloque continuando en la direccion especificada.
+         */
+        private void exit(int address) {
+            this.flush();
+            this.setPC(address);
+            this.code.push(this.opcodes.size());
+            this.code.op(CodeBuilder.IRETURN);
+        }
+
+        /**
+         * Ejecuta la instruccion con el interprete, previamente escribe los
+         * registros modificados y apunta el contador a la siguiente
+         * instruccion.
+         */
+        private void delegate(int address, int opcode, Instruction instruction) {
+            this.flush();
+            this.setPC(address + 2);
+
+            this.code.local(CodeBuilder.ALOAD, LOCAL_THIS);
+            this.code.getField(COMPILED_BLOCK, "handlers", HANDLERS);
+            this.code.push(this.handlers.size());
+            this.code.op(CodeBuilder.AALOAD);
+            this.code.push(opcode);
+            this.code.local(CodeBuilder.ALOAD, LOCAL_CHIP8);
+            this.code.invokeInterface(INSTRUCTION, "execute", INSTRUCTION_EXECUTE, 3);
+
+            this.handlers.add(instruction);
+
+            // La instruccion pudo modificar cualquier registro.
+            for (int index = 0; index < Register.REGISTER_SIZE; index++) {
+                this.loaded[index] = false;
+            }
+            this.iLoaded = false;
+        }
+
+        private void setPC(int address) {
+            this.code.local(CodeBuilder.ALOAD, LOCAL_REGISTER);
+            this.code.push(address);
+            this.code.invoke(CodeBuilder.INVOKEVIRTUAL, REGISTER, "setPC", "(I)V");
+        }
+
+        private void mask(int mask) {
+            this.code.push(mask);
+            this.code.op(CodeBuilder.IAND);
+        }
+
+        /**
+         * Agrega a la pila el valor de Vx, lo lee del registro la primera vez.
+         */
+        private void load(int x) {
+            if (!this.loaded[x]) {
+                this.code.local(CodeBuilder.ALOAD, LOCAL_REGISTER);
+                this.code.push(x);
+                this.code.invoke(CodeBuilder.INVOKEVIRTUAL, REGISTER, "get", "(I)I");
+                this.code.local(CodeBuilder.ISTORE, LOCAL_V + x);
+                this.loaded[x] = true;
+            }
+
+            this.code.local(CodeBuilder.ILOAD, LOCAL_V + x);
+        }
+
+        /**
+         * Almacena el valor de la pila en Vx.
+         */
+        private void store(int x) {
+            this.code.local(CodeBuilder.ISTORE, LOCAL_V + x);
+            this.loaded[x] = true;
+            this.dirty[x] = true;
+        }
+
+        private void loadI() {
+            if (!this.iLoaded) {
+                this.code.local(CodeBuilder.ALOAD, LOCAL_REGISTER);
+                this.code.invoke(CodeBuilder.INVOKEVIRTUAL, REGISTER, "getRegisterI", "()I");
+                this.code.local(CodeBuilder.ISTORE, LOCAL_I);
+                this.iLoaded = true;
+            }
+
+            this.code.local(CodeBuilder.ILOAD, LOCAL_I);
+        }
+
+        private void storeI() {
+            this.code.local(CodeBuilder.ISTORE, LOCAL_I);
+            this.iLoaded = true;
+            this.iDirty = true;
+        }
+
+        /**
+         * Escribe en el registro los valores modificados.
+         */
+        private void flush() {
+            for (int index = 0; index < Register.REGISTER_SIZE; index++) {
+                if (this.dirty[index]) {
+                    this.code.local(CodeBuilder.ALOAD, LOCAL_REGISTER);
+                    this.code.push(index);
+                    this.code.local(CodeBuilder.ILOAD, LOCAL_V + index);
+                    this.code.invoke(CodeBuilder.INVOKEVIRTUAL, REGISTER, "set", "(II)V");
+                    this.dirty[index] = false;
+                }
+            }
+
+            if (this.iDirty) {
+                this.code.local(CodeBuilder.ALOAD, LOCAL_REGISTER);
+                this.code.local(CodeBuilder.ILOAD, LOCAL_I);
+                this.code.invoke(CodeBuilder.INVOKEVIRTUAL, REGISTER, "setRegisterI", "(I)V");
+                this.iDirty = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generador minimo de archivos de clase de la JVM, soporta unicamente lo
+ * necesario para traducir bloques: una clase final con metodos y sin campos.
+ *
+ * Las clases se generan con la version 49 (Java 5), por lo que la JVM las
+ * verifica por inferencia de tipos y no se requieren tablas StackMapTable.
+ *
+ * @author Luis Chávez
+ */
+public class ClassBuilder {
+
+    // Version de los archivos de clase generados.
+    public static final int CLASS_VERSION = 49;
+
+    // Modificadores de acceso.
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    // Etiquetas de las entradas del pool de constantes.
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    // Nombre interno de la clase (con '/').
+    private final String name;
+
+    // Nombre interno de la super clase.
+    private final String superName;
+
+    // Entradas del pool de constantes ya escritas.
+    private final Map<String, Integer> constants;
+
+    // Bytes del pool de constantes.
+    private final ByteArrayOutputStream pool;
+
+    // Bytes de cada metodo.
+    private final List<byte[]> methods;
+
+    // Numero de entradas del pool mas uno.
+    private int poolCount;
+
+    public ClassBuilder(String name, String superName) {
+        this.name = name;
+        this.superName = superName;
+        this.constants = new HashMap<>();
+        this.pool = new ByteArrayOutputStream();
+        this.methods = new ArrayList<>();
+        this.poolCount = 1;
+    }
+
+    /**
+     * Obtiene el nombre interno de la clase.
+     *
+     * @return nombre interno.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Agrega (si no existe) una cadena UTF-8 al pool de constantes.
+     *
+     * @param value cadena.
+     * @return indice en el pool.
+     */
+    public int utf8(String value) {
+        String key = "U" + value;
+        Integer index = this.constants.get(key);
+        if (null == index) {
+            DataOutputStream out = new DataOutputStream(this.pool);
+            try {
+                out.writeByte(CONSTANT_UTF8);
+                out.writeUTF(value);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+            index = this.add(key);
+        }
+
+        return index;
+    }
+
+    /**
+     * Agrega (si no existe) un entero al pool de constantes.
+     *
+     * @param value entero.
+     * @return indice en el pool.
+     */
+    public int integer(int value) {
+        String key = "I" + value;
+        Integer index = this.constants.get(key);
+        if (null == index) {
+            this.pool.write(CONSTANT_INTEGER);
+            this.u4(this.pool, value);
+            index = this.add(key);
+        }
+
+        return index;
+    }
+
+    /**
+     * Agrega (si no existe) una referencia a una clase.
+     *
+     * @param internalName nombre interno de la clase.
+     * @return indice en el pool.
+     */
+    public int classRef(String internalName) {
+        String key = "C" + internalName;
+        Integer index = this.constants.get(key);
+        if (null == index) {
+            int nameIndex = this.utf8(internalName);
+            this.pool.write(CONSTANT_CLASS);
+            this.u2(this.pool, nameIndex);
+            index = this.add(key);
+        }
+
+        return index;
+    }
+
+    /**
+     * Agrega (si no existe) una referencia a un campo.
+     *
+     * @param owner nombre interno de la clase del campo.
+     * @param name nombre del campo.
+     * @param descriptor descriptor del campo.
+     * @return indice en el pool.
+     */
+    public int fieldRef(String owner, String name, String descriptor) {
+        return this.memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    /**
+     * Agrega (si no existe) una referencia a un metodo de una clase.
+     *
+     * @param owner nombre interno de la clase del metodo.
+     * @param name nombre del metodo.
+     * @param descriptor descriptor del metodo.
+     * @return indice en el pool.
+     */
+    public int methodRef(String owner, String name, String descriptor) {
+        return this.memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    /**
+     * Agrega (si no existe) una referencia a un metodo de una interfaz.
+     *
+     * @param owner nombre interno de la interfaz.
+     * @param name nombre del metodo.
+     * @param descriptor descriptor del metodo.
+     * @return indice en el pool.
+     */
+    public int interfaceMethodRef(String owner, String name, String descriptor) {
+        return this.memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+    }
+
+    /**
+     * Agrega un metodo a la clase.
+     *
+     * @param access modificadores de acceso.
+     * @param name nombre del metodo.
+     * @param descriptor descriptor del metodo.
+     * @param code codigo del metodo.
+     */
+    public void method(int access, String name, String descriptor, CodeBuilder code) {
+        byte[] bytecode = code.toByteArray();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.u2(out, access);
+        this.u2(out, this.utf8(name));
+        this.u2(out, this.utf8(descriptor));
+        // Un solo atributo, Code.
+        this.u2(out, 1);
+        this.u2(out, this.utf8("Code"));
+        this.u4(out, 12 + bytecode.length);
+        this.u2(out, code.getMaxStack());
+        this.u2(out, code.getMaxLocals());
+        this.u4(out, bytecode.length);
+        out.write(bytecode, 0, bytecode.length);
+        // Sin tabla de excepciones ni atributos.
+        this.u2(out, 0);
+        this.u2(out, 0);
+
+        this.methods.add(out.toByteArray());
+    }
+
+    /**
+     * Genera el archivo de clase.
+     *
+     * @return bytes del archivo de clase.
+     */
+    public byte[] toByteArray() {
+        int thisIndex = this.classRef(this.name);
+        int superIndex = this.classRef(this.superName);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.u4(out, 0xCAFEBABE);
+        this.u2(out, 0);
+        this.u2(out, CLASS_VERSION);
+        this.u2(out, this.poolCount);
+        byte[] constantPool = this.pool.toByteArray();
+        out.write(constantPool, 0, constantPool.length);
+        this.u2(out, ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        this.u2(out, thisIndex);
+        this.u2(out, superIndex);
+        // Sin interfaces ni campos.
+        this.u2(out, 0);
+        this.u2(out, 0);
+        this.u2(out, this.methods.size());
+        for (byte[] method : this.methods) {
+            out.write(method, 0, method.length);
+        }
+        // Sin atributos.
+        this.u2(out, 0);
+
+        return out.toByteArray();
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        String key = tag + owner + "." + name + descriptor;
+        Integer index = this.constants.get(key);
+        if (null == index) {
+            int classIndex = this.classRef(owner);
+            int nameAndType = this.nameAndType(name, descriptor);
+            this.pool.write(tag);
+            this.u2(this.pool, classIndex);
+            this.u2(this.pool, nameAndType);
+            index = this.add(key);
+        }
+
+        return index;
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        String key = "N" + name + ":" + descriptor;
+        Integer index = this.constants.get(key);
+        if (null == index) {
+            int nameIndex = this.utf8(name);
+            int descriptorIndex = this.utf8(descriptor);
+            this.pool.write(CONSTANT_NAME_AND_TYPE);
+            this.u2(this.pool, nameIndex);
+            this.u2(this.pool, descriptorIndex);
+            index = this.add(key);
+        }
+
+        return index;
+    }
+
+    private int add(String key) {
+        int index = this.poolCount++;
+        this.constants.put(key, index);
+
+        return index;
+    }
+
+    private void u2(ByteArrayOutputStream out, int value) {
+        out.write((value >> 8) & 0xFF);
+        out.write(value & 0xFF);
+    }
+
+    private void u4(ByteArrayOutputStream out, int value) {
+        out.write((value >> 24) & 0xFF);
+        out.write((value >> 16) & 0xFF);
+        out.write((value >> 8) & 0xFF);
+        out.write(value & 0xFF);
+    }
+}
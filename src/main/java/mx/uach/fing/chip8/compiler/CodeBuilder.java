@@ -0,0 +1,230 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generador del bytecode de un metodo, con soporte para etiquetas y saltos.
+ *
+ * @author Luis Chávez
+ */
+public class CodeBuilder {
+
+    // Instrucciones de la JVM utilizadas.
+    public static final int ICONST_0 = 0x03;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC_W = 0x13;
+    public static final int ILOAD = 0x15;
+    public static final int ALOAD = 0x19;
+    public static final int AALOAD = 0x32;
+    public static final int ISTORE = 0x36;
+    public static final int ASTORE = 0x3A;
+    public static final int IADD = 0x60;
+    public static final int ISUB = 0x64;
+    public static final int ISHL = 0x78;
+    public static final int IUSHR = 0x7C;
+    public static final int IAND = 0x7E;
+    public static final int IOR = 0x80;
+    public static final int IXOR = 0x82;
+    public static final int IF_ICMPEQ = 0x9F;
+    public static final int IF_ICMPNE = 0xA0;
+    public static final int IRETURN = 0xAC;
+    public static final int RETURN = 0xB1;
+    public static final int GETFIELD = 0xB4;
+    public static final int INVOKEVIRTUAL = 0xB6;
+    public static final int INVOKESPECIAL = 0xB7;
+    public static final int INVOKEINTERFACE = 0xB9;
+
+    // Clase a la que pertenece el metodo, contiene el pool de constantes.
+    private final ClassBuilder owner;
+
+    // Bytecode generado.
+    private final ByteArrayOutputStream code;
+
+    // Posicion de cada etiqueta, -1 si no se ha marcado.
+    private final List<Integer> labels;
+
+    // Saltos pendientes de resolver: posicion de la instruccion y etiqueta.
+    private final List<int[]> jumps;
+
+    // Tamano maximo de la pila de operandos.
+    private final int maxStack;
+
+    // Numero de variables locales.
+    private final int maxLocals;
+
+    public CodeBuilder(ClassBuilder owner, int maxStack, int maxLocals) {
+        this.owner = owner;
+        this.code = new ByteArrayOutputStream();
+        this.labels = new ArrayList<>();
+        this.jumps = new ArrayList<>();
+        this.maxStack = maxStack;
+        this.maxLocals = maxLocals;
+    }
+
+    public int getMaxStack() {
+        return this.maxStack;
+    }
+
+    public int getMaxLocals() {
+        return this.maxLocals;
+    }
+
+    /**
+     * Agrega una instruccion sin operandos.
+     *
+     * @param opcode instruccion de la JVM.
+     */
+    public void op(int opcode) {
+        this.code.write(opcode);
+    }
+
+    /**
+     * Agrega una instruccion que accede a una variable local.
+     *
+     * @param opcode ILOAD, ISTORE, ALOAD o ASTORE.
+     * @param local indice de la variable local (0 - 255).
+     */
+    public void local(int opcode, int local) {
+        this.code.write(opcode);
+        this.code.write(local);
+    }
+
+    /**
+     * Agrega a la pila un valor entero constante.
+     *
+     * @param value valor a agregar.
+     */
+    public void push(int value) {
+        if (-1 <= value && 5 >= value) {
+            this.code.write(ICONST_0 + value);
+        } else if (Byte.MIN_VALUE <= value && Byte.MAX_VALUE >= value) {
+            this.code.write(BIPUSH);
+            this.code.write(value);
+        } else if (Short.MIN_VALUE <= value && Short.MAX_VALUE >= value) {
+            this.code.write(SIPUSH);
+            this.u2(value);
+        } else {
+            this.code.write(LDC_W);
+            this.u2(this.owner.integer(value));
+        }
+    }
+
+    /**
+     * Agrega una instruccion que lee un campo de un objeto.
+     *
+     * @param owner nombre interno de la clase del campo.
+     * @param name nombre del campo.
+     * @param descriptor descriptor del campo.
+     */
+    public void getField(String owner, String name, String descriptor) {
+        this.code.write(GETFIELD);
+        this.u2(this.owner.fieldRef(owner, name, descriptor));
+    }
+
+    /**
+     * Agrega la invocacion de un metodo de una clase.
+     *
+     * @param opcode INVOKEVIRTUAL o INVOKESPECIAL.
+     * @param owner nombre interno de la clase.
+     * @param name nombre del metodo.
+     * @param descriptor descriptor del metodo.
+     */
+    public void invoke(int opcode, String owner, String name, String descriptor) {
+        this.code.write(opcode);
+        this.u2(this.owner.methodRef(owner, name, descriptor));
+    }
+
+    /**
+     * Agrega la invocacion de un metodo de una interfaz.
+     *
+     * @param owner nombre interno de la interfaz.
+     * @param name nombre del metodo.
+     * @param descriptor descriptor del metodo.
+     * @param slots numero de palabras de los argumentos, incluido el objeto.
+     */
+    public void invokeInterface(String owner, String name, String descriptor, int slots) {
+        this.code.write(INVOKEINTERFACE);
+        this.u2(this.owner.interfaceMethodRef(owner, name, descriptor));
+        this.code.write(slots);
+        this.code.write(0);
+    }
+
+    /**
+     * Crea una nueva etiqueta sin marcar.
+     *
+     * @return identificador de la etiqueta.
+     */
+    public int label() {
+        this.labels.add(-1);
+
+        return this.labels.size() - 1;
+    }
+
+    /**
+     * Marca la posicion actual del codigo con la etiqueta especificada.
+     *
+     * @param label identificador de la etiqueta.
+     */
+    public void mark(int label) {
+        this.labels.set(label, this.code.size());
+    }
+
+    /**
+     * Agrega un salto (condicional o GOTO) hacia una etiqueta.
+     *
+     * @param opcode instruccion de salto.
+     * @param label identificador de la etiqueta.
+     */
+    public void jump(int opcode, int label) {
+        this.jumps.add(new int[]{this.code.size(), label});
+        this.code.write(opcode);
+        this.u2(0);
+    }
+
+    /**
+     * Obtiene el bytecode generado, con los saltos resueltos.
+     *
+     * @return bytecode.
+     * @throws IllegalStateException si un salto apunta a una etiqueta sin
+     * marcar.
+     */
+    public byte[] toByteArray() {
+        byte[] bytecode = this.code.toByteArray();
+        for (int[] jump : this.jumps) {
+            int target = this.labels.get(jump[1]);
+            if (0 > target) {
+                throw new IllegalStateException(String.format("La etiqueta %d no esta marcada", jump[1]));
+            }
+
+            int offset = target - jump[0];
+            bytecode[jump[0] + 1] = (byte) (offset >> 8);
+            bytecode[jump[0] + 2] = (byte) offset;
+        }
+
+        return bytecode;
+    }
+
+    private void u2(int value) {
+        this.code.write((value >> 8) & 0xFF);
+        this.code.write(value & 0xFF);
+    }
+}
@@ -0,0 +1,80 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.compiler;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.instruction.Instruction;
+
+/**
+ * Bloque basico traducido a bytecode, las clases generadas por
+ * {@link BlockCompiler} extienden de esta clase.
+ *
+ * @author Luis Chávez
+ */
+public abstract class CompiledBlock {
+
+    // Instrucciones que el bloque delega al interprete.
+    protected final Instruction[] handlers;
+
+    // Direccion de la primera instruccion del bloque.
+    private final int start;
+
+    // Numero de instrucciones del bloque.
+    private final int length;
+
+    protected CompiledBlock(Instruction[] handlers, int start, int length) {
+        this.handlers = handlers;
+        this.start = start;
+        this.length = length;
+    }
+
+    /**
+     * Obtiene la direccion de la primera instruccion del bloque.
+     *
+     * @return direccion de inicio.
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Obtiene el numero de instrucciones del bloque.
+     *
+     * @return numero de instrucciones.
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * Obtiene la direccion siguiente al ultimo byte del bloque.
+     *
+     * @return direccion final (exclusiva).
+     */
+    public int getEnd() {
+        return this.start + this.length * 2;
+    }
+
+    /**
+     * Ejecuta el bloque completo, al terminar el contador del programa apunta
+     * a la siguiente instruccion a ejecutar.
+     *
+     * @param chip8 instancia del emulador.
+     * @return numero de instrucciones ejecutadas.
+     */
+    public abstract int execute(Chip8 chip8);
+}
@@ -0,0 +1,130 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.compiler;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.ExecutionEngine;
+import mx.uach.fing.chip8.Memory;
+import mx.uach.fing.chip8.instruction.InstructionCache;
+import mx.uach.fing.chip8.instruction.InstructionSet;
+
+/**
+ * Motor de ejecucion que traduce cada bloque basico a bytecode la primera vez
+ * que se ejecuta, las instrucciones que no se pueden traducir se ejecutan con
+ * el interprete.
+ *
+ * @author Luis Chávez
+ */
+public class Recompiler implements ExecutionEngine {
+
+    // Traductor de bloques.
+    private final BlockCompiler compiler;
+
+    // Interprete utilizado para las instrucciones que no se traducen.
+    private final InstructionCache interpreter;
+
+    // Bloques traducidos.
+    private final BlockCache blocks;
+
+    // Numero de bloques ejecutados.
+    private long blockExecutions;
+
+    // Numero de instrucciones ejecutadas por el interprete.
+    private long interpretedInstructions;
+
+    public Recompiler(Memory memory, InstructionSet instructionSet,
+            InstructionCache interpreter) {
+        this.compiler = new BlockCompiler(memory, instructionSet);
+        this.interpreter = interpreter;
+        this.blocks = new BlockCache();
+    }
+
+    @Override
+    public int execute(Chip8 chip8) {
+        int pc = chip8.register.getPC();
+        int slot = BlockCache.slot(pc);
+
+        if (-1 == slot || this.blocks.isRejected(slot)) {
+            this.interpretedInstructions++;
+            return this.interpreter.execute(chip8);
+        }
+
+        CompiledBlock block = this.blocks.get(slot);
+        if (null == block) {
+            block = this.compiler.compile(pc);
+            if (null == block) {
+                this.blocks.reject(slot);
+                this.interpretedInstructions++;
+                return this.interpreter.execute(chip8);
+            }
+
+            this.blocks.put(slot, block);
+        }
+
+        this.blockExecutions++;
+
+        return block.execute(chip8);
+    }
+
+    @Override
+    public void onWrite(int address) {
+        this.interpreter.onWrite(address);
+        this.blocks.invalidate(address);
+    }
+
+    @Override
+    public void clear() {
+        this.interpreter.clear();
+        this.blocks.clear();
+    }
+
+    /**
+     * Obtiene el numero de bloques traducidos.
+     *
+     * @return numero de bloques traducidos.
+     */
+    public long getCompiledBlocks() {
+        return this.blocks.getAdded();
+    }
+
+    /**
+     * Obtiene el numero de bloques invalidados por escrituras en memoria.
+     *
+     * @return numero de bloques invalidados.
+     */
+    public long getInvalidatedBlocks() {
+        return this.blocks.getInvalidated();
+    }
+
+    /**
+     * Obtiene el numero de bloques ejecutados.
+     *
+     * @return numero de bloques ejecutados.
+     */
+    public long getBlockExecutions() {
+        return this.blockExecutions;
+    }
+
+    /**
+     * Obtiene el numero de instrucciones ejecutadas por el interprete.
+     *
+     * @return numero de instrucciones interpretadas.
+     */
+    public long getInterpretedInstructions() {
+        return this.interpretedInstructions;
+    }
+}
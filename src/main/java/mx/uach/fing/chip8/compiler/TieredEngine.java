@@ -0,0 +1,284 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.compiler;
+
+import java.util.Arrays;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.ExecutionEngine;
+import mx.uach.fing.chip8.Memory;
+import mx.uach.fing.chip8.instruction.InstructionCache;
+import mx.uach.fing.chip8.instruction.InstructionSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Motor de ejecucion por niveles, los bloques basicos se interpretan hasta
+ * que se ejecutan un numero determinado de veces, despues se traducen a
+ * bytecode. Cuando se modifica un bloque traducido se descarta y se vuelve a
+ * interpretar hasta que se caliente de nuevo.
+ *
+ * @author Luis Chávez
+ */
+public class TieredEngine implements ExecutionEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TieredEngine.class);
+
+    // Propiedad del sistema con el umbral de traduccion.
+    public static final String THRESHOLD_PROPERTY = "chip8.tiered.threshold";
+
+    // Numero de entradas a un bloque antes de traducirlo.
+    public static final int DEFAULT_THRESHOLD = 50;
+
+    // Tamano maximo de un bloque en bytes.
+    private static final int MAX_BLOCK_BYTES = BlockCompiler.MAX_BLOCK_LENGTH * 2;
+
+    // Traductor de bloques.
+    private final BlockCompiler compiler;
+
+    // Interprete, primer nivel de ejecucion.
+    private final InstructionCache interpreter;
+
+    // Bloques traducidos, segundo nivel de ejecucion.
+    private final BlockCache blocks;
+
+    // Numero de entradas de cada bloque interpretado.
+    private final int[] counters;
+
+    // Numero de entradas antes de traducir un bloque.
+    private int threshold;
+
+    // Indica si el contador del programa esta al inicio de un bloque.
+    private boolean boundary;
+
+    // Numero de bloques promovidos al segundo nivel.
+    private long promotions;
+
+    // Numero de bloques que regresaron al interprete.
+    private long deoptimizations;
+
+    // Tiempo total de traduccion en nanosegundos.
+    private long compileTime;
+
+    // Numero de instrucciones ejecutadas por el interprete.
+    private long interpretedCycles;
+
+    // Numero de instrucciones ejecutadas por bloques traducidos.
+    private long compiledCycles;
+
+    public TieredEngine(Memory memory, InstructionSet instructionSet,
+            InstructionCache interpreter) {
+        this(memory, instructionSet, interpreter,
+                Integer.getInteger(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD));
+    }
+
+    /**
+     * Crea el motor con un umbral de traduccion especifico.
+     *
+     * @param memory memoria de la cual se leen las instrucciones.
+     * @param instructionSet set de instrucciones.
+     * @param interpreter interprete del primer nivel.
+     * @param threshold numero de entradas a un bloque antes de traducirlo.
+     */
+    public TieredEngine(Memory memory, InstructionSet instructionSet,
+            InstructionCache interpreter, int threshold) {
+        this.compiler = new BlockCompiler(memory, instructionSet);
+        this.interpreter = interpreter;
+        this.blocks = new BlockCache();
+        this.counters = new int[BlockCache.CACHE_SIZE];
+        this.boundary = true;
+        this.setThreshold(threshold);
+    }
+
+    /**
+     * Obtiene el numero de entradas a un bloque antes de traducirlo.
+     *
+     * @return umbral de traduccion.
+     */
+    public int getThreshold() {
+        return this.threshold;
+    }
+
+    /**
+     * Establece el numero de entradas a un bloque antes de traducirlo.
+     *
+     * @param threshold umbral de traduccion, 1 traduce cada bloque la primera
+     * vez que se ejecuta.
+     */
+    public final void setThreshold(int threshold) {
+        if (1 > threshold) {
+            throw new IllegalArgumentException(
+                    String.format("El umbral %d no es valido", threshold));
+        }
+
+        this.threshold = threshold;
+    }
+
+    @Override
+    public int execute(Chip8 chip8) {
+        if (this.boundary) {
+            int pc = chip8.register.getPC();
+            int slot = BlockCache.slot(pc);
+
+            if (-1 != slot && !this.blocks.isRejected(slot)) {
+                CompiledBlock block = this.blocks.get(slot);
+                if (null == block && ++this.counters[slot] >= this.threshold) {
+                    block = this.promote(pc, slot);
+                }
+
+                if (null != block) {
+                    int executed = block.execute(chip8);
+                    this.compiledCycles += executed;
+                    return executed;
+                }
+            }
+        }
+
+        int executed = this.interpreter.execute(chip8);
+        this.interpretedCycles += executed;
+        this.boundary = BlockCompiler.endsBlock(this.interpreter.getLastOpcode());
+
+        return executed;
+    }
+
+    /**
+     * Traduce el bloque que inicia en la direccion especificada.
+     *
+     * @param pc direccion del bloque.
+     * @param slot indice del bloque en la cache.
+     * @return bloque traducido, null si no se pudo traducir.
+     */
+    private CompiledBlock promote(int pc, int slot) {
+        long start = System.nanoTime();
+        CompiledBlock block = this.compiler.compile(pc);
+        this.compileTime += System.nanoTime() - start;
+
+        this.counters[slot] = 0;
+        if (null == block) {
+            this.blocks.reject(slot);
+            return null;
+        }
+
+        this.blocks.put(slot, block);
+        this.promotions++;
+        LOGGER.debug("Block 0x{} promoted, {} instructions",
+                Integer.toHexString(pc), block.getLength());
+
+        return block;
+    }
+
+    @Override
+    public void onWrite(int address) {
+        this.interpreter.onWrite(address);
+
+        int removed = this.blocks.invalidate(address);
+        if (0 < removed) {
+            // Los bloques descartados deben calentarse de nuevo.
+            int slot = BlockCache.slot(address);
+            Arrays.fill(this.counters,
+                    Math.max(0, slot - MAX_BLOCK_BYTES + 1), slot + 1, 0);
+            this.deoptimizations += removed;
+            LOGGER.debug("Write to 0x{} deoptimized {} blocks",
+                    Integer.toHexString(address), removed);
+        }
+    }
+
+    @Override
+    public void clear() {
+        this.interpreter.clear();
+        this.blocks.clear();
+        Arrays.fill(this.counters, 0);
+        this.boundary = true;
+    }
+
+    /**
+     * Obtiene el numero de bloques promovidos al segundo nivel.
+     *
+     * @return numero de promociones.
+     */
+    public long getPromotions() {
+        return this.promotions;
+    }
+
+    /**
+     * Obtiene el numero de bloques traducidos que regresaron al interprete
+     * porque se modifico su codigo.
+     *
+     * @return numero de bloques descartados.
+     */
+    public long getDeoptimizations() {
+        return this.deoptimizations;
+    }
+
+    /**
+     * Obtiene el tiempo total empleado en traducir bloques.
+     *
+     * @return tiempo de traduccion en nanosegundos.
+     */
+    public long getCompileTime() {
+        return this.compileTime;
+    }
+
+    /**
+     * Obtiene el numero de instrucciones ejecutadas por el interprete.
+     *
+     * @return instrucciones interpretadas.
+     */
+    public long getInterpretedCycles() {
+        return this.interpretedCycles;
+    }
+
+    /**
+     * Obtiene el numero de instrucciones ejecutadas por bloques traducidos.
+     *
+     * @return instrucciones ejecutadas en bloques traducidos.
+     */
+    public long getCompiledCycles() {
+        return this.compiledCycles;
+    }
+
+    /**
+     * Obtiene la fraccion de instrucciones ejecutadas por bloques traducidos.
+     *
+     * @return valor entre 0 y 1.
+     */
+    public double getCompiledShare() {
+        long total = this.interpretedCycles + this.compiledCycles;
+
+        return 0 == total ? 0 : (double) this.compiledCycles / total;
+    }
+
+    /**
+     * Reinicia los contadores de niveles.
+     */
+    public void resetCounters() {
+        this.promotions = 0;
+        this.deoptimizations = 0;
+        this.compileTime = 0;
+        this.interpretedCycles = 0;
+        this.compiledCycles = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("promotions: %d, deoptimizations: %d, "
+                + "compile time: %.3f ms, compiled share: %.1f%%",
+                this.promotions, this.deoptimizations,
+                this.compileTime / 1_000_000.0, this.getCompiledShare() * 100);
+    }
+}
@@ -31,6 +31,7 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 
 import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.MachineScheduler;
 import mx.uach.fing.chip8.VRAM;
 import mx.uach.fing.chip8.utils.MemoryUtils;
 
@@ -48,6 +49,9 @@ public class SwingGUI {
     // Instancia del CHIP 8.
     private Chip8 chip8;
 
+    // Planificador que ejecuta los cuadros del CHIP 8.
+    private final MachineScheduler scheduler = new MachineScheduler();
+
     // Listener que escuchara por los eventos del teclado.
     private final SwingKeyListener keyListener = new SwingKeyListener();
 
@@ -128,7 +132,7 @@ public class SwingGUI {
      */
     private void start(byte[] rom) {
         if (null != this.chip8) {
-            this.chip8.stop();
+            this.scheduler.unregister(this.chip8);
         }
 
         this.chip8 = new Chip8();
@@ -138,7 +142,7 @@ public class SwingGUI {
 
         this.createCanvas(this.chip8.vram);
 
-        new Thread(this.chip8, "CHIP-8 THREAD").start();
+        this.scheduler.register(this.chip8);
     }
 
     /**
@@ -0,0 +1,34 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.instruction;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.OPCode;
+
+/**
+ * Instruccion base, las instrucciones implementan solo la version con el
+ * opcode como entero y la version con {@link OPCode} se delega a esta.
+ *
+ * @author Luis Chávez
+ */
+public abstract class AbstractInstruction implements Instruction {
+
+    @Override
+    public void execute(OPCode opcode, Chip8 chip8) {
+        this.execute(opcode.get(), chip8);
+    }
+}
@@ -26,14 +26,14 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class AddVxKKInstruction implements Instruction {
+public class AddVxKKInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int x = opcode.getX();
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
 
         int vx = chip8.register.get(x);
-        vx += opcode.getByte();
+        vx += OPCode.kk(opcode);
 
         chip8.register.set(x, vx);
     }
@@ -30,18 +30,17 @@ import mx.uach.fing.chip8.Register;
  *
  * @author Luis Chávez
  */
-public class AddVxVyInstruction implements Instruction {
+public class AddVxVyInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int x = opcode.getX();
-        int y = opcode.getY();
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
+        int y = OPCode.y(opcode);
 
         int vx = chip8.register.get(x);
         int vy = chip8.register.get(y);
 
-        chip8.register.set(Register.REGISTER_FLAG,
-                vx > vx + vy ? Register.CARRY : Register.NOT_CARRY);
+        chip8.register.setFlag(Register.FLAG_ADD, vx, vy);
 
         vx += vy;
 
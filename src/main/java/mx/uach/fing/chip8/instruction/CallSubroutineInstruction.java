@@ -27,12 +27,12 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class CallSubroutineInstruction implements Instruction {
+public class CallSubroutineInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
+    public void execute(int opcode, Chip8 chip8) {
         chip8.stack.push(chip8.register.getPC());
 
-        chip8.register.setPC(opcode.getAddress());
+        chip8.register.setPC(OPCode.nnn(opcode));
     }
 }
@@ -0,0 +1,85 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.instruction;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.OPCode;
+import mx.uach.fing.chip8.Register;
+
+/**
+ * Ciclo de espera del temporizador, Fx07 seguido de 3xkk o 4xkk sobre el mismo
+ * registro y de 1nnn.
+ *
+ * @author Luis Chávez
+ */
+public class DelayPollInstruction extends FusedInstruction {
+
+    // Registro en el que se lee el tiempo de espera.
+    private final int x;
+
+    // Valor con el que se compara el registro.
+    private final int kk;
+
+    // true si la comparacion es 3xkk, false si es 4xkk.
+    private final boolean equal;
+
+    // Direccion del salto.
+    private final int target;
+
+    public DelayPollInstruction(int address, int[] opcodes) {
+        super(address, opcodes);
+        this.x = OPCode.x(opcodes[0]);
+        this.kk = OPCode.kk(opcodes[1]);
+        this.equal = 0x3 == OPCode.instruction(opcodes[1]);
+        this.target = OPCode.nnn(opcodes[2]);
+    }
+
+    /**
+     * Verifica si los opcodes forman un ciclo de espera del temporizador.
+     *
+     * @param load opcode de la primera instruccion.
+     * @param skip opcode de la segunda instruccion.
+     * @param jump opcode de la tercera instruccion.
+     * @return true si los opcodes forman la secuencia.
+     */
+    public static boolean accepts(int load, int skip, int jump) {
+        int skipInstruction = OPCode.instruction(skip);
+
+        return 0xF007 == (load & 0xF0FF)
+                && (0x3 == skipInstruction || 0x4 == skipInstruction)
+                && OPCode.x(load) == OPCode.x(skip)
+                && 0x1 == OPCode.instruction(jump);
+    }
+
+    @Override
+    public int execute(Chip8 chip8) {
+        Register register = chip8.register;
+
+        int dt = register.getDT();
+        register.set(this.x, dt);
+
+        // Si se cumple la condicion se salta la instruccion 1nnn.
+        if ((dt == this.kk) == this.equal) {
+            register.setPC(this.address + 6);
+            return 2;
+        }
+
+        register.setPC(this.target);
+
+        return 3;
+    }
+}
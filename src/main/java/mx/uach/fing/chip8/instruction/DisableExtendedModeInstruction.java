@@ -17,17 +17,16 @@
 package mx.uach.fing.chip8.instruction;
 
 import mx.uach.fing.chip8.Chip8;
-import mx.uach.fing.chip8.OPCode;
 
 /**
  * 00FE - Disable extended screen mode.
  *
  * @author Luis Chavez
  */
-public class DisableExtendedModeInstruction implements Instruction {
+public class DisableExtendedModeInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
+    public void execute(int opcode, Chip8 chip8) {
         chip8.setExtended(false);
     }
 }
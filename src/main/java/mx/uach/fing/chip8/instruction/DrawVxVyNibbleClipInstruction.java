@@ -0,0 +1,89 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.instruction;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.OPCode;
+import mx.uach.fing.chip8.Register;
+import mx.uach.fing.chip8.VRAM;
+
+/**
+ * Dxyn - DRW Vx, Vy, nibble Display n-byte sprite starting at memory location I
+ * at (Vx, Vy), set VF = collision (COSMAC VIP, SCHIP).
+ *
+ * Same as {@link DrawVxVyNibbleInstruction}, but only the starting coordinates
+ * wrap around the screen, the parts of the sprite outside the screen are
+ * clipped.
+ *
+ * @author Luis Chávez
+ */
+public class DrawVxVyNibbleClipInstruction extends AbstractInstruction {
+
+    @Override
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
+        int y = OPCode.y(opcode);
+
+        int n = OPCode.n(opcode);
+
+        int i = chip8.register.getRegisterI();
+
+        chip8.register.set(Register.REGISTER_FLAG, Register.NOT_COLLISION);
+
+        // Igual que en DrawVxVyNibbleInstruction, si Vx o Vy es VF la
+        // coordenada se toma de la colision acumulada.
+        boolean eager = !chip8.register.isLazyFlags();
+        int vx = chip8.register.get(x);
+        int vy = chip8.register.get(y);
+        int collision = Register.NOT_COLLISION;
+
+        int spriteWidth = 0 == n && chip8.isExtended()
+                ? VRAM.EXTENDED_SPRITE_WIDTH : VRAM.STANDARD_SPRITE_WIDTH;
+        int width = chip8.vram.screenWidth();
+        int height = chip8.vram.screenHeight();
+
+        for (int row = 0; row < n; row++) {
+            int sprite = chip8.memory.read(i + row);
+
+            for (int column = 0; column < spriteWidth; column++) {
+                int pixel = (sprite & (1 << (7 - column))) != 0 ? 1 : 0;
+                if (0 == pixel) {
+                    // Un pixel apagado no modifica la pantalla.
+                    continue;
+                }
+
+                int px = Register.REGISTER_FLAG == x ? collision : vx;
+                px = (px & (width - 1)) + column;
+
+                int py = Register.REGISTER_FLAG == y ? collision : vy;
+                py = (py & (height - 1)) + row;
+
+                if (width <= px || height <= py) {
+                    // El pixel queda fuera de la pantalla.
+                    continue;
+                }
+
+                collision |= chip8.vram.xor(px, py, pixel);
+                if (eager) {
+                    chip8.register.set(Register.REGISTER_FLAG, collision);
+                }
+            }
+        }
+
+        chip8.register.set(Register.REGISTER_FLAG, collision);
+    }
+}
@@ -38,39 +38,55 @@ import mx.uach.fing.chip8.VRAM;
  *
  * @author Luis Chávez
  */
-public class DrawVxVyNibbleInstruction implements Instruction {
+public class DrawVxVyNibbleInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int x = opcode.getX();
-        int y = opcode.getY();
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
+        int y = OPCode.y(opcode);
 
-        int n = opcode.getNibble();
+        int n = OPCode.n(opcode);
 
         int i = chip8.register.getRegisterI();
 
         chip8.register.set(Register.REGISTER_FLAG, Register.NOT_COLLISION);
-        for (int row = 0; row < n; row++) {
-            int sprite = chip8.memory.read(i + row);
 
-            int spriteWidth = 0 == n && chip8.isExtended()
-                    ? VRAM.EXTENDED_SPRITE_WIDTH : VRAM.STANDARD_SPRITE_WIDTH;
+        // Con VF perezoso la colision se acumula en una variable y VF se
+        // escribe al final, si Vx o Vy es VF la coordenada se toma de la
+        // colision acumulada, igual que cuando VF se escribe en cada pixel.
+        boolean eager = !chip8.register.isLazyFlags();
+        int vx = chip8.register.get(x);
+        int vy = chip8.register.get(y);
+        int collision = Register.NOT_COLLISION;
 
-            for (int column = 0; column < spriteWidth; column++) {
-                int px = chip8.register.get(x) + column;
-                px &= (chip8.vram.screenWidth() - 1);
+        int spriteWidth = 0 == n && chip8.isExtended()
+                ? VRAM.EXTENDED_SPRITE_WIDTH : VRAM.STANDARD_SPRITE_WIDTH;
+        int widthMask = chip8.vram.screenWidth() - 1;
+        int heightMask = chip8.vram.screenHeight() - 1;
 
-                int py = chip8.register.get(y) + row;
-                py &= (chip8.vram.screenHeight() - 1);
+        for (int row = 0; row < n; row++) {
+            int sprite = chip8.memory.read(i + row);
 
+            for (int column = 0; column < spriteWidth; column++) {
                 int pixel = (sprite & (1 << (7 - column))) != 0 ? 1 : 0;
-                int unset = chip8.vram.xor(px, py, pixel);
+                if (0 == pixel) {
+                    // Un pixel apagado no modifica la pantalla.
+                    continue;
+                }
 
-                int vf = chip8.register.get(Register.REGISTER_FLAG);
-                vf |= unset;
+                int px = Register.REGISTER_FLAG == x ? collision : vx;
+                px = (px + column) & widthMask;
 
-                chip8.register.set(Register.REGISTER_FLAG, vf);
+                int py = Register.REGISTER_FLAG == y ? collision : vy;
+                py = (py + row) & heightMask;
+
+                collision |= chip8.vram.xor(px, py, pixel);
+                if (eager) {
+                    chip8.register.set(Register.REGISTER_FLAG, collision);
+                }
             }
         }
+
+        chip8.register.set(Register.REGISTER_FLAG, collision);
     }
 }
@@ -17,17 +17,16 @@
 package mx.uach.fing.chip8.instruction;
 
 import mx.uach.fing.chip8.Chip8;
-import mx.uach.fing.chip8.OPCode;
 
 /**
  * 00FD - Exit CHIP interpreter.
  *
  * @author Luis Chavez
  */
-public class ExitInstruction implements Instruction {
+public class ExitInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        chip8.stop();
+    public void execute(int opcode, Chip8 chip8) {
+        chip8.exit();
     }
 }
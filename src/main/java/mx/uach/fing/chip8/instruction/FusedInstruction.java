@@ -0,0 +1,79 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.instruction;
+
+import mx.uach.fing.chip8.Chip8;
+
+/**
+ * Secuencia de instrucciones consecutivas que se ejecutan con un solo
+ * despacho (superinstruccion).
+ *
+ * La secuencia se ejecuta completa a partir de su primera direccion, el
+ * contador del programa debe apuntar a ella y al terminar apunta a la
+ * siguiente instruccion a ejecutar.
+ *
+ * @author Luis Chávez
+ */
+public abstract class FusedInstruction {
+
+    // Direccion de la primera instruccion de la secuencia.
+    protected final int address;
+
+    // Opcodes de la secuencia.
+    protected final int[] opcodes;
+
+    protected FusedInstruction(int address, int[] opcodes) {
+        this.address = address;
+        this.opcodes = opcodes;
+    }
+
+    /**
+     * Obtiene la direccion de la primera instruccion de la secuencia.
+     *
+     * @return direccion de la secuencia.
+     */
+    public int getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Obtiene el numero de instrucciones de la secuencia.
+     *
+     * @return numero de instrucciones.
+     */
+    public int getLength() {
+        return this.opcodes.length;
+    }
+
+    /**
+     * Obtiene el opcode de una instruccion de la secuencia.
+     *
+     * @param index indice de la instruccion.
+     * @return opcode de la instruccion.
+     */
+    public int getOpcode(int index) {
+        return this.opcodes[index];
+    }
+
+    /**
+     * Ejecuta la secuencia.
+     *
+     * @param chip8 instancia del emulador.
+     * @return numero de instrucciones ejecutadas.
+     */
+    public abstract int execute(Chip8 chip8);
+}
@@ -32,4 +32,13 @@ public interface Instruction {
      * @param chip8 instancia del emulador.
      */
     public void execute(OPCode opcode, Chip8 chip8);
+
+    /**
+     * Ejecuta la instruccion con el opcode especificado como entero, evita
+     * crear un objeto {@link OPCode} por cada instruccion ejecutada.
+     *
+     * @param opcode opcode de la instruccion (2 bytes).
+     * @param chip8 instancia del emulador.
+     */
+    public void execute(int opcode, Chip8 chip8);
 }
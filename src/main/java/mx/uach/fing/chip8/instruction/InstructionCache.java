@@ -0,0 +1,314 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.instruction;
+
+import java.util.Arrays;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.ExecutionEngine;
+import mx.uach.fing.chip8.Memory;
+
+/**
+ * Cache de instrucciones decodificadas, indexada por la direccion de la
+ * instruccion dentro del area del programa (0x200 - 0xFFF).
+ *
+ * Cada direccion se lee y se resuelve solo la primera vez que se ejecuta, las
+ * escrituras en memoria invalidan las direcciones afectadas para que los
+ * programas que se modifican a si mismos se sigan ejecutando correctamente.
+ *
+ * Al decodificar una direccion tambien se buscan secuencias de instrucciones
+ * que inicien en ella para ejecutarlas con un solo despacho, las secuencias
+ * solo se guardan en su primera direccion, de manera que un salto a la mitad
+ * de una secuencia ejecuta las instrucciones individuales.
+ *
+ * @author Luis Chávez
+ */
+public class InstructionCache implements ExecutionEngine {
+
+    // Numero de direcciones cubiertas por la cache.
+    public static final int CACHE_SIZE
+            = Memory.PROGRAM_END - Memory.PROGRAM_INIT + 1;
+
+    // Propiedad del sistema para deshabilitar la union de instrucciones.
+    public static final String FUSION_PROPERTY = "chip8.instructioncache.fusion";
+
+    // Numero de bytes antes de una direccion en los que puede iniciar una
+    // secuencia que la contiene.
+    private static final int MAX_SPAN = InstructionFuser.MAX_LENGTH * 2;
+
+    // Memoria de la cual se leen las instrucciones.
+    private final Memory memory;
+
+    // Set de instrucciones con el cual se resuelven los opcodes.
+    private final InstructionSet instructionSet;
+
+    // Instruccion resuelta de cada direccion, null si no se ha decodificado.
+    private final Instruction[] instructions;
+
+    // Opcode de cada direccion, de aqui se extraen los operandos.
+    private final int[] opcodes;
+
+    // Secuencia que inicia en cada direccion, null si no hay una.
+    private final FusedInstruction[] fused;
+
+    // Busca las secuencias de instrucciones a unir.
+    private final InstructionFuser fuser;
+
+    // Indica si se unen las secuencias de instrucciones.
+    private boolean fusion;
+
+    // Ultimo opcode ejecutado.
+    private int lastOpcode;
+
+    // Numero de instrucciones encontradas en la cache.
+    private long hits;
+
+    // Numero de instrucciones que se tuvieron que decodificar.
+    private long misses;
+
+    // Numero de direcciones invalidadas por escrituras en memoria.
+    private long invalidations;
+
+    // Numero de secuencias ejecutadas.
+    private long fusedDispatches;
+
+    // Numero de instrucciones ejecutadas dentro de secuencias.
+    private long fusedInstructions;
+
+    public InstructionCache(Memory memory, InstructionSet instructionSet) {
+        this.memory = memory;
+        this.instructionSet = instructionSet;
+        this.instructions = new Instruction[CACHE_SIZE];
+        this.opcodes = new int[CACHE_SIZE];
+        this.fused = new FusedInstruction[CACHE_SIZE];
+        this.fuser = new InstructionFuser(memory, instructionSet);
+        this.fusion = Boolean.parseBoolean(
+                System.getProperty(FUSION_PROPERTY, "true"));
+    }
+
+    /**
+     * Verifica si se unen las secuencias de instrucciones.
+     *
+     * @return true si se unen las secuencias.
+     */
+    public boolean isFusion() {
+        return this.fusion;
+    }
+
+    /**
+     * Habilita o deshabilita la union de secuencias de instrucciones, descarta
+     * las instrucciones decodificadas.
+     *
+     * @param fusion true para unir las secuencias.
+     */
+    public void setFusion(boolean fusion) {
+        this.fusion = fusion;
+        this.clear();
+    }
+
+    /**
+     * Ejecuta la instruccion almacenada en la direccion del contador del
+     * programa, decodificandola si no se encuentra en la cache.
+     *
+     * @param chip8 instancia del emulador.
+     * @return numero de instrucciones ejecutadas.
+     */
+    @Override
+    public int execute(Chip8 chip8) {
+        int pc = chip8.register.getPC();
+        int slot = pc - Memory.PROGRAM_INIT;
+
+        // Fuera del area del programa, se lee directamente de memoria.
+        if (0 > slot || CACHE_SIZE <= slot) {
+            this.misses++;
+            int opcode = this.memory.readWord(pc);
+            this.lastOpcode = opcode;
+            chip8.register.incrementPC();
+            this.instructionSet.resolve(opcode).execute(opcode, chip8);
+            return 1;
+        }
+
+        Instruction instruction = this.instructions[slot];
+        if (null == instruction) {
+            this.misses++;
+            instruction = this.decode(pc, slot);
+        } else {
+            this.hits++;
+        }
+
+        FusedInstruction sequence = this.fused[slot];
+        if (null != sequence) {
+            int executed = sequence.execute(chip8);
+            this.lastOpcode = sequence.getOpcode(executed - 1);
+            this.fusedDispatches++;
+            this.fusedInstructions += executed;
+            return executed;
+        }
+
+        int opcode = this.opcodes[slot];
+        this.lastOpcode = opcode;
+        chip8.register.incrementPC();
+        instruction.execute(opcode, chip8);
+
+        return 1;
+    }
+
+    /**
+     * Decodifica la instruccion de una direccion antes de ejecutarla, se
+     * utiliza al cargar una ROM con las direcciones del analisis de control
+     * de flujo.
+     *
+     * @param address direccion de la instruccion.
+     */
+    public void predecode(int address) {
+        int slot = address - Memory.PROGRAM_INIT;
+        if (0 <= slot && CACHE_SIZE > slot && null == this.instructions[slot]) {
+            this.decode(address, slot);
+        }
+    }
+
+    /**
+     * Decodifica la instruccion de una direccion y busca la secuencia que
+     * inicia en ella.
+     *
+     * @return instruccion resuelta.
+     */
+    private Instruction decode(int address, int slot) {
+        int opcode = this.memory.readWord(address);
+        Instruction instruction = this.instructionSet.resolve(opcode);
+        this.opcodes[slot] = opcode;
+        this.instructions[slot] = instruction;
+        this.fused[slot] = this.fusion ? this.fuser.fuse(address) : null;
+
+        return instruction;
+    }
+
+    /**
+     * Invalida las instrucciones que contienen la direccion especificada, la
+     * instruccion que inicia en ella, la que inicia un byte antes y las
+     * secuencias que la incluyen.
+     *
+     * @param address direccion modificada.
+     */
+    public void invalidate(int address) {
+        int modified = address - Memory.PROGRAM_INIT;
+        for (int slot = modified - MAX_SPAN + 1; slot <= modified; slot++) {
+            if (0 > slot || CACHE_SIZE <= slot
+                    || null == this.instructions[slot]) {
+                continue;
+            }
+
+            FusedInstruction sequence = this.fused[slot];
+            if (modified - 1 <= slot || (null != sequence
+                    && slot + sequence.getLength() * 2 > modified)) {
+                this.instructions[slot] = null;
+                this.fused[slot] = null;
+                this.invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Descarta todas las instrucciones decodificadas, se utiliza al cargar una
+     * nueva ROM.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(this.instructions, null);
+        Arrays.fill(this.fused, null);
+    }
+
+    @Override
+    public void onWrite(int address) {
+        this.invalidate(address);
+    }
+
+    /**
+     * Obtiene el opcode de la ultima instruccion ejecutada.
+     *
+     * @return ultimo opcode ejecutado.
+     */
+    public int getLastOpcode() {
+        return this.lastOpcode;
+    }
+
+    /**
+     * Obtiene el numero de instrucciones encontradas en la cache.
+     *
+     * @return numero de aciertos.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Obtiene el numero de instrucciones que se tuvieron que decodificar.
+     *
+     * @return numero de fallos.
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Obtiene el numero de direcciones invalidadas por escrituras en memoria.
+     *
+     * @return numero de invalidaciones.
+     */
+    public long getInvalidations() {
+        return this.invalidations;
+    }
+
+    /**
+     * Obtiene el numero de despachos, cada instruccion individual o secuencia
+     * ejecutada cuenta como un despacho.
+     *
+     * @return numero de despachos.
+     */
+    public long getDispatches() {
+        return this.hits + this.misses;
+    }
+
+    /**
+     * Obtiene el numero de secuencias ejecutadas.
+     *
+     * @return numero de despachos de secuencias.
+     */
+    public long getFusedDispatches() {
+        return this.fusedDispatches;
+    }
+
+    /**
+     * Obtiene el numero de instrucciones ejecutadas dentro de secuencias.
+     *
+     * @return numero de instrucciones unidas.
+     */
+    public long getFusedInstructions() {
+        return this.fusedInstructions;
+    }
+
+    /**
+     * Reinicia los contadores de la cache.
+     */
+    public void resetCounters() {
+        this.hits = 0;
+        this.misses = 0;
+        this.invalidations = 0;
+        this.fusedDispatches = 0;
+        this.fusedInstructions = 0;
+    }
+}
@@ -0,0 +1,85 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.instruction;
+
+import java.util.Arrays;
+
+import mx.uach.fing.chip8.Memory;
+import mx.uach.fing.chip8.OPCode;
+
+/**
+ * Optimizacion de mirilla (peephole) que reconoce secuencias comunes de
+ * instrucciones a partir de una direccion y las une en una sola instruccion.
+ *
+ * @author Luis Chávez
+ */
+public class InstructionFuser {
+
+    // Numero maximo de instrucciones en una secuencia.
+    public static final int MAX_LENGTH = 8;
+
+    // Memoria de la cual se leen las instrucciones.
+    private final Memory memory;
+
+    // Set de instrucciones con el cual se resuelven los opcodes.
+    private final InstructionSet instructionSet;
+
+    public InstructionFuser(Memory memory, InstructionSet instructionSet) {
+        this.memory = memory;
+        this.instructionSet = instructionSet;
+    }
+
+    /**
+     * Busca una secuencia que inicie en la direccion especificada.
+     *
+     * @param address direccion de la primera instruccion.
+     * @return secuencia encontrada, null si no hay una secuencia de al menos
+     * dos instrucciones.
+     */
+    public FusedInstruction fuse(int address) {
+        int[] window = new int[MAX_LENGTH];
+        int count = 0;
+        for (int current = address; MAX_LENGTH > count
+                && Memory.PROGRAM_END > current; current += 2) {
+            window[count++] = this.memory.readWord(current);
+        }
+
+        if (3 <= count && DelayPollInstruction.accepts(
+                window[0], window[1], window[2])) {
+            return new DelayPollInstruction(
+                    address, Arrays.copyOf(window, 3));
+        }
+
+        int length = 0;
+        while (count > length && StraightLineInstruction.accepts(window[length])) {
+            length++;
+        }
+
+        Instruction draw = null;
+        if (count > length && 0xD == OPCode.instruction(window[length])) {
+            draw = this.instructionSet.resolve(window[length]);
+            length++;
+        }
+
+        if (2 > length) {
+            return null;
+        }
+
+        return new StraightLineInstruction(
+                address, Arrays.copyOf(window, length), draw);
+    }
+}
@@ -22,6 +22,7 @@ import java.util.Map;
 import java.util.regex.Pattern;
 
 import mx.uach.fing.chip8.OPCode;
+import mx.uach.fing.chip8.QuirkProfile;
 
 /**
  *
@@ -29,13 +30,295 @@ import mx.uach.fing.chip8.OPCode;
  */
 public class InstructionSet {
 
-    // Mapa con el set de instrucciones a utilizar.
+    // Propiedad del sistema que activa la resolucion por expresiones regulares.
+    public static final String REGEX_PROPERTY = "chip8.instructionset.regex";
+
+    // Numero de opcodes posibles (2 bytes).
+    public static final int OPCODE_COUNT = 0x10000;
+
+    // Instruccion centinela para los opcodes desconocidos.
+    public static final Instruction UNKNOWN = new UnknownInstruction();
+
+    // Tablas de despacho construidas, una por cada combinacion de quirks.
+    private static final Map<QuirkProfile, Instruction[]> TABLES = new HashMap<>();
+
+    // Mapa con el set de instrucciones a utilizar por el resolvedor anterior.
     private final Map<Pattern, Instruction> instructionMap;
 
+    // Indica si se resuelve con expresiones regulares en lugar de la tabla.
+    private final boolean regex;
+
+    // Perfil de compatibilidad con el que se construyo la tabla.
+    private QuirkProfile quirkProfile;
+
+    // Tabla de despacho, contiene la instruccion de cada opcode posible.
+    private Instruction[] table;
+
     public InstructionSet() {
+        this(QuirkProfile.DEFAULT);
+    }
+
+    /**
+     * Crea el set de instrucciones con un perfil de compatibilidad.
+     *
+     * @param quirkProfile perfil con el que se eligen las instrucciones.
+     */
+    public InstructionSet(QuirkProfile quirkProfile) {
+        this(Boolean.getBoolean(REGEX_PROPERTY), quirkProfile);
+    }
+
+    /**
+     * Crea el set de instrucciones.
+     *
+     * @param regex true para resolver con expresiones regulares (resolvedor
+     * anterior, solo para comparacion), false para utilizar la tabla de
+     * despacho.
+     */
+    public InstructionSet(boolean regex) {
+        this(regex, QuirkProfile.DEFAULT);
+    }
+
+    /**
+     * Crea el set de instrucciones.
+     *
+     * @param regex true para resolver con expresiones regulares, false para
+     * utilizar la tabla de despacho.
+     * @param quirkProfile perfil con el que se eligen las instrucciones.
+     */
+    public InstructionSet(boolean regex, QuirkProfile quirkProfile) {
+        this.regex = regex;
         this.instructionMap = new HashMap<>();
 
-        this.sets();
+        this.setQuirkProfile(quirkProfile);
+    }
+
+    /**
+     * Obtiene el perfil de compatibilidad del set de instrucciones.
+     *
+     * @return perfil de compatibilidad.
+     */
+    public QuirkProfile getQuirkProfile() {
+        return this.quirkProfile;
+    }
+
+    /**
+     * Establece el perfil de compatibilidad, las instrucciones resueltas
+     * anteriormente (por ejemplo en las caches de los motores) se deben
+     * descartar.
+     *
+     * @param quirkProfile perfil con el que se eligen las instrucciones.
+     */
+    public void setQuirkProfile(QuirkProfile quirkProfile) {
+        this.quirkProfile = quirkProfile;
+        this.table = table(quirkProfile);
+
+        if (this.regex) {
+            this.instructionMap.clear();
+            this.sets();
+        }
+    }
+
+    /**
+     * Obtiene la tabla de despacho de un perfil, la tabla se construye la
+     * primera vez que se solicita y se comparte entre las maquinas.
+     *
+     * @param quirkProfile perfil de compatibilidad.
+     * @return tabla indexada por opcode.
+     */
+    private static Instruction[] table(QuirkProfile quirkProfile) {
+        synchronized (TABLES) {
+            Instruction[] table = TABLES.get(quirkProfile);
+            if (null == table) {
+                table = build(quirkProfile);
+                TABLES.put(quirkProfile, table);
+            }
+
+            return table;
+        }
+    }
+
+    /**
+     * Construye la tabla de despacho, decodificando cada opcode posible una
+     * sola vez. Las instrucciones que dependen del perfil se eligen aqui, de
+     * manera que al ejecutarlas no se consulta el perfil.
+     *
+     * @param quirkProfile perfil de compatibilidad.
+     * @return tabla indexada por opcode.
+     */
+    private static Instruction[] build(QuirkProfile quirkProfile) {
+        Instruction cls = new ClearScreenInstruction();
+        Instruction ret = new ReturnSubroutineInstruction();
+        Instruction scd = new ScrollDownInstruction();
+        Instruction scr = new ScrollRightInstruction();
+        Instruction scl = new ScrollLeftInstruction();
+        Instruction exit = new ExitInstruction();
+        Instruction low = new DisableExtendedModeInstruction();
+        Instruction high = new EnableExtendedModeInstruction();
+        Instruction jp = new JumpNNNInstruction();
+        Instruction call = new CallSubroutineInstruction();
+        Instruction seVxKK = new SkipEqualVxKKInstruction();
+        Instruction sneVxKK = new SkipNotEqualVxKKInstruction();
+        Instruction seVxVy = new SkipEqualVxVyInstruction();
+        Instruction ldVxKK = new LoadVxKKInstruction();
+        Instruction addVxKK = new AddVxKKInstruction();
+        Instruction[] alu = new Instruction[0x10];
+        alu[0x0] = new LoadVxVyInstruction();
+        alu[0x1] = new OrVxVyInstruction();
+        alu[0x2] = new AndVxVyInstruction();
+        alu[0x3] = new XorVxVyInstruction();
+        alu[0x4] = new AddVxVyInstruction();
+        alu[0x5] = new SubVxVyInstruction();
+        alu[0x6] = shr(quirkProfile);
+        alu[0x7] = new SubnVxVyInstruction();
+        alu[0xE] = shl(quirkProfile);
+        Instruction sneVxVy = new SkipNotEqualVxVyInstruction();
+        Instruction ldINNN = new LoadINNNInstruction();
+        Instruction jpV0 = jump(quirkProfile);
+        Instruction rnd = new RandomVxKKInstruction();
+        Instruction drw = draw(quirkProfile);
+        Instruction skp = new SkipIfKeyDownInstruction();
+        Instruction sknp = new SkipIfKeyUpInstruction();
+        Instruction[] misc = new Instruction[0x100];
+        misc[0x07] = new LoadVxDTInstruction();
+        misc[0x0A] = new WaitKeyDownInstruction();
+        misc[0x15] = new LoadDTVxInstruction();
+        misc[0x18] = new LoadSTVxInstruction();
+        misc[0x1E] = new AddIVxInstruction();
+        misc[0x29] = new LoadFontVxInstruction();
+        misc[0x30] = new LoadExtendedFontVxInstruction();
+        misc[0x33] = new LoadBCDInstruction();
+        misc[0x55] = store(quirkProfile);
+        misc[0x65] = load(quirkProfile);
+
+        Instruction[] table = new Instruction[OPCODE_COUNT];
+        for (int opcode = 0; opcode < OPCODE_COUNT; opcode++) {
+            int nibble = opcode & 0xF;
+            int b = opcode & 0xFF;
+
+            Instruction instruction = null;
+            switch (opcode >> 0xC) {
+                case 0x0:
+                    if (0x00E0 == opcode) {
+                        instruction = cls;
+                    } else if (0x00EE == opcode) {
+                        instruction = ret;
+                    } else if (0x00C0 == (opcode & 0xFFF0)) {
+                        instruction = scd;
+                    } else if (0x00FB == opcode) {
+                        instruction = scr;
+                    } else if (0x00FC == opcode) {
+                        instruction = scl;
+                    } else if (0x00FD == opcode) {
+                        instruction = exit;
+                    } else if (0x00FE == opcode) {
+                        instruction = low;
+                    } else if (0x00FF == opcode) {
+                        instruction = high;
+                    }
+                    break;
+                case 0x1:
+                    instruction = jp;
+                    break;
+                case 0x2:
+                    instruction = call;
+                    break;
+                case 0x3:
+                    instruction = seVxKK;
+                    break;
+                case 0x4:
+                    instruction = sneVxKK;
+                    break;
+                case 0x5:
+                    instruction = 0x0 == nibble ? seVxVy : null;
+                    break;
+                case 0x6:
+                    instruction = ldVxKK;
+                    break;
+                case 0x7:
+                    instruction = addVxKK;
+                    break;
+                case 0x8:
+                    instruction = alu[nibble];
+                    break;
+                case 0x9:
+                    instruction = 0x0 == nibble ? sneVxVy : null;
+                    break;
+                case 0xA:
+                    instruction = ldINNN;
+                    break;
+                case 0xB:
+                    instruction = jpV0;
+                    break;
+                case 0xC:
+                    instruction = rnd;
+                    break;
+                case 0xD:
+                    instruction = drw;
+                    break;
+                case 0xE:
+                    if (0x9E == b) {
+                        instruction = skp;
+                    } else if (0xA1 == b) {
+                        instruction = sknp;
+                    }
+                    break;
+                case 0xF:
+                    instruction = misc[b];
+                    break;
+            }
+
+            table[opcode] = null != instruction ? instruction : UNKNOWN;
+        }
+
+        return table;
+    }
+
+    /**
+     * 8xy6 - SHR Vx {, Vy}
+     */
+    private static Instruction shr(QuirkProfile quirkProfile) {
+        return quirkProfile.isShiftVy()
+                ? new ShrVyInstruction() : new ShrVxVyInstruction();
+    }
+
+    /**
+     * 8xyE - SHL Vx {, Vy}
+     */
+    private static Instruction shl(QuirkProfile quirkProfile) {
+        return quirkProfile.isShiftVy()
+                ? new ShlVyInstruction() : new ShlVxVyInstruction();
+    }
+
+    /**
+     * Bnnn - JP V0, addr o Bxnn - JP Vx, addr
+     */
+    private static Instruction jump(QuirkProfile quirkProfile) {
+        return quirkProfile.isJumpVx()
+                ? new JumpVxNNInstruction() : new JumpV0NNNInstruction();
+    }
+
+    /**
+     * Dxyn - DRW Vx, Vy, nibble
+     */
+    private static Instruction draw(QuirkProfile quirkProfile) {
+        return quirkProfile.isClipSprites()
+                ? new DrawVxVyNibbleClipInstruction() : new DrawVxVyNibbleInstruction();
+    }
+
+    /**
+     * Fx55 - LD [I], Vx
+     */
+    private static Instruction store(QuirkProfile quirkProfile) {
+        return quirkProfile.isLoadStoreIncrementsI()
+                ? new LoadIVxIncrementInstruction() : new LoadIVxInstruction();
+    }
+
+    /**
+     * Fx65 - LD Vx, [I]
+     */
+    private static Instruction load(QuirkProfile quirkProfile) {
+        return quirkProfile.isLoadStoreIncrementsI()
+                ? new LoadVxIIncrementInstruction() : new LoadVxIInstruction();
     }
 
     /**
@@ -93,13 +376,13 @@ public class InstructionSet {
                 new SubVxVyInstruction());
         // 8xy6 - SHR Vx {, Vy}
         this.instructionMap.put(Pattern.compile("^8[0-9a-fA-F]{2}6$"),
-                new ShrVxVyInstruction());
+                shr(this.quirkProfile));
         // 8xy7 - SUBN Vx, Vy
         this.instructionMap.put(Pattern.compile("^8[0-9a-fA-F]{2}7$"),
                 new SubnVxVyInstruction());
         // 8xyE - SHL Vx {, Vy}
         this.instructionMap.put(Pattern.compile("^8[0-9a-fA-F]{2}E$"),
-                new ShlVxVyInstruction());
+                shl(this.quirkProfile));
         // 9xy0 - SNE Vx, Vy
         this.instructionMap.put(Pattern.compile("^9[0-9a-fA-F]{2}0$"),
                 new SkipNotEqualVxVyInstruction());
@@ -108,13 +391,13 @@ public class InstructionSet {
                 new LoadINNNInstruction());
         // Bnnn - JP V0, addr
         this.instructionMap.put(Pattern.compile("^B[0-9a-fA-F]{3}$"),
-                new JumpV0NNNInstruction());
+                jump(this.quirkProfile));
         // Cxkk - RND Vx, byte
         this.instructionMap.put(Pattern.compile("^C[0-9a-fA-F]{3}$"),
                 new RandomVxKKInstruction());
         // Dxyn - DRW Vx, Vy, nibble
         this.instructionMap.put(Pattern.compile("^D[0-9a-fA-F]{3}$"),
-                new DrawVxVyNibbleInstruction());
+                draw(this.quirkProfile));
         // Ex9E - SKP Vx
         this.instructionMap.put(Pattern.compile("^E[0-9a-fA-F]{1}9E$"),
                 new SkipIfKeyDownInstruction());
@@ -144,10 +427,10 @@ public class InstructionSet {
                 new LoadBCDInstruction());
         // Fx55 - LD [I], Vx
         this.instructionMap.put(Pattern.compile("^F[0-9a-fA-F]{1}55$"),
-                new LoadIVxInstruction());
+                store(this.quirkProfile));
         // Fx65 - LD Vx, [I]
         this.instructionMap.put(Pattern.compile("^F[0-9a-fA-F]{1}65$"),
-                new LoadVxIInstruction());
+                load(this.quirkProfile));
         // 00FE - Disable extended screen mode.
         this.instructionMap.put(Pattern.compile("^00FE$"),
                 new DisableExtendedModeInstruction());
@@ -175,11 +458,17 @@ public class InstructionSet {
      * Resuelve la instruccion para el opcode solicitado.
      *
      * @param opcode opcode a resolver.
-     * @return instruccion del opcode.
+     * @return instruccion del opcode, con la tabla de despacho los opcodes
+     * desconocidos se resuelven a {@link #UNKNOWN}, que lanza la excepcion al
+     * ejecutarse.
      * @throws UnknownInstructionException si no existe una instruccion para el
-     * opcode.
+     * opcode (solo con expresiones regulares).
      */
     public Instruction resolve(OPCode opcode) throws UnknownInstructionException {
+        if (!this.regex) {
+            return this.table[opcode.get()];
+        }
+
         Iterator<Map.Entry<Pattern, Instruction>> iterator = this.instructionMap.entrySet().iterator();
         while (iterator.hasNext()) {
             Map.Entry<Pattern, Instruction> entry = iterator.next();
@@ -192,4 +481,20 @@ public class InstructionSet {
 
         throw new UnknownInstructionException(String.format("No existe una instruccion para el opcode %s", opcode.toString()));
     }
+
+    /**
+     * Resuelve la instruccion para el opcode solicitado como entero.
+     *
+     * @param opcode opcode a resolver (2 bytes).
+     * @return instruccion del opcode.
+     * @throws UnknownInstructionException si no existe una instruccion para el
+     * opcode (solo con expresiones regulares).
+     */
+    public Instruction resolve(int opcode) throws UnknownInstructionException {
+        if (!this.regex) {
+            return this.table[opcode & 0xFFFF];
+        }
+
+        return this.resolve(new OPCode(opcode));
+    }
 }
@@ -26,10 +26,10 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class JumpNNNInstruction implements Instruction {
+public class JumpNNNInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        chip8.register.setPC(opcode.getAddress());
+    public void execute(int opcode, Chip8 chip8) {
+        chip8.register.setPC(OPCode.nnn(opcode));
     }
 }
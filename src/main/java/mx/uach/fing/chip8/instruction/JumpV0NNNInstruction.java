@@ -26,11 +26,11 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class JumpV0NNNInstruction implements Instruction {
+public class JumpV0NNNInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int address = opcode.getAddress();
+    public void execute(int opcode, Chip8 chip8) {
+        int address = OPCode.nnn(opcode);
         int v0 = chip8.register.get(0);
 
         chip8.register.setPC(v0 + address);
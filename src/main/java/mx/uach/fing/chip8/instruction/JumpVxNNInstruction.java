@@ -0,0 +1,39 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.instruction;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.OPCode;
+
+/**
+ * Bxnn - JP Vx, addr Jump to location xnn + Vx (SCHIP).
+ *
+ * The program counter is set to nnn plus the value of Vx, where x is the
+ * highest nibble of nnn.
+ *
+ * @author Luis Chávez
+ */
+public class JumpVxNNInstruction extends AbstractInstruction {
+
+    @Override
+    public void execute(int opcode, Chip8 chip8) {
+        int address = OPCode.nnn(opcode);
+        int vx = chip8.register.get(OPCode.x(opcode));
+
+        chip8.register.setPC(vx + address);
+    }
+}
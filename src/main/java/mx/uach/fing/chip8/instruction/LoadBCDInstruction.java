@@ -29,11 +29,11 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class LoadBCDInstruction implements Instruction {
+public class LoadBCDInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int x = opcode.getX();
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
 
         int i = chip8.register.getRegisterI();
 
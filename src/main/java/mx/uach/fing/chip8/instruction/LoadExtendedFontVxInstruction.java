@@ -25,11 +25,11 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chavez
  */
-public class LoadExtendedFontVxInstruction implements Instruction {
+public class LoadExtendedFontVxInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int x = opcode.getX();
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
 
         int vx = chip8.register.get(x);
 
@@ -26,10 +26,10 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class LoadINNNInstruction implements Instruction {
+public class LoadINNNInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        chip8.register.setRegisterI(opcode.getAddress());
+    public void execute(int opcode, Chip8 chip8) {
+        chip8.register.setRegisterI(OPCode.nnn(opcode));
     }
 }
@@ -0,0 +1,40 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.instruction;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.OPCode;
+
+/**
+ * Fx55 - LD [I], Vx Store registers V0 through Vx in memory starting at
+ * location I, then set I = I + x + 1 (COSMAC VIP).
+ *
+ * @author Luis Chávez
+ */
+public class LoadIVxIncrementInstruction extends AbstractInstruction {
+
+    @Override
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
+
+        int i = chip8.register.getRegisterI();
+
+        chip8.memory.copyFrom(chip8.register, i, x + 1);
+
+        chip8.register.setRegisterI(i + x + 1);
+    }
+}
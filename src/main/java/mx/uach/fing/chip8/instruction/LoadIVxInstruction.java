@@ -28,17 +28,14 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class LoadIVxInstruction implements Instruction {
+public class LoadIVxInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int x = opcode.getX();
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
 
         int i = chip8.register.getRegisterI();
 
-        for (int index = 0; index <= x; index++) {
-            int vx = chip8.register.get(index);
-            chip8.memory.set(i + index, vx);
-        }
+        chip8.memory.copyFrom(chip8.register, i, x + 1);
     }
 }
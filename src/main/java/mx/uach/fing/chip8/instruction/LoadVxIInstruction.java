@@ -29,17 +29,14 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class LoadVxIInstruction implements Instruction {
+public class LoadVxIInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int x = opcode.getX();
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
 
         int i = chip8.register.getRegisterI();
 
-        for (int index = 0; index <= x; index++) {
-            int b = chip8.memory.read(i + index);
-            chip8.register.set(index, b);
-        }
+        chip8.memory.copyTo(chip8.register, i, x + 1);
     }
 }
@@ -26,12 +26,12 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class LoadVxKKInstruction implements Instruction {
+public class LoadVxKKInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int x = opcode.getX();
-        int b = opcode.getByte();
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
+        int b = OPCode.kk(opcode);
 
         chip8.register.set(x, b);
     }
@@ -26,12 +26,12 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class LoadVxVyInstruction implements Instruction {
+public class LoadVxVyInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int x = opcode.getX();
-        int y = opcode.getY();
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
+        int y = OPCode.y(opcode);
 
         int vy = chip8.register.get(y);
 
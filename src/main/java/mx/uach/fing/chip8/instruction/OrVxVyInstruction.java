@@ -29,12 +29,12 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class OrVxVyInstruction implements Instruction {
+public class OrVxVyInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int x = opcode.getX();
-        int y = opcode.getY();
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
+        int y = OPCode.y(opcode);
 
         int vx = chip8.register.get(x);
         int vy = chip8.register.get(y);
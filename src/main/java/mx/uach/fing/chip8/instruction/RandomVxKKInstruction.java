@@ -16,8 +16,6 @@
  */
 package mx.uach.fing.chip8.instruction;
 
-import java.util.Random;
-
 import mx.uach.fing.chip8.Chip8;
 import mx.uach.fing.chip8.OPCode;
 
@@ -30,16 +28,14 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class RandomVxKKInstruction implements Instruction {
+public class RandomVxKKInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        Random random = new Random();
-
-        int x = opcode.getX();
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
 
-        int number = random.nextInt(256);
-        int kk = opcode.getByte();
+        int number = chip8.getRandom().nextInt(256);
+        int kk = OPCode.kk(opcode);
 
         chip8.register.set(x, number & kk);
     }
@@ -17,7 +17,6 @@
 package mx.uach.fing.chip8.instruction;
 
 import mx.uach.fing.chip8.Chip8;
-import mx.uach.fing.chip8.OPCode;
 
 /**
  * 00EE - RET Return from a subroutine.
@@ -27,10 +26,10 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class ReturnSubroutineInstruction implements Instruction {
+public class ReturnSubroutineInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
+    public void execute(int opcode, Chip8 chip8) {
         chip8.register.setPC(chip8.stack.pop());
     }
 }
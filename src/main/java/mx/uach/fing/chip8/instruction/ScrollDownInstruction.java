@@ -24,11 +24,11 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chavez
  */
-public class ScrollDownInstruction implements Instruction {
+public class ScrollDownInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int n = opcode.getNibble();
+    public void execute(int opcode, Chip8 chip8) {
+        int n = OPCode.n(opcode);
         while (n-- > 0) {
             for (int row = chip8.vram.screenHeight() - 2; row >= 0; row--) {
                 for (int column = 0;
@@ -17,17 +17,16 @@
 package mx.uach.fing.chip8.instruction;
 
 import mx.uach.fing.chip8.Chip8;
-import mx.uach.fing.chip8.OPCode;
 
 /**
  * 00FC - Scroll display 4 pixels left.
  *
  * @author Luis Chavez
  */
-public class ScrollLeftInstruction implements Instruction {
+public class ScrollLeftInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
+    public void execute(int opcode, Chip8 chip8) {
         int n = 4;
         while (n-- > 0) {
             for (int column = 1; column < chip8.vram.screenWidth(); column++) {
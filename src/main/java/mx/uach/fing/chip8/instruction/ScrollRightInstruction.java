@@ -17,17 +17,16 @@
 package mx.uach.fing.chip8.instruction;
 
 import mx.uach.fing.chip8.Chip8;
-import mx.uach.fing.chip8.OPCode;
 
 /**
  * 00FB - Scroll display 4 pixels right.
  *
  * @author Luis Chavez
  */
-public class ScrollRightInstruction implements Instruction {
+public class ScrollRightInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
+    public void execute(int opcode, Chip8 chip8) {
         int n = 4;
         while (n-- > 0) {
             for (int column = chip8.vram.screenWidth() - 2;
@@ -28,16 +28,15 @@ import mx.uach.fing.chip8.Register;
  *
  * @author Luis Chávez
  */
-public class ShlVxVyInstruction implements Instruction {
+public class ShlVxVyInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int x = opcode.getX();
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
 
         int vx = chip8.register.get(x);
 
-        chip8.register.set(Register.REGISTER_FLAG,
-                (vx & 0x80) != 0 ? Register.BIT_1 : Register.BIT_0);
+        chip8.register.setFlag(Register.FLAG_SHL, vx, 0);
 
         vx <<= 1;
 
@@ -0,0 +1,46 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.instruction;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.OPCode;
+import mx.uach.fing.chip8.Register;
+
+/**
+ * 8xyE - SHL Vx, Vy Set Vx = Vy SHL 1 (COSMAC VIP).
+ *
+ * If the most-significant bit of Vy is 1, then VF is set to 1, otherwise to 0.
+ * Then Vy multiplied by 2 is stored in Vx.
+ *
+ * @author Luis Chávez
+ */
+public class ShlVyInstruction extends AbstractInstruction {
+
+    @Override
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
+        int y = OPCode.y(opcode);
+
+        int vy = chip8.register.get(y);
+
+        chip8.register.setFlag(Register.FLAG_SHL, vy, 0);
+
+        vy <<= 1;
+
+        chip8.register.set(x, vy);
+    }
+}
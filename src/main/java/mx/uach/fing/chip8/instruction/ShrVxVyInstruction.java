@@ -28,15 +28,15 @@ import mx.uach.fing.chip8.Register;
  *
  * @author Luis Chávez
  */
-public class ShrVxVyInstruction implements Instruction {
+public class ShrVxVyInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int x = opcode.getX();
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
 
         int vx = chip8.register.get(x);
 
-        chip8.register.set(Register.REGISTER_FLAG, vx & 0x1);
+        chip8.register.setFlag(Register.FLAG_SHR, vx, 0);
 
         vx >>= 1;
 
@@ -27,12 +27,12 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class SkipEqualVxKKInstruction implements Instruction {
+public class SkipEqualVxKKInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
-        int x = opcode.getX();
-        int b = opcode.getByte();
+    public void execute(int opcode, Chip8 chip8) {
+        int x = OPCode.x(opcode);
+        int b = OPCode.kk(opcode);
 
         int vx = chip8.register.get(x);
 
@@ -0,0 +1,96 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.instruction;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.OPCode;
+import mx.uach.fing.chip8.Register;
+
+/**
+ * Secuencia de instrucciones sin saltos formada por 6xkk, 7xkk, Annn y Fx1E,
+ * opcionalmente terminada por Dxyn.
+ *
+ * @author Luis Chávez
+ */
+public class StraightLineInstruction extends FusedInstruction {
+
+    // Instruccion de dibujo al final de la secuencia, null si no tiene.
+    private final Instruction draw;
+
+    public StraightLineInstruction(int address, int[] opcodes,
+            Instruction draw) {
+        super(address, opcodes);
+        this.draw = draw;
+    }
+
+    /**
+     * Verifica si un opcode puede formar parte de la secuencia antes de la
+     * instruccion de dibujo.
+     *
+     * @param opcode opcode a verificar.
+     * @return true si el opcode es 6xkk, 7xkk, Annn o Fx1E.
+     */
+    public static boolean accepts(int opcode) {
+        switch (OPCode.instruction(opcode)) {
+            case 0x6:
+            case 0x7:
+            case 0xA:
+                return true;
+            case 0xF:
+                return 0x1E == OPCode.kk(opcode);
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public int execute(Chip8 chip8) {
+        Register register = chip8.register;
+
+        // Ninguna instruccion de la secuencia lee el contador del programa.
+        register.setPC(this.address + this.opcodes.length * 2);
+
+        int count = null == this.draw
+                ? this.opcodes.length : this.opcodes.length - 1;
+        for (int index = 0; index < count; index++) {
+            int opcode = this.opcodes[index];
+            int x = OPCode.x(opcode);
+
+            switch (OPCode.instruction(opcode)) {
+                case 0x6:
+                    register.set(x, OPCode.kk(opcode));
+                    break;
+                case 0x7:
+                    register.set(x, register.get(x) + OPCode.kk(opcode));
+                    break;
+                case 0xA:
+                    register.setRegisterI(OPCode.nnn(opcode));
+                    break;
+                default:
+                    register.setRegisterI(
+                            register.getRegisterI() + register.get(x));
+                    break;
+            }
+        }
+
+        if (null != this.draw) {
+            this.draw.execute(this.opcodes[count], chip8);
+        }
+
+        return this.opcodes.length;
+    }
+}
@@ -17,15 +17,14 @@
 package mx.uach.fing.chip8.instruction;
 
 import mx.uach.fing.chip8.Chip8;
-import mx.uach.fing.chip8.OPCode;
 
 /**
  *
  * @author Luis Chávez
  */
-public class SystemAddressInstruction implements Instruction {
+public class SystemAddressInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, Chip8 chip8) {
+    public void execute(int opcode, Chip8 chip8) {
     }
 }
@@ -0,0 +1,39 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.instruction;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.FaultStatus;
+
+/**
+ * Instruccion centinela, ocupa en la tabla de despacho los opcodes que no
+ * tienen una instruccion asociada.
+ *
+ * @author Luis Chávez
+ */
+public class UnknownInstruction extends AbstractInstruction {
+
+    @Override
+    public void execute(int opcode, Chip8 chip8) {
+        // El contador del programa ya apunta a la siguiente instruccion.
+        if (chip8.getFaultStatus().report(FaultStatus.UNKNOWN_INSTRUCTION,
+                chip8.register.getPC() - 2)) {
+            return;
+        }
+        throw new UnknownInstructionException(String.format("No existe una instruccion para el opcode %04X", opcode));
+    }
+}
@@ -17,7 +17,6 @@
 package mx.uach.fing.chip8.instruction;
 
 import mx.uach.fing.chip8.Chip8;
-import mx.uach.fing.chip8.Keyboard;
 import mx.uach.fing.chip8.OPCode;
 
 /**
@@ -29,18 +28,11 @@ import mx.uach.fing.chip8.OPCode;
  *
  * @author Luis Chávez
  */
-public class WaitKeyDownInstruction implements Instruction {
+public class WaitKeyDownInstruction extends AbstractInstruction {
 
     @Override
-    public void execute(OPCode opcode, final Chip8 chip8) {
-        final int x = opcode.getX();
-
-        chip8.keyboard.waitKey(new Keyboard.KeyListener() {
-
-            @Override
-            public void onKeyFound(int key) {
-                chip8.register.set(x, key);
-            }
-        });
+    public void execute(int opcode, Chip8 chip8) {
+        // El emulador guarda la tecla en Vx al terminar la espera.
+        chip8.keyboard.waitKey(OPCode.x(opcode));
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import mx.uach.fing.chip8.QuirkProfile;
+import mx.uach.fing.chip8.analysis.ControlFlowAnalyzer;
+import mx.uach.fing.chip8.analysis.ControlFlowGraph;
+import mx.uach.fing.chip8.aot.AotProgram;
+import mx.uach.fing.chip8.aot.AotTranslator;
+import mx.uach.fing.chip8.instruction.InstructionSet;
+import mx.uach.fing.chip8.utils.MemoryUtils;
+
+/**
+ * Traduce ROMs a clases de Java antes de la ejecucion, las clases se cargan
+ * con {@link mx.uach.fing.chip8.ExecutionMode#AOT} buscando el hash de la ROM.
+ *
+ * Uso: AotCompiler [fuentes] [clases] [rom o directorio...], por defecto las
+ * fuentes se escriben en target/generated-sources/aot, las clases en
+ * target/classes y se traducen las roms de src/main/resources/rom/CHIP8. Si
+ * no hay un compilador de Java disponible solo se generan las fuentes. Las
+ * ROMs se traducen con el perfil de compatibilidad asignado a su hash.
+ *
+ * @author Luis Chávez
+ */
+public class AotCompiler {
+
+    // Directorio de las fuentes generadas por defecto.
+    private static final String DEFAULT_SOURCES = "target/generated-sources/aot";
+
+    // Directorio de las clases compiladas por defecto.
+    private static final String DEFAULT_CLASSES = "target/classes";
+
+    // Directorio de las roms por defecto.
+    private static final String DEFAULT_ROMS = "src/main/resources/rom/CHIP8";
+
+    // Extension de las roms.
+    private static final String ROM_EXTENSION = ".ch8";
+
+    public static void main(String[] args) throws IOException {
+        File sources = new File(0 < args.length ? args[0] : DEFAULT_SOURCES);
+        File classes = new File(1 < args.length ? args[1] : DEFAULT_CLASSES);
+        List<String> inputs = 2 < args.length
+                ? Arrays.asList(args).subList(2, args.length)
+                : Arrays.asList(DEFAULT_ROMS);
+
+        InstructionSet instructionSet = new InstructionSet();
+        ControlFlowAnalyzer analyzer = new ControlFlowAnalyzer(instructionSet);
+        AotTranslator translator = new AotTranslator(instructionSet);
+
+        File directory = new File(sources, AotProgram.PACKAGE.replace('.', File.separatorChar));
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("No se pudo crear el directorio " + directory);
+        }
+
+        List<String> generated = new ArrayList<>();
+        for (File rom : roms(inputs)) {
+            byte[] bytes = Files.readAllBytes(rom.toPath());
+
+            // Cada ROM se traduce con su perfil de compatibilidad.
+            QuirkProfile profile = QuirkProfile.forRom(bytes);
+            instructionSet.setQuirkProfile(null == profile ? QuirkProfile.DEFAULT : profile);
+
+            ControlFlowGraph graph = analyzer.analyze(bytes);
+
+            String name = AotProgram.className(MemoryUtils.sha256(bytes));
+            String source = translator.translate(rom.getName(), bytes, graph);
+
+            File file = new File(directory, name.substring(name.lastIndexOf('.') + 1) + ".java");
+            Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+            generated.add(file.getPath());
+
+            System.out.printf("%-16s -> %s (%d bloques)%n", rom.getName(),
+                    file.getName(), graph.getBlocks().size());
+        }
+
+        if (generated.isEmpty()) {
+            System.out.println("No se encontraron roms");
+            return;
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (null == compiler) {
+            System.out.println("No hay un compilador de Java disponible, solo se generaron las fuentes");
+            return;
+        }
+
+        if (!classes.isDirectory() && !classes.mkdirs()) {
+            throw new IOException("No se pudo crear el directorio " + classes);
+        }
+
+        List<String> arguments = new ArrayList<>(Arrays.asList(
+                "-encoding", "UTF-8",
+                "-nowarn",
+                "-classpath", System.getProperty("java.class.path"),
+                "-d", classes.getPath()));
+        arguments.addAll(generated);
+
+        int status = compiler.run(null, null, null, arguments.toArray(new String[arguments.size()]));
+        if (0 != status) {
+            throw new IOException("No se pudieron compilar las fuentes generadas");
+        }
+
+        System.out.printf("%d clases compiladas en %s%n", generated.size(), classes);
+    }
+
+    /**
+     * Obtiene las roms de los archivos y directorios especificados.
+     */
+    static List<File> roms(List<String> inputs) {
+        List<File> roms = new ArrayList<>();
+
+        for (String input : inputs) {
+            File file = new File(input);
+            if (file.isDirectory()) {
+                File[] children = file.listFiles();
+                if (null != children) {
+                    Arrays.sort(children);
+                    for (File child : children) {
+                        if (child.isFile() && child.getName().toLowerCase().endsWith(ROM_EXTENSION)) {
+                            roms.add(child);
+                        }
+                    }
+                }
+            } else if (file.isFile()) {
+                roms.add(file);
+            }
+        }
+
+        return roms;
+    }
+}
@@ -0,0 +1,400 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.ExecutionMode;
+import mx.uach.fing.chip8.MachineState;
+import mx.uach.fing.chip8.QuirkProfile;
+import mx.uach.fing.chip8.aot.AotEngine;
+
+/**
+ * Ejecuta cada modo de ejecucion a la par del interprete y compara la
+ * captura del estado de ambos emuladores despues de cada paso, se utiliza
+ * como prueba de regresion del recompilador y de la traduccion anticipada.
+ *
+ * Uso: EngineDiff [modo] [instrucciones] [programas] [rom o directorio...],
+ * por defecto se prueban RECOMPILER, TIERED y AOT con 50000 instrucciones de
+ * cada ROM de src/main/resources/rom/CHIP8 y SCHIP8 y con 3000 programas
+ * aleatorios. Los programas aleatorios incluyen saltos, subrutinas, escrituras
+ * en el codigo y opcodes no validos, y alternan los perfiles de
+ * compatibilidad. El modo AOT solo traduce las ROMs compiladas antes con
+ * {@link AotCompiler}, las demas se interpretan.
+ *
+ * Ambos emuladores utilizan la misma semilla y reciben las mismas teclas y
+ * decrementos de los contadores. Un paso del modo probado puede ejecutar un
+ * bloque completo, el interprete ejecuta el mismo numero de instrucciones
+ * antes de comparar. La prueba falla si algun estado o error es distinto.
+ *
+ * @author Luis Chávez
+ */
+public class EngineDiff {
+
+    // Instrucciones por ROM por defecto.
+    private static final int DEFAULT_STEPS = 50000;
+
+    // Numero de programas aleatorios por defecto.
+    private static final int DEFAULT_PROGRAMS = 3000;
+
+    // Directorios de las roms por defecto.
+    private static final String[] DEFAULT_ROMS = {
+        "src/main/resources/rom/CHIP8", "src/main/resources/rom/SCHIP8"};
+
+    // Modos que se comparan por defecto.
+    private static final ExecutionMode[] DEFAULT_MODES = {
+        ExecutionMode.RECOMPILER, ExecutionMode.TIERED, ExecutionMode.AOT};
+
+    // Perfiles con los que se alternan los programas aleatorios.
+    private static final QuirkProfile[] PROFILES = {
+        QuirkProfile.DEFAULT, QuirkProfile.COSMAC_VIP, QuirkProfile.SCHIP};
+
+    // Instrucciones de cada programa aleatorio.
+    private static final int PROGRAM_STEPS = 3000;
+
+    // Instrucciones entre decrementos de los contadores.
+    private static final int TIMER_PERIOD = 100;
+
+    // Instrucciones entre cambios del teclado.
+    private static final int KEY_PERIOD = 997;
+
+    // Instrucciones que puede ejecutar el interprete para reproducir un error
+    // del modo probado, el error pudo ocurrir a la mitad de un bloque.
+    private static final int MAX_FAULT_STEPS = 256;
+
+    // Numero de instrucciones comparadas.
+    private static long compared;
+
+    public static void main(String[] args) throws IOException {
+        ExecutionMode[] modes = 0 < args.length && !"ALL".equals(args[0])
+                ? new ExecutionMode[]{ExecutionMode.valueOf(args[0])} : DEFAULT_MODES;
+        int steps = 1 < args.length ? Integer.parseInt(args[1]) : DEFAULT_STEPS;
+        int programs = 2 < args.length ? Integer.parseInt(args[2]) : DEFAULT_PROGRAMS;
+        List<String> inputs = 3 < args.length
+                ? Arrays.asList(args).subList(3, args.length)
+                : Arrays.asList(DEFAULT_ROMS);
+
+        List<File> files = AotCompiler.roms(inputs);
+        List<byte[]> roms = new ArrayList<>();
+        for (File file : files) {
+            roms.add(Files.readAllBytes(file.toPath()));
+        }
+
+        int failures = 0;
+        for (ExecutionMode mode : modes) {
+            compared = 0;
+            int translated = 0;
+            int romFailures = 0;
+            for (int index = 0; index < roms.size(); index++) {
+                byte[] rom = roms.get(index);
+                Chip8 reference = create(ExecutionMode.INTERPRETER, QuirkProfile.DEFAULT, rom, index);
+                Chip8 machine = create(mode, QuirkProfile.DEFAULT, rom, index);
+                if (machine.getEngine() instanceof AotEngine
+                        && null != ((AotEngine) machine.getEngine()).getProgram()) {
+                    translated++;
+                }
+
+                String mismatch = compare(reference, machine, steps, index);
+                if (null != mismatch) {
+                    System.out.printf("%s %s: %s%n", mode, files.get(index).getName(), mismatch);
+                    romFailures++;
+                }
+            }
+            long romInstructions = compared;
+
+            int programFailures = 0;
+            for (int seed = 0; seed < programs; seed++) {
+                byte[] rom = program(new Random(seed));
+                QuirkProfile profile = PROFILES[seed % PROFILES.length];
+                boolean extended = 0 == seed / PROFILES.length % 2;
+
+                Chip8 reference = create(ExecutionMode.INTERPRETER, profile, rom, seed);
+                Chip8 machine = create(mode, profile, rom, seed);
+                reference.setExtended(extended);
+                machine.setExtended(extended);
+                randomize(reference, new Random(seed * 7L + 1));
+                randomize(machine, new Random(seed * 7L + 1));
+
+                String mismatch = compare(reference, machine, PROGRAM_STEPS, seed);
+                if (null != mismatch) {
+                    System.out.printf("%s programa %d (%s): %s%n", mode, seed, profile, mismatch);
+                    programFailures++;
+                }
+            }
+
+            System.out.printf("%-10s roms: %d/%d iguales", mode, roms.size() - romFailures, roms.size());
+            if (ExecutionMode.AOT == mode) {
+                System.out.printf(" (%d traducidas)", translated);
+            }
+            System.out.printf(", programas: %d/%d iguales, instrucciones: %d + %d%n",
+                    programs - programFailures, programs, romInstructions, compared - romInstructions);
+            failures += romFailures + programFailures;
+        }
+
+        System.out.println(0 == failures ? "OK" : "FALLA, " + failures + " ejecuciones distintas");
+        if (0 != failures) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Crea un emulador sin deteccion de ciclos de espera, un ciclo de espera
+     * aplica el estado de varias iteraciones en un paso. El interprete de
+     * referencia ejecuta una instruccion por paso.
+     */
+    private static Chip8 create(ExecutionMode mode, QuirkProfile profile, byte[] rom, long seed) {
+        Chip8 chip8 = new Chip8(mode, profile);
+        chip8.setIdleDetection(false);
+        chip8.setRandomSeed(seed);
+        if (ExecutionMode.INTERPRETER == mode) {
+            chip8.getInstructionCache().setFusion(false);
+        }
+        chip8.loadMemory(rom);
+
+        return chip8;
+    }
+
+    /**
+     * Ejecuta ambos emuladores a la par hasta el numero de instrucciones
+     * indicado, hasta 00FD o hasta el mismo error.
+     *
+     * @return descripcion de la primera diferencia, null si no hay.
+     */
+    private static String compare(Chip8 reference, Chip8 machine, int steps, long seed) {
+        Random input = new Random(seed);
+        MachineState expected = new MachineState();
+        MachineState actual = new MachineState();
+
+        int executed = 0;
+        while (steps > executed && !machine.isExited()) {
+            if (machine.keyboard.isWaiting() && !machine.keyboard.isKeyFound()) {
+                int key = input.nextInt(16);
+                reference.keyboard.down(key);
+                machine.keyboard.down(key);
+            }
+
+            int count;
+            try {
+                count = machine.step();
+            } catch (RuntimeException ex) {
+                return fault(reference, ex);
+            }
+
+            try {
+                for (int done = 0; done < count;) {
+                    int step = reference.step();
+                    if (0 == step) {
+                        break;
+                    }
+                    done += step;
+                }
+            } catch (RuntimeException ex) {
+                return String.format("instruccion %d: %s solo en el interprete",
+                        executed, ex.getClass().getSimpleName());
+            }
+
+            int previous = executed;
+            executed += count;
+            compared += count;
+
+            if (previous / TIMER_PERIOD != executed / TIMER_PERIOD) {
+                reference.decrementCounters();
+                machine.decrementCounters();
+            }
+            if (previous / KEY_PERIOD != executed / KEY_PERIOD) {
+                int key = input.nextInt(16);
+                boolean down = input.nextBoolean();
+                reference.keyboard.setKeyStatus(key, down);
+                machine.keyboard.setKeyStatus(key, down);
+            }
+
+            reference.snapshot(expected);
+            machine.snapshot(actual);
+            int offset = Arrays.mismatch(expected.array(), actual.array());
+            if (0 <= offset) {
+                return String.format("instruccion %d, PC %03X: %s, esperado %02X, obtenido %02X",
+                        executed, reference.register.getPC(), region(offset),
+                        expected.array()[offset] & 0xFF, actual.array()[offset] & 0xFF);
+            }
+
+            if (0 == count && !machine.keyboard.isWaiting()) {
+                return String.format("instruccion %d: el modo probado no avanza", executed);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Verifica que el interprete produzca el mismo error que el modo probado
+     * en las instrucciones siguientes.
+     *
+     * @return descripcion de la diferencia, null si el error es el mismo.
+     */
+    private static String fault(Chip8 reference, RuntimeException fault) {
+        for (int step = 0; step < MAX_FAULT_STEPS; step++) {
+            try {
+                if (0 == reference.step()) {
+                    break;
+                }
+            } catch (RuntimeException ex) {
+                return fault.getClass() == ex.getClass() ? null
+                        : String.format("error %s, el interprete produjo %s",
+                                fault.getClass().getSimpleName(), ex.getClass().getSimpleName());
+            }
+        }
+
+        return String.format("%s solo en el modo probado", fault.getClass().getSimpleName());
+    }
+
+    /**
+     * Obtiene el nombre de la region de una captura que contiene un byte.
+     */
+    private static String region(int offset) {
+        if (MachineState.REGISTERS > offset) {
+            return String.format("memoria %03X", offset - MachineState.MEMORY);
+        } else if (MachineState.REGISTER_I > offset) {
+            return String.format("V%X", offset - MachineState.REGISTERS);
+        } else if (MachineState.PC > offset) {
+            return "I";
+        } else if (MachineState.DT > offset) {
+            return "PC";
+        } else if (MachineState.ST > offset) {
+            return "DT";
+        } else if (MachineState.SP > offset) {
+            return "ST";
+        } else if (MachineState.STACK > offset) {
+            return "SP";
+        } else if (MachineState.KEYS > offset) {
+            return String.format("pila %d", (offset - MachineState.STACK) / 2);
+        } else if (MachineState.KEY_WAIT > offset) {
+            return String.format("tecla %X", offset - MachineState.KEYS);
+        } else if (MachineState.FLAGS > offset) {
+            return "espera de tecla";
+        } else if (MachineState.SCREEN > offset) {
+            return "banderas";
+        }
+
+        return String.format("pixel %d", offset - MachineState.SCREEN);
+    }
+
+    /**
+     * Genera un programa aleatorio, los saltos y subrutinas apuntan dentro
+     * del programa y algunos programas contienen un ciclo que espera a dt.
+     */
+    static byte[] program(Random random) {
+        int length = 8 + random.nextInt(60);
+        int[] opcodes = new int[length];
+        for (int index = 0; index < length; index++) {
+            opcodes[index] = opcode(random, length);
+        }
+
+        if (4 < length && random.nextBoolean()) {
+            int start = random.nextInt(length - 3);
+            int x = random.nextInt(16);
+            int target = random.nextBoolean() ? start : random.nextInt(length);
+            opcodes[start] = 0xF007 | x << 8;
+            opcodes[start + 1] = (random.nextBoolean() ? 0x3000 : 0x4000) | x << 8 | random.nextInt(3);
+            opcodes[start + 2] = 0x1000 | (0x200 + 2 * target);
+        }
+
+        byte[] rom = new byte[length * 2];
+        for (int index = 0; index < length; index++) {
+            rom[2 * index] = (byte) (opcodes[index] >> 8);
+            rom[2 * index + 1] = (byte) opcodes[index];
+        }
+
+        return rom;
+    }
+
+    /**
+     * Genera un opcode aleatorio, la mayoria son instrucciones validas.
+     */
+    private static int opcode(Random random, int length) {
+        int x = random.nextInt(16);
+        int y = random.nextInt(16);
+        int kk = random.nextInt(256);
+        int target = 0x200 + 2 * random.nextInt(length);
+        int[] arithmetic = {0x0, 0x1, 0x2, 0x3, 0x4, 0x5, 0x6, 0x7, 0xE};
+        int[] misc = {0x07, 0x15, 0x18, 0x1E, 0x29, 0x33, 0x55, 0x65, 0x30};
+
+        switch (random.nextInt(23)) {
+            case 0:
+                return 0x1000 | target;
+            case 1:
+                return 0x2000 | target;
+            case 2:
+                return 0x00EE;
+            case 3:
+                return 0x3000 | x << 8 | (random.nextBoolean() ? kk : random.nextInt(4));
+            case 4:
+                return 0x4000 | x << 8 | (random.nextBoolean() ? kk : random.nextInt(4));
+            case 5:
+                return 0x5000 | x << 8 | y << 4;
+            case 6:
+            case 7:
+                return 0x6000 | x << 8 | kk;
+            case 8:
+            case 9:
+                return 0x7000 | x << 8 | kk;
+            case 10:
+            case 11:
+            case 12:
+                return 0x8000 | x << 8 | y << 4 | arithmetic[random.nextInt(arithmetic.length)];
+            case 13:
+                return 0x9000 | x << 8 | y << 4;
+            case 14:
+                return 0xA000 | (0x200 + random.nextInt(0x100));
+            case 15:
+                return 0xB000 | target;
+            case 16:
+                return 0xC000 | x << 8 | kk;
+            case 17:
+                return 0xD000 | x << 8 | y << 4 | random.nextInt(16);
+            case 18:
+                return 0xE09E | x << 8 | (random.nextBoolean() ? 0 : 0x3F);
+            case 19:
+            case 20:
+                return 0xF000 | x << 8 | misc[random.nextInt(misc.length)];
+            case 21:
+                return random.nextBoolean() ? 0x00E0 : 0x00C0 | random.nextInt(16);
+            default:
+                return random.nextInt(0x10000);
+        }
+    }
+
+    /**
+     * Asigna valores aleatorios a los registros, a dt y al teclado.
+     */
+    private static void randomize(Chip8 chip8, Random random) {
+        for (int index = 0; index < 16; index++) {
+            chip8.register.set(index, random.nextInt(256));
+        }
+        chip8.register.setRegisterI(0x200 + random.nextInt(0x200));
+        chip8.register.setDT(random.nextInt(5));
+        for (int key = 0; key < 16; key++) {
+            chip8.keyboard.setKeyStatus(key, random.nextBoolean());
+        }
+    }
+}
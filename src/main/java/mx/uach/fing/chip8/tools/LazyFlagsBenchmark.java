@@ -0,0 +1,134 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.utils.MemoryUtils;
+
+/**
+ * Compara el calculo de VF en cada operacion contra el calculo perezoso.
+ *
+ * Uso: LazyFlagsBenchmark [instrucciones] [rom...], las roms se buscan en el
+ * classpath, por defecto /rom/CHIP8/TETRIS.ch8 y /rom/CHIP8/BRIX.ch8.
+ *
+ * @author Luis Chávez
+ */
+public class LazyFlagsBenchmark {
+
+    // Numero de instrucciones a ejecutar por defecto.
+    private static final int DEFAULT_INSTRUCTIONS = 20_000_000;
+
+    // Numero de repeticiones de calentamiento.
+    private static final int WARMUP_RUNS = 3;
+
+    // Numero de repeticiones medidas.
+    private static final int MEASURED_RUNS = 5;
+
+    // Instrucciones ejecutadas entre cada decremento de los contadores.
+    private static final int BATCH = 1_000;
+
+    public static void main(String[] args) throws IOException {
+        int instructions = 0 < args.length
+                ? Integer.parseInt(args[0]) : DEFAULT_INSTRUCTIONS;
+
+        String[] roms = 1 < args.length
+                ? Arrays.copyOfRange(args, 1, args.length)
+                : new String[]{"/rom/CHIP8/TETRIS.ch8", "/rom/CHIP8/BRIX.ch8"};
+
+        System.out.printf("%-22s %-6s %10s %10s %14s %14s%n", "rom", "flags",
+                "ms", "ns/inst", "flag ops", "evaluations");
+
+        for (String name : roms) {
+            byte[] rom = load(name);
+
+            // Los modos se alternan para que ambos se ejecuten con el mismo
+            // perfil del compilador JIT.
+            for (int run = 0; run < WARMUP_RUNS; run++) {
+                run(rom, false, instructions);
+                run(rom, true, instructions);
+            }
+
+            long[] times = new long[2];
+            Chip8[] machines = new Chip8[2];
+            for (int run = 0; run < MEASURED_RUNS; run++) {
+                for (int mode = 0; mode < 2; mode++) {
+                    long start = System.nanoTime();
+                    machines[mode] = run(rom, 1 == mode, instructions);
+                    times[mode] += System.nanoTime() - start;
+                }
+            }
+
+            for (int mode = 0; mode < 2; mode++) {
+                long time = times[mode] / MEASURED_RUNS;
+
+                System.out.printf("%-22s %-6s %10.1f %10.2f %14d %14d%n",
+                        name.substring(name.lastIndexOf('/') + 1),
+                        1 == mode ? "lazy" : "eager", time / 1_000_000.0,
+                        (double) time / instructions,
+                        machines[mode].register.getFlagOperations(),
+                        machines[mode].register.getFlagEvaluations());
+            }
+        }
+    }
+
+    /**
+     * Ejecuta una rom el numero de instrucciones especificado, pulsa una tecla
+     * cuando el programa la espera.
+     */
+    private static Chip8 run(byte[] rom, boolean lazy, int instructions) {
+        Chip8 chip8 = new Chip8();
+        chip8.setExtended(false);
+        chip8.setIdleDetection(false);
+        chip8.register.setLazyFlags(lazy);
+        chip8.loadMemory(rom);
+
+        int executed = 0;
+        int key = 0;
+        while (executed < instructions) {
+            executed += chip8.runCycles(BATCH);
+            if (chip8.keyboard.isWaiting()) {
+                chip8.keyboard.down(key);
+                chip8.keyboard.up(key);
+                key = (key + 1) & 0xF;
+            }
+
+            if (null != chip8.getFault() || chip8.isExited()) {
+                throw new IllegalStateException(
+                        "La rom se detuvo antes de terminar la prueba");
+            }
+
+            chip8.decrementCounters();
+        }
+
+        return chip8;
+    }
+
+    private static byte[] load(String name) throws IOException {
+        try (InputStream inputStream
+                = LazyFlagsBenchmark.class.getResourceAsStream(name)) {
+            if (null == inputStream) {
+                throw new IOException(String.format("No se encontro la rom %s", name));
+            }
+
+            return MemoryUtils.toBytes(inputStream);
+        }
+    }
+}
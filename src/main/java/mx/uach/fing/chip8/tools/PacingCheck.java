@@ -0,0 +1,136 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.ExecutionMode;
+import mx.uach.fing.chip8.PacingController;
+
+/**
+ * Verifica que la velocidad de los emuladores se mantenga cerca del tiempo
+ * real mientras otros hilos ocupan los procesadores.
+ *
+ * Uso: PacingCheck [maquinas] [segundos] [hilos de carga] [rom], por defecto
+ * se ejecutan 50 emuladores con BLINKY.ch8 durante 10 segundos con un hilo de
+ * carga por procesador. Al final se reporta la velocidad, el retraso, las
+ * rafagas de recuperacion y los cuadros descartados de los emuladores, la
+ * prueba falla si algun emulador se aleja mas del 1% de la velocidad real.
+ *
+ * @author Luis Chávez
+ */
+public class PacingCheck {
+
+    // Numero de emuladores por defecto.
+    private static final int DEFAULT_MACHINES = 50;
+
+    // Segundos de la prueba por defecto.
+    private static final int DEFAULT_SECONDS = 10;
+
+    // Rom por defecto.
+    private static final String DEFAULT_ROM = "src/main/resources/rom/CHIP8/BLINKY.ch8";
+
+    // Diferencia maxima con la velocidad real.
+    private static final double TOLERANCE = 0.01;
+
+    // Indica si los hilos de carga siguen activos.
+    private static volatile boolean loading = true;
+
+    // Resultado de los hilos de carga, evita que se elimine su ciclo.
+    private static volatile long sink;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int count = 0 < args.length ? Integer.parseInt(args[0]) : DEFAULT_MACHINES;
+        int seconds = 1 < args.length ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        int load = 2 < args.length ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        byte[] rom = Files.readAllBytes(Paths.get(3 < args.length ? args[3] : DEFAULT_ROM));
+
+        for (int index = 0; index < load; index++) {
+            Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    long value = 0;
+                    while (loading) {
+                        value = value * 31 + System.nanoTime();
+                    }
+                    sink = value;
+                }
+            }, "LOAD-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        List<Chip8> machines = new ArrayList<>();
+        for (int index = 0; index < count; index++) {
+            Chip8 chip8 = new Chip8(ExecutionMode.TIERED);
+            chip8.loadMemory(rom);
+            chip8.start();
+            machines.add(chip8);
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        long now = System.nanoTime();
+        loading = false;
+
+        double minimum = Double.MAX_VALUE;
+        double maximum = 0;
+        double total = 0;
+        long maxDrift = 0;
+        long bursts = 0;
+        long caughtUp = 0;
+        long dropped = 0;
+        for (Chip8 chip8 : machines) {
+            PacingController pacing = chip8.getPacing();
+            double speed = pacing.getSpeed(now);
+            minimum = Math.min(minimum, speed);
+            maximum = Math.max(maximum, speed);
+            total += speed;
+            maxDrift = Math.max(maxDrift, pacing.getMaxDrift());
+            bursts += pacing.getCatchUpBursts();
+            caughtUp += pacing.getCaughtUpFrames();
+            dropped += pacing.getDroppedFrames();
+        }
+
+        for (Chip8 chip8 : machines) {
+            chip8.stop();
+        }
+        for (Chip8 chip8 : machines) {
+            chip8.awaitTermination(1, TimeUnit.SECONDS);
+        }
+
+        System.out.printf("maquinas: %d, segundos: %d, hilos de carga: %d%n", count, seconds, load);
+        System.out.printf("velocidad: min %.4f, promedio %.4f, max %.4f%n",
+                minimum, total / machines.size(), maximum);
+        System.out.printf("retraso maximo: %.2f ms%n", maxDrift / 1e6);
+        System.out.printf("rafagas: %d, cuadros recuperados: %d, cuadros descartados: %d%n",
+                bursts, caughtUp, dropped);
+
+        boolean passed = TOLERANCE >= 1 - minimum && TOLERANCE >= maximum - 1;
+        System.out.println(passed ? "OK, dentro del 1%" : "FALLA, fuera del 1%");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+}
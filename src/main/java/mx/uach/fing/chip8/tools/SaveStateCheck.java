@@ -0,0 +1,120 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.ExecutionMode;
+import mx.uach.fing.chip8.MachineState;
+import mx.uach.fing.chip8.VirtualClock;
+
+/**
+ * Mide el tiempo de guardar y restaurar el estado de muchas sesiones y
+ * verifica que las sesiones restauradas sean iguales a las originales.
+ *
+ * Uso: SaveStateCheck [sesiones] [directorio] [rom], por defecto se guardan
+ * 1000 sesiones de BRIX.ch8 en target/states. Cada sesion se ejecuta un
+ * numero distinto de cuadros, se guarda, se restaura en un emulador nuevo y
+ * se compara la captura de ambos emuladores.
+ *
+ * @author Luis Chávez
+ */
+public class SaveStateCheck {
+
+    // Numero de sesiones por defecto.
+    private static final int DEFAULT_SESSIONS = 1000;
+
+    // Directorio de los archivos por defecto.
+    private static final String DEFAULT_DIRECTORY = "target/states";
+
+    // Rom por defecto.
+    private static final String DEFAULT_ROM = "src/main/resources/rom/CHIP8/BRIX.ch8";
+
+    public static void main(String[] args) throws IOException {
+        int count = 0 < args.length ? Integer.parseInt(args[0]) : DEFAULT_SESSIONS;
+        Path directory = Paths.get(1 < args.length ? args[1] : DEFAULT_DIRECTORY);
+        byte[] rom = Files.readAllBytes(Paths.get(2 < args.length ? args[2] : DEFAULT_ROM));
+
+        Files.createDirectories(directory);
+
+        Chip8[] sessions = new Chip8[count];
+        Path[] files = new Path[count];
+        for (int index = 0; index < count; index++) {
+            Chip8 chip8 = new Chip8(ExecutionMode.INTERPRETER);
+            chip8.setClock(new VirtualClock());
+            chip8.setRandomSeed(index);
+            chip8.loadMemory(rom);
+            for (int frame = index % 120; 0 <= frame; frame--) {
+                chip8.runFrame(false);
+            }
+
+            sessions[index] = chip8;
+            files[index] = directory.resolve("session-" + index + MachineState.EXTENSION);
+        }
+
+        long start = System.nanoTime();
+        for (int index = 0; index < count; index++) {
+            sessions[index].saveState(files[index]);
+        }
+        long saved = System.nanoTime();
+
+        Chip8[] restored = new Chip8[count];
+        for (int index = 0; index < count; index++) {
+            Chip8 chip8 = new Chip8(ExecutionMode.INTERPRETER);
+            chip8.loadMemory(rom);
+            restored[index] = chip8;
+        }
+
+        long loading = System.nanoTime();
+        for (int index = 0; index < count; index++) {
+            restored[index].loadState(files[index]);
+        }
+        long loaded = System.nanoTime();
+
+        int failures = 0;
+        MachineState expected = new MachineState();
+        MachineState actual = new MachineState();
+        for (int index = 0; index < count; index++) {
+            sessions[index].snapshot(expected);
+            restored[index].snapshot(actual);
+            if (!Arrays.equals(expected.array(), actual.array())) {
+                System.out.printf("La sesion %d no coincide%n", index);
+                failures++;
+            }
+        }
+
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+
+        System.out.printf("sesiones: %d, %d bytes por archivo%n", count, MachineState.FILE_SIZE);
+        System.out.printf("guardar: %.2f ms, %.1f us por sesion%n",
+                (saved - start) / 1e6, (saved - start) / 1e3 / count);
+        System.out.printf("restaurar: %.2f ms, %.1f us por sesion%n",
+                (loaded - loading) / 1e6, (loaded - loading) / 1e3 / count);
+
+        System.out.println(0 == failures ? "OK" : "FALLA, " + failures + " sesiones distintas");
+        if (0 != failures) {
+            System.exit(1);
+        }
+    }
+}
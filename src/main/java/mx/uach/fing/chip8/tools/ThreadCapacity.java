@@ -0,0 +1,153 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.ExecutionMode;
+import mx.uach.fing.chip8.MachineThreads;
+
+/**
+ * Mide cuantos emuladores, cada uno en su propio hilo, puede mantener la JVM
+ * a 60 cuadros por segundo con hilos virtuales y con hilos de plataforma.
+ *
+ * Uso: ThreadCapacity [virtual|platform|both] [maximo] [incremento] [rom], por
+ * defecto se comparan ambos tipos de hilo hasta 10000 emuladores en
+ * incrementos de 250 con BLINKY.ch8. En cada incremento se miden los cuadros
+ * durante un segundo, la prueba termina cuando el promedio es menor al 99%
+ * de Chip8.TIMER_HZ o cuando no se pueden crear mas hilos.
+ *
+ * @author Luis Chávez
+ */
+public class ThreadCapacity {
+
+    // Numero maximo de emuladores por defecto.
+    private static final int DEFAULT_MAXIMUM = 10000;
+
+    // Emuladores agregados en cada incremento por defecto.
+    private static final int DEFAULT_STEP = 250;
+
+    // Rom por defecto.
+    private static final String DEFAULT_ROM = "src/main/resources/rom/CHIP8/BLINKY.ch8";
+
+    // Milisegundos de cada medicion.
+    private static final long SAMPLE_MILLIS = 1000;
+
+    // Fraccion minima de los cuadros por segundo esperados.
+    private static final double MINIMUM_RATE = 0.99;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String kind = 0 < args.length ? args[0] : "both";
+        int maximum = 1 < args.length ? Integer.parseInt(args[1]) : DEFAULT_MAXIMUM;
+        int step = 2 < args.length ? Integer.parseInt(args[2]) : DEFAULT_STEP;
+        byte[] rom = Files.readAllBytes(Paths.get(3 < args.length ? args[3] : DEFAULT_ROM));
+
+        System.out.printf("hilos virtuales disponibles: %s%n", MachineThreads.isVirtualAvailable());
+
+        int platform = -1;
+        int virtual = -1;
+        if (!"virtual".equals(kind)) {
+            platform = measure("platform", false, rom, maximum, step);
+        }
+        if (!"platform".equals(kind)) {
+            if (MachineThreads.isVirtualAvailable()) {
+                virtual = measure("virtual", true, rom, maximum, step);
+            } else {
+                System.out.println("La JVM no soporta hilos virtuales, se requiere Java 21");
+            }
+        }
+
+        System.out.println();
+        if (0 <= platform) {
+            System.out.printf("platform: %d emuladores%n", platform);
+        }
+        if (0 <= virtual) {
+            System.out.printf("virtual:  %d emuladores%n", virtual);
+        }
+    }
+
+    /**
+     * Agrega emuladores hasta que no se mantiene la velocidad.
+     *
+     * @return numero de emuladores que se mantuvieron a 60 cuadros por
+     * segundo.
+     */
+    private static int measure(String name, boolean virtual, byte[] rom, int maximum, int step)
+            throws InterruptedException {
+        System.out.printf("%n%-8s %10s %10s %10s %10s  %s%n", name, "maquinas",
+                "fps prom", "fps min", "heap MB", "status");
+
+        List<Chip8> machines = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        Runtime runtime = Runtime.getRuntime();
+
+        int held = 0;
+        String status = "ok";
+        while (machines.size() < maximum && "ok".equals(status)) {
+            try {
+                for (int index = 0; index < step && machines.size() < maximum; index++) {
+                    Chip8 chip8 = new Chip8(ExecutionMode.TIERED);
+                    chip8.loadMemory(rom);
+                    threads.add(chip8.start(virtual));
+                    machines.add(chip8);
+                }
+            } catch (OutOfMemoryError ex) {
+                status = "sin hilos: " + ex.getMessage();
+            }
+
+            long[] frames = new long[machines.size()];
+            for (int index = 0; index < frames.length; index++) {
+                frames[index] = machines.get(index).getFrameCount();
+            }
+            long start = System.nanoTime();
+            Thread.sleep(SAMPLE_MILLIS);
+            long nanos = System.nanoTime() - start;
+
+            double total = 0;
+            double minimum = Double.MAX_VALUE;
+            for (int index = 0; index < frames.length; index++) {
+                double rate = (machines.get(index).getFrameCount() - frames[index]) * 1e9 / nanos;
+                total += rate;
+                minimum = Math.min(minimum, rate);
+            }
+            double average = total / frames.length;
+
+            if (MINIMUM_RATE * Chip8.TIMER_HZ > average && "ok".equals(status)) {
+                status = "lento";
+            } else if ("ok".equals(status)) {
+                held = machines.size();
+            }
+
+            System.out.printf("%-8s %10d %10.2f %10.2f %10d  %s%n", "", machines.size(),
+                    average, minimum, (runtime.totalMemory() - runtime.freeMemory()) >> 20, status);
+        }
+
+        for (Chip8 chip8 : machines) {
+            chip8.stop();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return held;
+    }
+}
@@ -0,0 +1,93 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.ExecutionMode;
+
+/**
+ * Ejecuta ROMs sin limite de velocidad durante un tiempo emulado, se utiliza
+ * para las pruebas de regresion sin esperar el tiempo real.
+ *
+ * Uso: TurboSweep [segundos] [frecuencia] [modo] [rom o directorio...], por
+ * defecto se emulan 60 segundos a Chip8.UPDATE_HZ con el interprete y se
+ * ejecutan las roms de src/main/resources/rom/CHIP8.
+ *
+ * @author Luis Chávez
+ */
+public class TurboSweep {
+
+    // Segundos emulados por defecto.
+    private static final int DEFAULT_SECONDS = 60;
+
+    // Directorio de las roms por defecto.
+    private static final String DEFAULT_ROMS = "src/main/resources/rom/CHIP8";
+
+    public static void main(String[] args) throws IOException {
+        int seconds = 0 < args.length ? Integer.parseInt(args[0]) : DEFAULT_SECONDS;
+        int clockHz = 1 < args.length ? Integer.parseInt(args[1]) : Chip8.UPDATE_HZ;
+        ExecutionMode mode = 2 < args.length
+                ? ExecutionMode.valueOf(args[2]) : ExecutionMode.INTERPRETER;
+        List<String> inputs = 3 < args.length
+                ? Arrays.asList(args).subList(3, args.length)
+                : Arrays.asList(DEFAULT_ROMS);
+
+        System.out.printf("%-16s %12s %10s %10s %10s  %s%n", "rom", "cycles",
+                "ms", "MHz", "x real", "status");
+
+        long totalCycles = 0;
+        long totalNanos = 0;
+        for (File rom : AotCompiler.roms(inputs)) {
+            Chip8 chip8 = new Chip8(mode);
+            chip8.setExtended(false);
+            chip8.setClockHz(clockHz);
+            chip8.loadMemory(Files.readAllBytes(rom.toPath()));
+
+            long frames = (long) seconds * Chip8.TIMER_HZ;
+            long start = System.nanoTime();
+            for (long frame = 0; frame < frames; frame++) {
+                chip8.runFrame(false);
+                if (chip8.isExited() || null != chip8.getFault()) {
+                    break;
+                }
+            }
+            long nanos = System.nanoTime() - start;
+
+            String status = chip8.isExited() ? "exit"
+                    : null != chip8.getFault() ? chip8.getFault().getClass().getSimpleName()
+                    : chip8.keyboard.isWaiting() ? "key" : "ok";
+            System.out.printf("%-16s %12d %10.1f %10.3f %10.1f  %s%n", rom.getName(),
+                    chip8.getCycleCount(), nanos / 1e6,
+                    chip8.getCycleCount() * 1e3 / nanos,
+                    (double) chip8.getEmulatedNanos() / nanos, status);
+
+            totalCycles += chip8.getCycleCount();
+            totalNanos += nanos;
+        }
+
+        if (0 < totalNanos) {
+            System.out.printf("%-16s %12d %10.1f %10.3f%n", "total", totalCycles,
+                    totalNanos / 1e6, totalCycles * 1e3 / totalNanos);
+        }
+    }
+}
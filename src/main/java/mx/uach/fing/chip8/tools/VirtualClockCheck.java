@@ -0,0 +1,140 @@
+/* 
+ * Copyright (C) 2015 UACH <http://fing.uach.mx>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package mx.uach.fing.chip8.tools;
+
+import mx.uach.fing.chip8.Chip8;
+import mx.uach.fing.chip8.ExecutionMode;
+import mx.uach.fing.chip8.VirtualClock;
+import mx.uach.fing.chip8.compiler.BlockCompiler;
+
+/**
+ * Verifica que {@link VirtualClock} decremente los contadores cada
+ * Chip8.CYCLES_PER_FRAME ciclos aunque los bloques traducidos excedan uno o
+ * varios cuadros.
+ *
+ * Uso: VirtualClockCheck [cuadros], por defecto 6000 cuadros. Primero se
+ * simulan bloques de distintos tamaños directamente con el reloj y despues
+ * se ejecuta con cada modo una ROM con bloques de
+ * BlockCompiler.MAX_BLOCK_LENGTH instrucciones. Despues de cada cuadro los
+ * ciclos ejecutados deben estar entre cuadros * ciclos por cuadro y ese
+ * valor mas el tamaño del bloque.
+ *
+ * @author Luis Chávez
+ */
+public class VirtualClockCheck {
+
+    // Numero de cuadros por defecto.
+    private static final int DEFAULT_FRAMES = 6000;
+
+    // Tamaños de los bloques simulados.
+    private static final int[] BLOCK_SIZES = {1, 3, 7, 8, 9, 13, 64, 200};
+
+    public static void main(String[] args) {
+        int frames = 0 < args.length ? Integer.parseInt(args[0]) : DEFAULT_FRAMES;
+
+        int failures = 0;
+        for (int block : BLOCK_SIZES) {
+            failures += simulate(new VirtualClock(), Chip8.UPDATE_HZ, block, frames);
+            // Con 0 los ciclos por cuadro dependen de la frecuencia.
+            failures += simulate(new VirtualClock(0), 1000, block, frames);
+        }
+
+        byte[] rom = rom();
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            failures += run(mode, rom, frames);
+        }
+
+        System.out.println(0 == failures ? "OK" : "FALLA, " + failures + " pruebas");
+        if (0 != failures) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Simula cuadros en los que cada paso ejecuta un bloque completo.
+     *
+     * @return 1 si los ciclos se alejan de los cuadros, 0 si no.
+     */
+    private static int simulate(VirtualClock clock, int clockHz, int block, int frames) {
+        int nominal = Math.max(1, clockHz / Chip8.TIMER_HZ);
+
+        long cycles = 0;
+        for (int frame = 1; frame <= frames; frame++) {
+            int budget = clock.frameBudget(clockHz);
+            int executed = 0;
+            while (budget > executed) {
+                executed += block;
+            }
+            clock.endFrame(budget, executed);
+            cycles += executed;
+
+            long debt = cycles - (long) frame * nominal;
+            if (0 > debt || block <= debt) {
+                System.out.printf("bloques de %3d a %4d Hz: cuadro %d, %d ciclos, esperados %d%n",
+                        block, clockHz, frame, cycles, (long) frame * nominal);
+                return 1;
+            }
+        }
+
+        System.out.printf("bloques de %3d a %4d Hz: %d cuadros, %d ciclos%n", block, clockHz, frames, cycles);
+
+        return 0;
+    }
+
+    /**
+     * Ejecuta la ROM con un modo y el reloj virtual.
+     *
+     * @return 1 si los ciclos se alejan de los cuadros, 0 si no.
+     */
+    private static int run(ExecutionMode mode, byte[] rom, int frames) {
+        Chip8 chip8 = new Chip8(mode);
+        chip8.setIdleDetection(false);
+        chip8.setClock(new VirtualClock());
+        chip8.loadMemory(rom);
+
+        for (int frame = 1; frame <= frames; frame++) {
+            chip8.runFrame(false);
+
+            long debt = chip8.getCycleCount() - (long) frame * Chip8.CYCLES_PER_FRAME;
+            if (0 > debt || BlockCompiler.MAX_BLOCK_LENGTH <= debt) {
+                System.out.printf("%s: cuadro %d, %d ciclos, esperados %d%n", mode, frame,
+                        chip8.getCycleCount(), (long) frame * Chip8.CYCLES_PER_FRAME);
+                return 1;
+            }
+        }
+
+        System.out.printf("%-11s %d cuadros, %d ciclos%n", mode, frames, chip8.getCycleCount());
+
+        return 0;
+    }
+
+    /**
+     * Crea una ROM con un solo bloque de MAX_BLOCK_LENGTH instrucciones,
+     * incrementa V1 y regresa al inicio.
+     */
+    private static byte[] rom() {
+        byte[] rom = new byte[BlockCompiler.MAX_BLOCK_LENGTH * 2];
+        for (int index = 0; index < BlockCompiler.MAX_BLOCK_LENGTH - 1; index++) {
+            rom[2 * index] = 0x71;
+            rom[2 * index + 1] = 0x01;
+        }
+        rom[rom.length - 2] = 0x12;
+        rom[rom.length - 1] = 0x00;
+
+        return rom;
+    }
+}
@@ -19,6 +19,8 @@ package mx.uach.fing.chip8.utils;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  *
@@ -49,4 +51,26 @@ public class MemoryUtils {
 
         return bytes;
     }
+
+    /**
+     * Calcula el hash SHA-256 de un arreglo de bytes, se utiliza para
+     * identificar las ROMs.
+     *
+     * @param bytes bytes a procesar.
+     * @return hash en hexadecimal (64 caracteres).
+     */
+    public static String sha256(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest) {
+                builder.append(String.format("%02x", b & 0xFF));
+            }
+
+            return builder.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 no esta disponible", ex);
+        }
+    }
 }